@@ -1,12 +1,19 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -17,11 +24,16 @@ import org.springframework.web.bind.annotation.RestController;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.request.TokenRefreshRequest;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.bulkhead.AuthBulkhead;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.ratelimit.LoginRateLimiter;
+import com.openclassrooms.starterjwt.security.services.RefreshTokenService;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.KnownEmailFilter;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -31,58 +43,152 @@ public class AuthController {
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final AuthBulkhead authBulkhead;
+    private final LoginRateLimiter loginRateLimiter;
+    private final RefreshTokenService refreshTokenService;
+    private final KnownEmailFilter knownEmailFilter;
 
     AuthController(AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            AuthBulkhead authBulkhead,
+            LoginRateLimiter loginRateLimiter,
+            RefreshTokenService refreshTokenService,
+            KnownEmailFilter knownEmailFilter) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.authBulkhead = authBulkhead;
+        this.loginRateLimiter = loginRateLimiter;
+        this.refreshTokenService = refreshTokenService;
+        this.knownEmailFilter = knownEmailFilter;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+                                                                 HttpServletRequest request) {
+        long retryAfterMs = loginRateLimiter.tryAcquire(loginRequest.getEmail(), request.getRemoteAddr());
+        if (retryAfterMs > 0) {
+            return CompletableFuture.completedFuture(tooManyRequests(retryAfterMs));
+        }
 
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+        return authBulkhead.submit(() -> login(loginRequest));
+    }
+
+    @PostMapping("/register")
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody SignupRequest signUpRequest,
+                                                             HttpServletRequest request) {
+        long retryAfterMs = loginRateLimiter.tryAcquire(null, request.getRemoteAddr());
+        if (retryAfterMs > 0) {
+            return CompletableFuture.completedFuture(tooManyRequests(retryAfterMs));
+        }
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtUtils.generateJwtToken(authentication);
-        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        return authBulkhead.submit(() -> register(signUpRequest));
+    }
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
+    // Exchanges a refresh token for a new access token; the refresh token is rotated on every use
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody TokenRefreshRequest refreshRequest) {
+        Long userId = refreshTokenService.consume(refreshRequest.getRefreshToken());
+        User user = userId != null ? userRepository.findById(userId).orElse(null) : null;
+        if (user == null) {
+            return ResponseEntity
+                    .status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Refresh token is invalid or expired!"));
         }
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
+        UserDetailsImpl userDetails = UserDetailsImpl
+                .builder()
+                .id(user.getId())
+                .username(user.getEmail())
+                .lastName(user.getLastName())
+                .firstName(user.getFirstName())
+                .admin(user.isAdmin())
+                .build();
+
+        return ResponseEntity.ok(jwtResponse(userDetails));
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@Valid @RequestBody TokenRefreshRequest logoutRequest) {
+        refreshTokenService.revoke(logoutRequest.getRefreshToken());
+
+        return ResponseEntity.ok(new MessageResponse("Logged out successfully!"));
+    }
+
+    private ResponseEntity<?> tooManyRequests(long retryAfterMs) {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMs + 999) / 1000))
+                .body(new MessageResponse("Error: Too many attempts, retry later!"));
+    }
+
+    // Runs on the auth pool: the token is stateless, so the authentication is not stored in the
+    // SecurityContext of the (reused) pool thread.
+    private ResponseEntity<?> login(LoginRequest loginRequest) {
+        Authentication authentication = authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+
+        return ResponseEntity.ok(jwtResponse((UserDetailsImpl) authentication.getPrincipal()));
+    }
+
+    private JwtResponse jwtResponse(UserDetailsImpl userDetails) {
+        return new JwtResponse(jwtUtils.generateJwtToken(userDetails),
+                refreshTokenService.create(userDetails.getId()),
                 userDetails.getId(),
                 userDetails.getUsername(),
                 userDetails.getFirstName(),
                 userDetails.getLastName(),
-                isAdmin));
+                Boolean.TRUE.equals(userDetails.getAdmin()));
     }
 
-    @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
-                    .badRequest()
-                    .body(new MessageResponse("Error: Email is already taken!"));
+    // The unique constraint on USERS.email is what rejects duplicates; the existence query only
+    // runs when the filter knows the email, to skip hashing the password of an obvious duplicate.
+    private ResponseEntity<?> register(SignupRequest signUpRequest) {
+        String email = signUpRequest.getEmail();
+        if (knownEmailFilter.mightContain(email) && userRepository.existsByEmail(email)) {
+            return emailTaken();
         }
 
         // Create new user's account
-        User user = new User(signUpRequest.getEmail(),
+        User user = new User(email,
                 signUpRequest.getLastName(),
                 signUpRequest.getFirstName(),
                 passwordEncoder.encode(signUpRequest.getPassword()),
                 false);
 
-        userRepository.save(user);
+        try {
+            userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            if (!violatesEmailConstraint(e, email)) {
+                throw e;
+            }
+            return emailTaken();
+        }
+        knownEmailFilter.put(email);
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
+
+    // The constraint is recognized by its name; a database created before it was named reports
+    // another one, and the email is then looked up
+    private boolean violatesEmailConstraint(DataIntegrityViolationException e, String email) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String constraint = ((ConstraintViolationException) cause).getConstraintName();
+                if (constraint != null && constraint.toLowerCase(Locale.ROOT).contains(User.EMAIL_CONSTRAINT)) {
+                    return true;
+                }
+            }
+        }
+        return userRepository.existsByEmail(email);
+    }
+
+    private ResponseEntity<?> emailTaken() {
+        return ResponseEntity
+                .badRequest()
+                .body(new MessageResponse("Error: Email is already taken!"));
+    }
 }
@@ -1,16 +1,43 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.openclassrooms.starterjwt.dto.CacheValidator;
+import com.openclassrooms.starterjwt.dto.ParticipationBatchDto;
+import com.openclassrooms.starterjwt.dto.SessionBatchDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
+import com.openclassrooms.starterjwt.dto.SessionSearchPageDto;
+import com.openclassrooms.starterjwt.dto.SessionSeriesDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.response.EventsTokenResponse;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionEventBroadcaster;
+import com.openclassrooms.starterjwt.services.SessionFilter;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -19,34 +46,158 @@ import java.util.List;
 public class SessionController {
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final SessionEventBroadcaster eventBroadcaster;
+    private final JwtUtils jwtUtils;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             SessionEventBroadcaster eventBroadcaster,
+                             JwtUtils jwtUtils) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.eventBroadcaster = eventBroadcaster;
+        this.jwtUtils = jwtUtils;
     }
 
+    /**
+     * The GET endpoints answer 304 Not Modified, before reading the sessions, when the client's
+     * copy carries the current ETag or Last-Modified.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            CacheValidator validator = this.sessionService.findValidatorById(Long.valueOf(id));
+            if (validator == null) {
+                return ResponseEntity.notFound().build();
+            }
+            if (validator.isNotModified(request)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+
+            SessionDto session = this.sessionService.findDtoById(Long.valueOf(id));
 
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            return ResponseEntity.ok().body(session);
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Without parameters, returns the first sessions as a plain list, capped by
+     * oc.app.sessionListMaxSize. With a cursor, a size or a filter, returns one page and the cursor
+     * of the next one. The filters are the teacher, a date range from (included) to (excluded),
+     * and upcoming for the sessions not started yet.
+     */
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "size", required = false) Integer size,
+                                     @RequestParam(value = "teacherId", required = false) Long teacherId,
+                                     @RequestParam(value = "from", required = false)
+                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                     @RequestParam(value = "to", required = false)
+                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                     @RequestParam(value = "upcoming", defaultValue = "false") boolean upcoming,
+                                     WebRequest request) {
+        // Upcoming sessions change with the clock, which the validator does not see
+        if (!upcoming && this.sessionService.findListValidator().isNotModified(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        SessionFilter filter = new SessionFilter(from, to, teacherId);
+        if (upcoming) {
+            filter = filter.upcoming();
+        }
+        if (cursor == null && size == null && filter.isEmpty()) {
+            return ResponseEntity.ok().body(this.sessionService.findAll());
+        }
+
+        return ResponseEntity.ok().body(toPageDto(this.sessionService.findPage(cursor, size, filter)));
+    }
+
+    /**
+     * One page of the sessions the authenticated user participates in, by date, and the cursor of
+     * the next one; only those not started yet with upcoming.
+     */
+    @GetMapping("/mine")
+    public ResponseEntity<?> findMine(@RequestParam(value = "cursor", required = false) String cursor,
+                                      @RequestParam(value = "size", required = false) Integer size,
+                                      @RequestParam(value = "upcoming", defaultValue = "false") boolean upcoming) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+        SessionFilter filter = SessionFilter.NONE.participant(userDetails.getId());
+        if (upcoming) {
+            filter = filter.upcoming();
+        }
+        return ResponseEntity.ok().body(toPageDto(this.sessionService.findPage(cursor, size, filter)));
+    }
+
+    private static SessionPageDto toPageDto(Slice<SessionDto> page) {
+        List<SessionDto> sessions = page.getContent();
+        String nextCursor = page.hasNext() ? SessionCursor.after(sessions.get(sessions.size() - 1)).encode() : null;
+        return new SessionPageDto(sessions, nextCursor);
+    }
+
+    /**
+     * Sessions created, updated or deleted since the watermark returned by the previous call; all
+     * of them on the first call, a page at a time.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<?> findChanges(@RequestParam(value = "since", required = false)
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+                                         @RequestParam(value = "cursor", required = false) String cursor) {
+        return ResponseEntity.ok().body(this.sessionService.findChanges(since, cursor));
+    }
+
+    /**
+     * Short-lived token to open the event stream with, as browsers' EventSource cannot send the
+     * Authorization header: GET /api/session/events?token=...
+     */
+    @PostMapping("/events/token")
+    public ResponseEntity<?> eventsToken() {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return ResponseEntity.ok().body(new EventsTokenResponse(this.jwtUtils.generateEventsToken(userDetails)));
+    }
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+    /**
+     * Stream of the create, update, delete, participate and noLongerParticipate events of one
+     * session, or of all of them without sessionId. Authenticated by the token parameter, an
+     * events token, when there is no Authorization header.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@RequestParam(value = "sessionId", required = false) Long sessionId) {
+        SseEmitter emitter = this.eventBroadcaster.subscribe(sessionId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Sessions matching words of q in their name or description, best first. 503 while the search
+     * index is loading at startup.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(value = "page", required = false) Integer page,
+                                    @RequestParam(value = "size", required = false) Integer size) {
+        if (query.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Page<SessionDto> results = this.sessionService.search(query, page, size);
+        if (results == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+        return ResponseEntity.ok().body(new SessionSearchPageDto(results.getContent(), results.getTotalElements()));
     }
 
     @PostMapping()
@@ -59,6 +210,40 @@ public class SessionController {
         return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
     }
 
+    /**
+     * Creates all the sessions, or none when any is invalid or has an unknown teacher.
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> createAll(@Valid @RequestBody SessionBatchDto batchDto) {
+        return createAll(this.sessionMapper.toEntity(batchDto.getSessions()), this.sessionService::createAll);
+    }
+
+    /**
+     * Creates the occurrences of a weekly recurring session.
+     */
+    @PostMapping("/series")
+    public ResponseEntity<?> createSeries(@Valid @RequestBody SessionSeriesDto seriesDto) {
+        int interval = seriesDto.getInterval() == null ? 1 : seriesDto.getInterval();
+        return createAll(List.of(this.sessionMapper.toEntity(seriesDto.getSession())), sessions -> this.sessionService
+                .createSeries(sessions.get(0), seriesDto.getDays(), seriesDto.getUntil(), interval));
+    }
+
+    private ResponseEntity<?> createAll(List<Session> sessions, UnaryOperator<List<Session>> create) {
+        List<Integer> unknownTeachers = new ArrayList<>();
+        for (int i = 0; i < sessions.size(); i++) {
+            if (sessions.get(i).getTeacher() == null) {
+                unknownTeachers.add(i);
+            }
+        }
+        if (!unknownTeachers.isEmpty()) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Unknown teacher for sessions " + unknownTeachers));
+        }
+
+        List<Session> created = create.apply(sessions);
+        log.info("Created {} sessions", created.size());
+        return ResponseEntity.ok().body(this.sessionMapper.toDto(created));
+    }
+
     @PutMapping("{id}")
     public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
         try {
@@ -70,6 +255,25 @@ public class SessionController {
         }
     }
 
+    /**
+     * Changes the fields present in the request only, without reading or writing the participants.
+     */
+    @PatchMapping("{id}")
+    public ResponseEntity<?> patch(@PathVariable("id") String id, @Valid @RequestBody SessionPatchDto patchDto) {
+        try {
+            Long sessionId = Long.parseLong(id);
+            Session patch = this.sessionMapper.toEntity(patchDto);
+            if (patchDto.getTeacher_id() != null && patch.getTeacher() == null) {
+                return ResponseEntity.badRequest().body(new MessageResponse("Unknown teacher"));
+            }
+
+            this.sessionService.patch(sessionId, patch);
+            return ResponseEntity.ok().body(this.sessionService.findDtoById(sessionId));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
         try {
@@ -89,7 +293,9 @@ public class SessionController {
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            if (!this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId))) {
+                return ResponseEntity.accepted().body(new MessageResponse("Session is full: added to the waitlist"));
+            }
 
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
@@ -97,6 +303,31 @@ public class SessionController {
         }
     }
 
+    /**
+     * Adds the users to the session and returns the outcome for each of them. Those who cannot be
+     * added, the session being full for instance, do not prevent the others from being added.
+     */
+    @PostMapping("{id}/participants")
+    public ResponseEntity<?> addParticipants(@PathVariable("id") String id, @Valid @RequestBody ParticipationBatchDto batchDto) {
+        try {
+            return ResponseEntity.ok().body(this.sessionService.addParticipants(Long.parseLong(id), batchDto.getIds()));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Adds the user to the sessions and returns the outcome for each of them.
+     */
+    @PostMapping("participations/{userId}")
+    public ResponseEntity<?> addParticipations(@PathVariable("userId") String userId, @Valid @RequestBody ParticipationBatchDto batchDto) {
+        try {
+            return ResponseEntity.ok().body(this.sessionService.addParticipations(Long.parseLong(userId), batchDto.getIds()));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
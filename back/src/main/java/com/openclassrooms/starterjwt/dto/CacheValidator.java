@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * ETag and Last-Modified of a resource, read with a single small query instead of the resource
+ * itself. The tag distinguishes states that share a timestamp: the version of a session, or the
+ * row count of a listing, whose deleted rows leave no newer timestamp behind.
+ */
+@Getter
+@ToString
+public class CacheValidator {
+    // Null when the resource, or every row of the listing, has no timestamp: it is then always
+    // sent in full
+    private final String etag;
+
+    // Epoch milliseconds, -1 if unknown
+    private final long lastModified;
+
+    public CacheValidator(LocalDateTime updatedAt) {
+        this(null, updatedAt);
+    }
+
+    // A resource whose related rows are stamped apart, the participants of a session for instance:
+    // it was last modified by the later of the two
+    public CacheValidator(Long tag, LocalDateTime updatedAt, LocalDateTime relatedUpdatedAt) {
+        this(tag, relatedUpdatedAt == null || (updatedAt != null && updatedAt.isAfter(relatedUpdatedAt))
+                ? updatedAt : relatedUpdatedAt);
+    }
+
+    public CacheValidator(Long tag, LocalDateTime updatedAt) {
+        if (updatedAt == null) {
+            this.etag = null;
+            this.lastModified = -1;
+            return;
+        }
+
+        long micros = ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), updatedAt);
+        this.etag = "W/\"" + (tag == null ? "" : tag + "-") + Long.toString(micros, 36) + "\"";
+        this.lastModified = updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Sets the ETag and Last-Modified headers of the response, and tells whether the client's copy
+     * is still current, in which case the response has become a 304 Not Modified.
+     */
+    public boolean isNotModified(WebRequest request) {
+        return this.etag != null && request.checkNotModified(this.etag, this.lastModified);
+    }
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one participation of a bulk enrollment. The others are applied whatever the outcome
+ * of this one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipationResultDto {
+    public enum Outcome {
+        ADDED,
+        ALREADY_PRESENT,
+        // On the waitlist of the session, where the user keeps their place
+        WAITING,
+        // No seat left for the user; bulk enrollments do not fill the waitlist
+        FULL,
+        // The session or the user does not exist
+        NOT_FOUND
+    }
+
+    private Long sessionId;
+
+    private Long userId;
+
+    private Outcome outcome;
+}
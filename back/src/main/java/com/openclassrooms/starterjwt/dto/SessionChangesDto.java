@@ -0,0 +1,29 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionChangesDto {
+    // Sessions created or updated since the watermark, their participants included
+    private List<SessionDto> updated;
+
+    // Ids of the sessions deleted since the watermark, on the last page
+    private List<Long> deleted;
+
+    // True on the first page when the watermark was too old to list the deletions: the pages then
+    // hold every session, and the client replaces its copy instead of merging
+    private boolean reset;
+
+    // On the last page only: to pass as the since parameter of the next sync
+    private LocalDateTime watermark;
+
+    // Set while further pages follow: to pass alone as the cursor parameter, to merge the next page
+    private String nextCursor;
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -36,4 +37,16 @@ public class SessionDto {
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
+
+    // Version the client read: an update sent with an older one is rejected
+    private Long version;
+
+    @Min(1)
+    private Integer capacity;
+
+    // Used by the read queries of SessionRepository: the participants are filled in afterwards
+    public SessionDto(Long id, String name, Date date, Long teacher_id, String description,
+                      LocalDateTime createdAt, LocalDateTime updatedAt, Long version, Integer capacity) {
+        this(id, name, date, teacher_id, description, null, createdAt, updatedAt, version, capacity);
+    }
 }
@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Change of a session pushed to the clients watching it. The event name is the type; the session
+ * itself is not sent, clients fetch it or sync their copy when they need it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionEvent {
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+    public static final String PARTICIPATE = "participate";
+    public static final String NO_LONGER_PARTICIPATE = "noLongerParticipate";
+
+    private String type;
+
+    private Long sessionId;
+
+    // The participant, for participate and noLongerParticipate
+    private Long userId;
+
+    public static SessionEvent of(String type, Long sessionId) {
+        return new SessionEvent(type, sessionId, null);
+    }
+}
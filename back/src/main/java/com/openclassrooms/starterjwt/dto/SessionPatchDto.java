@@ -0,0 +1,36 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import java.util.Date;
+
+/**
+ * Fields of a session to change; those left out, or null, keep their value. The participants are
+ * not part of it, and a capacity is removed with a full update only.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionPatchDto {
+    @Pattern(regexp = ".*\\S.*")
+    @Size(max = 50)
+    private String name;
+
+    private Date date;
+
+    private Long teacher_id;
+
+    @Size(max = 2500)
+    private String description;
+
+    // Version the client read: a patch sent with an older one is rejected
+    private Long version;
+
+    @Min(1)
+    private Integer capacity;
+}
@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionSearchPageDto {
+    // Best matches first
+    private List<SessionDto> items;
+
+    // Number of sessions matching the query, over all pages
+    private long total;
+}
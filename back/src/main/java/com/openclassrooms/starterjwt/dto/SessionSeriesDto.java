@@ -0,0 +1,37 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Weekly recurring sessions, like an iCalendar FREQ=WEEKLY;INTERVAL=;BYDAY=;UNTIL= rule: a copy of
+ * the session on each of the days, at the time of its date, from its date until the last day
+ * included, every interval weeks.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionSeriesDto {
+    // The first occurrence, and the time of all of them
+    @NotNull
+    @Valid
+    private SessionDto session;
+
+    @NotEmpty
+    private Set<DayOfWeek> days;
+
+    @NotNull
+    private LocalDate until;
+
+    @Min(1)
+    private Integer interval;
+}
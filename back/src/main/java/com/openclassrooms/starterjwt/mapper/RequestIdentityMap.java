@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.mapper;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Entities already resolved while the current HTTP request is handled, by type and id, so that
+ * the same teacher or user is fetched at most once per request. Ids that matched nothing are
+ * remembered too. Outside of a request nothing is shared between calls.
+ */
+@Component
+public class RequestIdentityMap {
+    private static final String ATTRIBUTE = RequestIdentityMap.class.getName();
+
+    public <T> T get(Class<T> type, Long id, Function<Long, T> loader) {
+        Map<Long, T> entities = entities(type);
+        if (!entities.containsKey(id)) {
+            entities.put(id, loader.apply(id));
+        }
+        return entities.get(id);
+    }
+
+    /**
+     * Resolves all the ids, loading the ones not seen yet in this request with a single call.
+     */
+    public <T> Map<Long, T> getAll(Class<T> type, Collection<Long> ids,
+                                   Function<Collection<Long>, Map<Long, T>> loader) {
+        Map<Long, T> entities = entities(type);
+        List<Long> missing = ids.stream()
+                .filter(id -> !entities.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            Map<Long, T> loaded = loader.apply(missing);
+            missing.forEach(id -> entities.put(id, loaded.get(id)));
+        }
+        return entities;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Map<Long, T> entities(Class<T> type) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return new HashMap<>();
+        }
+
+        Map<Class<?>, Map<Long, Object>> byType =
+                (Map<Class<?>, Map<Long, Object>>) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (byType == null) {
+            byType = new HashMap<>();
+            attributes.setAttribute(ATTRIBUTE, byType, RequestAttributes.SCOPE_REQUEST);
+        }
+        return (Map<Long, T>) byType.computeIfAbsent(type, t -> new HashMap<>());
+    }
+}
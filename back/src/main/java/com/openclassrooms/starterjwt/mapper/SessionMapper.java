@@ -1,10 +1,13 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
+import org.mapstruct.Context;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
@@ -13,6 +16,9 @@ import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -24,14 +30,52 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
     TeacherService teacherService;
     @Autowired
     UserService userService;
+    @Autowired
+    RequestIdentityMap identityMap;
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
-            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? teacher(sessionDto.getTeacher_id()) : null)"),
+            @Mapping(target = "users", expression = "java(sessionDto.getUsers() == null ? null : users(sessionDto.getUsers()))"),
     })
     public abstract Session toEntity(SessionDto sessionDto);
 
+    // Same mapping, with the participants already resolved for the whole batch
+    @Mappings({
+            @Mapping(source = "sessionDto.description", target = "description"),
+            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? teacher(sessionDto.getTeacher_id()) : null)"),
+            @Mapping(target = "users", expression = "java(sessionDto.getUsers() == null ? null : users(sessionDto.getUsers(), resolved))"),
+    })
+    protected abstract Session toEntity(SessionDto sessionDto, @Context Map<Long, User> resolved);
+
+    /**
+     * Resolves the participants of all the sessions with a single query, instead of one per session.
+     */
+    @Override
+    public List<Session> toEntity(List<SessionDto> dtoList) {
+        if (dtoList == null) {
+            return null;
+        }
+
+        List<Long> ids = dtoList.stream()
+                .map(SessionDto::getUsers)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        Map<Long, User> resolved = this.identityMap.getAll(User.class, ids, this.userService::findAllById);
+        return dtoList.stream().map(sessionDto -> toEntity(sessionDto, resolved)).collect(Collectors.toList());
+    }
+
+    // The teacher is only looked up when the patch changes it
+    @Mappings({
+            @Mapping(target = "teacher", expression = "java(patchDto.getTeacher_id() != null ? teacher(patchDto.getTeacher_id()) : null)"),
+            @Mapping(target = "id", ignore = true),
+            @Mapping(target = "users", ignore = true),
+            @Mapping(target = "createdAt", ignore = true),
+            @Mapping(target = "updatedAt", ignore = true),
+    })
+    public abstract Session toEntity(SessionPatchDto patchDto);
+
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
@@ -39,4 +83,17 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
             @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
     })
     public abstract SessionDto toDto(Session session);
+
+    protected Teacher teacher(Long id) {
+        return this.identityMap.get(Teacher.class, id, this.teacherService::findById);
+    }
+
+    // All the participants with one query, null for the ids that match no user
+    protected List<User> users(List<Long> ids) {
+        return users(ids, this.identityMap.getAll(User.class, ids, this.userService::findAllById));
+    }
+
+    protected List<User> users(List<Long> ids, Map<Long, User> resolved) {
+        return ids.stream().map(resolved::get).collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,35 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Trace of a change of the participants of a session, so that cached and synced copies of the
+ * session are refreshed. The traces are only ever inserted, and have no foreign key: a booking
+ * neither writes nor locks the SESSIONS row. Purged after oc.app.sessionTombstoneRetentionMs.
+ */
+@Entity
+@Table(name = "PARTICIPANT_CHANGES", indexes = {
+        @Index(name = "idx_participant_changes_session_id", columnList = "session_id, changed_at"),
+        @Index(name = "idx_participant_changes_changed_at", columnList = "changed_at")
+})
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"id"})
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class ParticipantChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false)
+    private Long sessionId;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,64 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "REFRESH_TOKENS", uniqueConstraints = {
+        @UniqueConstraint(columnNames = "token_hash")
+}, indexes = {
+        @Index(name = "idx_refresh_tokens_revoked_at", columnList = "revoked_at")
+})
+@EntityListeners(AuditingEntityListener.class)
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"id"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class RefreshToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 of the token handed to the client; the token itself is never stored
+    @NotNull
+    @Column(name = "token_hash", length = 64)
+    private String tokenHash;
+
+    // Plain column rather than a foreign key: revoked tokens outlive a deleted user
+    @NotNull
+    @Column(name = "user_id")
+    private Long userId;
+
+    @NotNull
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
+    @Column(name = "revoked_at")
+    private LocalDateTime revokedAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "revocation_reason", length = 20)
+    private RevocationReason revocationReason;
+
+    @CreatedDate
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    public enum RevocationReason {
+        // Exchanged for a new refresh token
+        ROTATED,
+        // Given back by the client on logout
+        LOGOUT,
+        // Every token of the user was revoked; access tokens issued before are rejected too
+        USER_REVOKED
+    }
+}
@@ -3,11 +3,13 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -16,8 +18,17 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS", indexes = {
+        // Also serves the date range filter
+        @Index(name = "idx_sessions_date_id", columnList = "date, id"),
+        // Sessions of a teacher by date; InnoDB appends the id to secondary indexes
+        @Index(name = "idx_sessions_teacher_id_date", columnList = "teacher_id, date"),
+        // Changes since a watermark, for clients syncing their copy
+        @Index(name = "idx_sessions_updated_at", columnList = "updated_at")
+})
 @EntityListeners(AuditingEntityListener.class)
+// Updates only set the columns that changed, so that an edit does not overwrite the others
+@DynamicUpdate
 @Data
 @Accessors(chain = true)
 @EqualsAndHashCode(of = {"id"})
@@ -26,8 +37,11 @@ import java.util.List;
 @AllArgsConstructor
 @ToString
 public class Session {
+    // Ids come from a sequence, or a table on MySQL, 50 per round trip: unlike IDENTITY, they are
+    // known before the insert, so that inserts can be sent in JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sessions_seq")
+    @SequenceGenerator(name = "sessions_seq", sequenceName = "SESSIONS_SEQ", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -45,11 +59,15 @@ public class Session {
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
-            inverseJoinColumns = @JoinColumn( name = "user_id" ) )
+            inverseJoinColumns = @JoinColumn( name = "user_id" ),
+            // Primary key of PARTICIPATE in the SQL script
+            uniqueConstraints = @UniqueConstraint(columnNames = {"session_id", "user_id"}),
+            // Sessions of a user
+            indexes = @Index(name = "idx_participate_user_id_session_id", columnList = "user_id, session_id") )
     private List<User> users;
 
     @CreatedDate
@@ -59,4 +77,12 @@ public class Session {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    // Incremented by every update of the session; participations are written apart
+    @Version
+    private Long version;
+
+    // Most participants, or null for no limit; the seats are counted in SESSION_SEATS
+    @Min(1)
+    private Integer capacity;
 }
@@ -0,0 +1,60 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+
+/**
+ * Seat counter of a session with a capacity. It is kept out of the SESSIONS row, which every
+ * participation reads through its foreign key and every edit writes: booking a seat only locks
+ * this row, for the single statement that takes the seat.
+ */
+@Entity
+@Table(name = "SESSION_SEATS")
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"sessionId"})
+@NoArgsConstructor
+@ToString
+public class SessionSeats implements Persistable<Long> {
+    @Id
+    @Column(name = "session_id")
+    private Long sessionId;
+
+    private int capacity;
+
+    // Seats held by participants; may exceed the capacity after it has been lowered
+    private int taken;
+
+    // A counter built by the application is inserted as is, instead of being merged, which reads
+    // the row first and prevents batching
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private boolean stored;
+
+    public SessionSeats(Long sessionId, int capacity, int taken) {
+        this.sessionId = sessionId;
+        this.capacity = capacity;
+        this.taken = taken;
+    }
+
+    @Override
+    public Long getId() {
+        return sessionId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+}
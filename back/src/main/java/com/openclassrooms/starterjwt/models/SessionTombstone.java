@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Trace of a deleted session, so that clients syncing their copy of the sessions learn about the
+ * deletion. Purged after oc.app.sessionTombstoneRetentionMs.
+ */
+@Entity
+@Table(name = "SESSION_TOMBSTONES", indexes = {
+        @Index(name = "idx_session_tombstones_deleted_at", columnList = "deleted_at")
+})
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"sessionId"})
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class SessionTombstone {
+    @Id
+    @Column(name = "session_id")
+    private Long sessionId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+}
@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Token to pass as the token parameter of /api/session/events
+@Getter
+@AllArgsConstructor
+public class EventsTokenResponse {
+  private String token;
+}
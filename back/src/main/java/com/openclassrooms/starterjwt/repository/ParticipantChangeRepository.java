@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.ParticipantChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ParticipantChangeRepository extends JpaRepository<ParticipantChange, Long> {
+    @Modifying
+    @Query(value = "insert into PARTICIPANT_CHANGES (session_id, changed_at) values (:sessionId, :changedAt)",
+            nativeQuery = true)
+    int record(@Param("sessionId") Long sessionId, @Param("changedAt") LocalDateTime changedAt);
+
+    // One trace per session, in a single statement
+    @Modifying
+    @Query(value = "insert into PARTICIPANT_CHANGES (session_id, changed_at) "
+            + "select id, :changedAt from SESSIONS where id in (:sessionIds)", nativeQuery = true)
+    int recordAll(@Param("sessionIds") Collection<Long> sessionIds, @Param("changedAt") LocalDateTime changedAt);
+
+    // Sessions whose participants changed in (since, until], in id order after the given one
+    @Query("select distinct c.sessionId from ParticipantChange c "
+            + "where c.changedAt > :since and c.changedAt <= :until and c.sessionId > :afterId "
+            + "order by c.sessionId")
+    List<Long> findSessionIdsChangedBetween(@Param("since") LocalDateTime since,
+                                            @Param("until") LocalDateTime until,
+                                            @Param("afterId") Long afterId,
+                                            Pageable pageable);
+
+    @Modifying
+    @Query("delete from ParticipantChange c where c.changedAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
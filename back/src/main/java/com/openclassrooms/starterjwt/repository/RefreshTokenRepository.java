@@ -0,0 +1,41 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.models.RefreshToken.RevocationReason;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+  Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+  @Modifying
+  @Query("update RefreshToken t set t.revokedAt = :now, t.revocationReason = :reason "
+      + "where t.tokenHash = :tokenHash and t.revokedAt is null")
+  int revokeByTokenHash(@Param("tokenHash") String tokenHash, @Param("now") LocalDateTime now,
+                        @Param("reason") RevocationReason reason);
+
+  @Modifying
+  @Query("update RefreshToken t set t.revokedAt = :now, t.revocationReason = :reason "
+      + "where t.userId = :userId and t.revokedAt is null")
+  int revokeAllByUserId(@Param("userId") Long userId, @Param("now") LocalDateTime now,
+                        @Param("reason") RevocationReason reason);
+
+  // Latest revocation per user since the given instant, as (userId, revokedAt) pairs
+  @Query("select t.userId, max(t.revokedAt) from RefreshToken t "
+      + "where t.revokedAt > :since and t.revocationReason = :reason group by t.userId")
+  List<Object[]> findLatestRevocationsSince(@Param("since") LocalDateTime since,
+                                            @Param("reason") RevocationReason reason);
+
+  @Modifying
+  @Query("delete from RefreshToken t where t.expiresAt < :before")
+  int deleteExpiredBefore(@Param("before") LocalDateTime before);
+}
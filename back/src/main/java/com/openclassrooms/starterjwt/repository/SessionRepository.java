@@ -1,9 +1,138 @@
 package com.openclassrooms.starterjwt.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import com.openclassrooms.starterjwt.dto.CacheValidator;
+import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, SessionRepositoryCustom {
+    // The read queries select the columns of the SESSIONS row straight into the DTO: neither the
+    // session nor its teacher and participants are loaded as entities. The participants are read
+    // separately with findParticipantIds.
+    String SESSION_DTO = "select new com.openclassrooms.starterjwt.dto.SessionDto("
+            + "s.id, s.name, s.date, t.id, s.description, s.createdAt, s.updatedAt, s.version, s.capacity) "
+            + "from Session s left join s.teacher t ";
+
+    @Query(SESSION_DTO + "where s.id = :id")
+    Optional<SessionDto> findDtoById(@Param("id") Long id);
+
+    @Query(SESSION_DTO + "where s.id in (:ids)")
+    List<SessionDto> findDtosByIds(@Param("ids") Collection<Long> ids);
+
+    // Rows of [id, name, description] for the search index, fetched from a cursor a batch at a
+    // time; must be consumed inside a transaction and closed
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select s.id, s.name, s.description from Session s")
+    Stream<Object[]> streamSearchFields();
+
+    // Sessions edited, or whose participants changed, after the given time, for the search index
+    @Query(SESSION_DTO + "where s.updatedAt > :since "
+            + "or s.id in (select c.sessionId from ParticipantChange c where c.changedAt > :since) "
+            + "order by s.updatedAt, s.id")
+    List<SessionDto> findUpdatedAfter(@Param("since") LocalDateTime since);
+
+    // Keyset pagination on the updated_at index, to which InnoDB appends the id: the sessions
+    // updated up to the given time, after the (updatedAt, id) position
+    @Query(SESSION_DTO + "where s.updatedAt <= :until "
+            + "and (s.updatedAt > :afterUpdatedAt or (s.updatedAt = :afterUpdatedAt and s.id > :afterId)) "
+            + "order by s.updatedAt, s.id")
+    List<SessionDto> findUpdatedPage(@Param("until") LocalDateTime until,
+                                     @Param("afterUpdatedAt") LocalDateTime afterUpdatedAt,
+                                     @Param("afterId") Long afterId,
+                                     Pageable pageable);
+
+    // Keyset pagination on the (date, id) index: only the page size is passed in the pageable, so
+    // each page is a range scan that starts at the cursor instead of skipping an offset. The
+    // following pages, and filtered ones, are read with findPage.
+    @Query(SESSION_DTO + "order by s.date, s.id")
+    List<SessionDto> findFirstPage(Pageable pageable);
+
+    /**
+     * Participants of the given sessions, as {@code [session_id, user_id]} rows read from the join
+     * table alone.
+     */
+    @Query(value = "select session_id, user_id from PARTICIPATE where session_id in (:sessionIds) "
+            + "order by session_id, user_id", nativeQuery = true)
+    List<Object[]> findParticipantIds(@Param("sessionIds") Collection<Long> sessionIds);
+
+    /**
+     * Adds the participant in a single statement, unless the session or the user does not exist or
+     * the user already participates. Returns the number of rows inserted, 0 or 1; a concurrent
+     * insert of the same pair is rejected by the primary key of PARTICIPATE.
+     */
+    @Modifying
+    @Query(value = "insert into PARTICIPATE (session_id, user_id) "
+            + "select s.id, u.id from SESSIONS s, USERS u where s.id = :sessionId and u.id = :userId "
+            + "and not exists (select 1 from PARTICIPATE p where p.session_id = s.id and p.user_id = u.id)",
+            nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Adds the participant in a single statement that does not read PARTICIPATE first, unless the
+     * session or the user does not exist. Returns the number of rows inserted, 0 or 1; a
+     * participation that already exists is rejected by the primary key of PARTICIPATE.
+     */
+    @Modifying
+    @Query(value = "insert into PARTICIPATE (session_id, user_id) "
+            + "select s.id, u.id from SESSIONS s, USERS u where s.id = :sessionId and u.id = :userId",
+            nativeQuery = true)
+    int insertParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Adds every user to every session in a single statement, but for the participations that
+     * already exist. Returns the number of rows inserted.
+     */
+    @Modifying
+    @Query(value = "insert into PARTICIPATE (session_id, user_id) "
+            + "select s.id, u.id from SESSIONS s, USERS u where s.id in (:sessionIds) and u.id in (:userIds) "
+            + "and not exists (select 1 from PARTICIPATE p where p.session_id = s.id and p.user_id = u.id)",
+            nativeQuery = true)
+    int addParticipants(@Param("sessionIds") Collection<Long> sessionIds, @Param("userIds") Collection<Long> userIds);
+
+    // The participations among the given sessions and users, as [session_id, user_id] rows
+    @Query(value = "select session_id, user_id from PARTICIPATE where session_id in (:sessionIds) and user_id in (:userIds)",
+            nativeQuery = true)
+    List<Object[]> findParticipations(@Param("sessionIds") Collection<Long> sessionIds, @Param("userIds") Collection<Long> userIds);
+
+    // Same rows, from a locking read: it sees the participations committed concurrently, waits for
+    // those in progress, and keeps other transactions from inserting the other pairs until the commit
+    @Query(value = "select session_id, user_id from PARTICIPATE where session_id in (:sessionIds) and user_id in (:userIds) "
+            + "for update", nativeQuery = true)
+    List<Object[]> lockParticipations(@Param("sessionIds") Collection<Long> sessionIds, @Param("userIds") Collection<Long> userIds);
+
+    @Query("select s.id from Session s where s.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from PARTICIPATE where session_id = :sessionId and user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Query(value = "select count(*) from PARTICIPATE where session_id = :sessionId", nativeQuery = true)
+    long countParticipants(@Param("sessionId") Long sessionId);
+
+    // The validators also cover the participants, through the latest of their changes
+    @Query("select new com.openclassrooms.starterjwt.dto.CacheValidator(s.version, s.updatedAt, "
+            + "(select max(c.changedAt) from ParticipantChange c where c.sessionId = s.id)) "
+            + "from Session s where s.id = :id")
+    Optional<CacheValidator> findValidatorById(@Param("id") Long id);
+
+    @Query("select new com.openclassrooms.starterjwt.dto.CacheValidator(count(s), max(s.updatedAt), "
+            + "(select max(c.changedAt) from ParticipantChange c)) from Session s")
+    CacheValidator findListValidator();
 }
@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionFilter;
+
+import java.util.List;
+
+public interface SessionRepositoryCustom {
+    /**
+     * Returns at most limit sessions matching the filter, ordered by date then id, starting after
+     * the cursor or from the first one when it is null.
+     */
+    List<SessionDto> findPage(SessionFilter filter, SessionCursor after, int limit);
+}
@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.SessionSeats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SessionSeatsRepository extends JpaRepository<SessionSeats, Long> {
+    // Takes a seat if one is left; returns 0 when the session is full or has no capacity
+    @Modifying
+    @Query("update SessionSeats s set s.taken = s.taken + 1 where s.sessionId = :sessionId and s.taken < s.capacity")
+    int reserve(@Param("sessionId") Long sessionId);
+
+    // Sets the seats taken to the number of participants, written first by the flush
+    @Modifying(flushAutomatically = true)
+    @Query(value = "update SESSION_SEATS set taken = (select count(*) from PARTICIPATE where session_id = :sessionId) "
+            + "where session_id = :sessionId", nativeQuery = true)
+    int recount(@Param("sessionId") Long sessionId);
+
+    // Locks the counters until the end of the transaction
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from SessionSeats s where s.sessionId in :sessionIds")
+    List<SessionSeats> findAllForUpdate(@Param("sessionIds") Collection<Long> sessionIds);
+
+    @Modifying
+    @Query("update SessionSeats s set s.taken = s.taken - 1 where s.sessionId = :sessionId and s.taken > 0")
+    int release(@Param("sessionId") Long sessionId);
+
+    @Modifying
+    @Query("update SessionSeats s set s.capacity = :capacity where s.sessionId = :sessionId")
+    int setCapacity(@Param("sessionId") Long sessionId, @Param("capacity") int capacity);
+}
@@ -1,9 +1,19 @@
 package com.openclassrooms.starterjwt.repository;
 
+import com.openclassrooms.starterjwt.dto.CacheValidator;
 import com.openclassrooms.starterjwt.models.Teacher;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface TeacherRepository  extends JpaRepository<Teacher, Long> {
+    @Query("select new com.openclassrooms.starterjwt.dto.CacheValidator(t.updatedAt) from Teacher t where t.id = :id")
+    Optional<CacheValidator> findValidatorById(@Param("id") Long id);
+
+    @Query("select new com.openclassrooms.starterjwt.dto.CacheValidator(count(t), max(t.updatedAt)) from Teacher t")
+    CacheValidator findListValidator();
 }
@@ -1,10 +1,22 @@
 package com.openclassrooms.starterjwt.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.openclassrooms.starterjwt.dto.CacheValidator;
 import com.openclassrooms.starterjwt.models.User;
 
 @Repository
@@ -12,4 +24,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByEmail(String email);
 
   Boolean existsByEmail(String email); 
+
+  // Must be consumed inside a transaction and closed. The driver fetches the rows from a cursor,
+  // 1000 at a time (useCursorFetch in the MySQL URL), instead of buffering the whole table first
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query("select u.email from User u")
+  Stream<String> streamAllEmails();
+
+  @Query("select new com.openclassrooms.starterjwt.dto.CacheValidator(u.updatedAt) from User u where u.id = :id")
+  Optional<CacheValidator> findValidatorById(@Param("id") Long id);
+
+  @Query("select u.id from User u where u.id in :ids")
+  List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+  @Modifying
+  @Query("update User u set u.password = :password where u.email = :email")
+  int updatePasswordByEmail(@Param("email") String email, @Param("password") String password);
 }
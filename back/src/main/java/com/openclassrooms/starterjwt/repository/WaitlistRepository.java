@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+    boolean existsBySessionIdAndUserId(Long sessionId, Long userId);
+
+    List<WaitlistEntry> findBySessionIdInAndUserIdIn(Collection<Long> sessionIds, Collection<Long> userIds);
+
+    Optional<WaitlistEntry> findFirstBySessionIdAndIdGreaterThanOrderByIdAsc(Long sessionId, Long id);
+
+    // Returns 0 if the entry was already removed, by a concurrent promotion for instance
+    @Modifying
+    @Query("delete from WaitlistEntry w where w.id = :id")
+    int deleteEntry(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from WaitlistEntry w where w.sessionId = :sessionId and w.userId = :userId")
+    int remove(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+}
@@ -0,0 +1,13 @@
+package com.openclassrooms.starterjwt.security.audit;
+
+public enum SecurityEvent {
+  INVALID_SIGNATURE,
+  MALFORMED_TOKEN,
+  EXPIRED_TOKEN,
+  UNSUPPORTED_TOKEN,
+  EMPTY_TOKEN,
+  INVALID_TOKEN,
+  REVOKED_TOKEN,
+  AUTHENTICATION_ERROR,
+  UNAUTHORIZED
+}
@@ -0,0 +1,83 @@
+package com.openclassrooms.starterjwt.security.audit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Aggregated logging of rejected requests. Each event only increments a counter; the first few
+ * events of each kind in a window are logged with their detail, and the counts of the window are
+ * logged as a single summary line when it is flushed. A flood of bad tokens therefore costs a few
+ * log lines per minute instead of one per request.
+ */
+@Component
+public class SecurityEventLogger implements MeterBinder {
+  private static final Logger logger = LoggerFactory.getLogger(SecurityEventLogger.class);
+
+  private static final SecurityEvent[] EVENTS = SecurityEvent.values();
+
+  private final LongAdder[] totals = new LongAdder[EVENTS.length];
+  private final LongAdder[] window = new LongAdder[EVENTS.length];
+  private final AtomicInteger[] samplesLeft = new AtomicInteger[EVENTS.length];
+
+  private final int samplesPerWindow;
+
+  public SecurityEventLogger(@Value("${oc.app.securityLogSamples:3}") int samplesPerWindow) {
+    this.samplesPerWindow = samplesPerWindow;
+    for (int i = 0; i < EVENTS.length; i++) {
+      totals[i] = new LongAdder();
+      window[i] = new LongAdder();
+      samplesLeft[i] = new AtomicInteger(samplesPerWindow);
+    }
+  }
+
+  public void record(SecurityEvent event, String detail) {
+    int i = event.ordinal();
+    totals[i].increment();
+    window[i].increment();
+
+    AtomicInteger samples = samplesLeft[i];
+    if (samples.get() > 0 && samples.getAndDecrement() > 0) {
+      logger.warn("{}: {}", event, detail);
+    }
+  }
+
+  public long getCount(SecurityEvent event) {
+    return totals[event.ordinal()].sum();
+  }
+
+  @Scheduled(fixedDelayString = "${oc.app.securityLogFlushMs:60000}")
+  public void flush() {
+    StringBuilder summary = null;
+    for (int i = 0; i < EVENTS.length; i++) {
+      long count = window[i].sumThenReset();
+      samplesLeft[i].set(samplesPerWindow);
+      if (count > 0) {
+        summary = summary == null ? new StringBuilder() : summary.append(", ");
+        summary.append(EVENTS[i]).append('=').append(count);
+      }
+    }
+
+    if (summary != null) {
+      logger.warn("Security events since last report: {}", summary);
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    for (SecurityEvent event : EVENTS) {
+      FunctionCounter.builder("security.events", totals[event.ordinal()], LongAdder::sum)
+          .tag("reason", event.name().toLowerCase())
+          .register(registry);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.openclassrooms.starterjwt.security.bulkhead;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * Dedicated, bounded pool for the CPU-bound authentication endpoints (BCrypt on login and
+ * register). Requests are handed off from the Tomcat worker, so an authentication storm can only
+ * saturate this pool; once its queue is full, callers get an immediate 503 with Retry-After.
+ */
+@Component
+public class AuthBulkhead implements MeterBinder, DisposableBean {
+  private final ThreadPoolExecutor executor;
+
+  private final long retryAfterSeconds;
+
+  private final LongAdder rejected = new LongAdder();
+
+  public AuthBulkhead(@Value("${oc.app.authPoolSize:0}") int poolSize,
+                      @Value("${oc.app.authQueueCapacity:100}") int queueCapacity,
+                      @Value("${oc.app.authRetryAfterSeconds:1}") long retryAfterSeconds) {
+    int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("auth-"),
+        new ThreadPoolExecutor.AbortPolicy());
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public CompletableFuture<ResponseEntity<?>> submit(Supplier<ResponseEntity<?>> task) {
+    try {
+      return CompletableFuture.supplyAsync(task, executor);
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      return CompletableFuture.completedFuture(ResponseEntity
+          .status(HttpStatus.SERVICE_UNAVAILABLE)
+          .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+          .body(new MessageResponse("Error: Too many authentication requests, retry later!")));
+    }
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    new ExecutorServiceMetrics(executor, "auth", Tags.empty()).bindTo(registry);
+    FunctionCounter.builder("auth.bulkhead.rejected", this, AuthBulkhead::getRejectedCount)
+        .description("Authentication requests rejected because the auth pool was saturated")
+        .register(registry);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,111 @@
+package com.openclassrooms.starterjwt.security.crypto;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * BCrypt encoder whose work factor is chosen for the host machine. Hashes stored with a lower cost
+ * are reported by {@link #upgradeEncoding(String)}, which makes Spring Security rehash the password
+ * after the next successful login. Stronger hashes are kept: nodes that calibrate to different
+ * costs would otherwise rehash the same passwords back and forth, and a node that calibrated low
+ * would weaken them. Pin oc.app.bcryptStrength to use the same cost on every node.
+ */
+public class AdaptiveBCryptPasswordEncoder implements PasswordEncoder {
+  private static final Logger logger = LoggerFactory.getLogger(AdaptiveBCryptPasswordEncoder.class);
+
+  private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+  private static final int MAX_STRENGTH = 31;
+
+  private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+  // Hashes timed per cost; the median ignores a sample slowed down by a pause or a busy host
+  private static final int CALIBRATION_SAMPLES = 5;
+
+  private final int strength;
+
+  private final BCryptPasswordEncoder delegate;
+
+  public AdaptiveBCryptPasswordEncoder(int strength) {
+    this.strength = strength;
+    this.delegate = new BCryptPasswordEncoder(strength);
+  }
+
+  public int getStrength() {
+    return strength;
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return delegate.encode(rawPassword);
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    return delegate.matches(rawPassword, encodedPassword);
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    int cost = costOf(encodedPassword);
+    return cost > 0 && cost < strength;
+  }
+
+  /**
+   * Returns the cost stored in a BCrypt hash, or -1 when the value is not a BCrypt hash.
+   */
+  public static int costOf(String encodedPassword) {
+    if (encodedPassword == null) {
+      return -1;
+    }
+
+    Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+    return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+  }
+
+  /**
+   * Picks the lowest cost, starting from {@code minStrength}, whose hash takes at least
+   * {@code minHashMs}; steps back once if that overshoots {@code maxHashMs}. Each step doubles
+   * the hashing time, so a window of a factor two always contains a candidate.
+   */
+  public static int calibrate(long minHashMs, long maxHashMs, int minStrength) {
+    // Warms up the BCrypt code path so the first measurement is not dominated by class loading
+    new BCryptPasswordEncoder(4).encode(CALIBRATION_PASSWORD);
+
+    int strength = minStrength;
+    long elapsedMs = measure(strength);
+    while (elapsedMs < minHashMs && strength < MAX_STRENGTH) {
+      strength++;
+      elapsedMs = measure(strength);
+    }
+
+    if (elapsedMs > maxHashMs && strength > minStrength) {
+      strength--;
+    }
+
+    logger.info("BCrypt cost calibrated to {} (target {}-{} ms per hash)", strength, minHashMs, maxHashMs);
+    return strength;
+  }
+
+  // Median time of a hash at the given cost
+  static long measure(int strength) {
+    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+    long[] samples = new long[CALIBRATION_SAMPLES];
+    for (int i = 0; i < samples.length; i++) {
+      long start = System.nanoTime();
+      encoder.encode(CALIBRATION_PASSWORD);
+      samples[i] = (System.nanoTime() - start) / 1_000_000;
+    }
+    Arrays.sort(samples);
+    long elapsedMs = samples[samples.length / 2];
+
+    logger.debug("BCrypt cost {} took {} ms (median of {})", strength, elapsedMs, samples.length);
+    return elapsedMs;
+  }
+}
@@ -7,36 +7,67 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.openclassrooms.starterjwt.security.audit.SecurityEvent;
+import com.openclassrooms.starterjwt.security.audit.SecurityEventLogger;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
+import io.jsonwebtoken.Claims;
+
 public class AuthTokenFilter extends OncePerRequestFilter {
+  // The only endpoint that takes a token in the URL, an events token, for browsers' EventSource
+  static final String EVENTS_PATH = "/api/session/events";
+  static final String EVENTS_TOKEN_PARAMETER = "token";
+
   @Autowired
   private JwtUtils jwtUtils;
 
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
-  private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
+  @Autowired
+  private UserCache userCache;
+
+  @Autowired
+  private TokenRevocationList revocationList;
+
+  @Autowired
+  private SecurityEventLogger securityEventLogger;
+
+  // When enabled, the principal is rebuilt from the token claims and the database is not queried.
+  @Value("${oc.app.jwtClaimsAuthentication:true}")
+  private boolean claimsAuthentication;
 
   @Override
   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
+      boolean eventsStream = jwt == null && isEventsStream(request);
+      if (eventsStream) {
+        jwt = request.getParameter(EVENTS_TOKEN_PARAMETER);
+      }
+      Claims claims = jwt != null ? jwtUtils.getValidatedClaims(jwt) : null;
+      if (claims != null && jwtUtils.isEventsToken(claims) != eventsStream) {
+        // An access token in the URL, or an events token used as a bearer token
+        securityEventLogger.record(SecurityEvent.INVALID_TOKEN, "Token used outside of its scope");
+      } else if (claims != null && revocationList.isRevoked(claims)) {
+        securityEventLogger.record(SecurityEvent.REVOKED_TOKEN, claims.getSubject());
+      } else if (claims != null) {
+        UserDetails userDetails = claimsAuthentication ? jwtUtils.getUserDetailsFromClaims(claims) : null;
+        if (userDetails == null) {
+          userDetails = loadUser(claims.getSubject());
+        }
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -47,12 +78,27 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         SecurityContextHolder.getContext().setAuthentication(authentication);
       }
     } catch (Exception e) {
-      logger.error("Cannot set user authentication: {}", e);
+      securityEventLogger.record(SecurityEvent.AUTHENTICATION_ERROR, e.toString());
     }
 
     filterChain.doFilter(request, response);
   }
 
+  private UserDetails loadUser(String username) {
+    UserDetails userDetails = userCache.getUserFromCache(username);
+    if (userDetails == null) {
+      userDetails = userDetailsService.loadUserByUsername(username);
+      userCache.putUserInCache(userDetails);
+    }
+
+    return userDetails;
+  }
+
+  private static boolean isEventsStream(HttpServletRequest request) {
+    return "GET".equals(request.getMethod())
+        && EVENTS_PATH.equals(request.getRequestURI().substring(request.getContextPath().length()));
+  }
+
   private String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
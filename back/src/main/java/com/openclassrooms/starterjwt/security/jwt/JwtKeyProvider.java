@@ -0,0 +1,202 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.EncodedKeySpec;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Signing and verification keys of the access tokens, decoded once at startup, and the parser
+ * that uses them. The parser is immutable and shared by all requests.
+ *
+ * <p>With HS512 the key is derived from {@code oc.app.jwtSecret}. With RS256 or ES256, a node
+ * only needs {@code oc.app.jwtPrivateKey} if it issues tokens; verifying nodes are given the
+ * public keys alone. Each public key is registered under a key id, written in the {@code kid}
+ * header of the tokens: a new key pair is rolled out by adding its public key first, then
+ * switching {@code oc.app.jwtKeyId} and the private key, and removing the old public key once
+ * the tokens it signed have expired.
+ */
+@Component
+public class JwtKeyProvider {
+  private static final Logger logger = LoggerFactory.getLogger(JwtKeyProvider.class);
+
+  private final SignatureAlgorithm algorithm;
+  private final String keyId;
+  private final Key signingKey;
+  private final Map<String, Key> verificationKeys;
+  private final Key defaultVerificationKey;
+  private final JwtParser parser;
+
+  @Autowired
+  public JwtKeyProvider(@Value("${oc.app.jwtAlgorithm:HS512}") String algorithm,
+                        @Value("${oc.app.jwtSecret:}") String jwtSecret,
+                        @Value("${oc.app.jwtKeyId:}") String keyId,
+                        @Value("${oc.app.jwtPrivateKey:}") String privateKeyLocation,
+                        @Value("${oc.app.jwtPublicKeys:}") String publicKeyLocations,
+                        ResourceLoader resourceLoader) {
+    this(loadKeys(SignatureAlgorithm.forName(algorithm), jwtSecret, keyId, privateKeyLocation, publicKeyLocations,
+        resourceLoader));
+    logger.info("JWT keys loaded: {} with key ids {}", this.algorithm, verificationKeys.keySet());
+  }
+
+  /**
+   * @param keyId written in the header of the issued tokens, or null
+   * @param signingKey null on nodes that only verify tokens
+   * @param verificationKeys keys by {@code kid}
+   * @param defaultVerificationKey used for tokens without {@code kid}, or null to reject them
+   */
+  public JwtKeyProvider(SignatureAlgorithm algorithm, String keyId, Key signingKey,
+                        Map<String, Key> verificationKeys, Key defaultVerificationKey) {
+    this.algorithm = algorithm;
+    this.keyId = StringUtils.hasText(keyId) ? keyId : null;
+    this.signingKey = signingKey;
+    this.verificationKeys = Collections.unmodifiableMap(new HashMap<>(verificationKeys));
+    this.defaultVerificationKey = defaultVerificationKey;
+
+    if (signingKey != null && this.keyId != null && !verificationKeys.containsKey(this.keyId)) {
+      throw new IllegalStateException("No verification key for the signing key id " + this.keyId);
+    }
+
+    this.parser = Jwts.parserBuilder()
+        .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+          @Override
+          public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            return verificationKey(header.getKeyId());
+          }
+        })
+        .build();
+  }
+
+  private JwtKeyProvider(JwtKeyProvider keys) {
+    this(keys.algorithm, keys.keyId, keys.signingKey, keys.verificationKeys, keys.defaultVerificationKey);
+  }
+
+  public SignatureAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  public String getKeyId() {
+    return keyId;
+  }
+
+  public Key getSigningKey() {
+    if (signingKey == null) {
+      throw new IllegalStateException("This node has no private key and cannot issue tokens");
+    }
+    return signingKey;
+  }
+
+  public JwtParser parser() {
+    return parser;
+  }
+
+  Key verificationKey(String kid) {
+    Key key = kid != null ? verificationKeys.get(kid) : defaultVerificationKey;
+    if (key == null) {
+      throw new UnsupportedJwtException("Unknown JWT key id: " + kid);
+    }
+    return key;
+  }
+
+  /**
+   * HS512 needs a key of at least 512 bits, which a configured secret rarely is: the key is the
+   * SHA-512 digest of the secret.
+   */
+  public static Key hmacKey(String secret) {
+    try {
+      return Keys.hmacShaKeyFor(MessageDigest.getInstance("SHA-512").digest(secret.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static JwtKeyProvider loadKeys(SignatureAlgorithm algorithm, String jwtSecret, String keyId,
+                                         String privateKeyLocation, String publicKeyLocations,
+                                         ResourceLoader resourceLoader) {
+    if (algorithm.isHmac()) {
+      if (!StringUtils.hasText(jwtSecret)) {
+        throw new IllegalStateException("oc.app.jwtSecret is required with " + algorithm);
+      }
+      Key key = hmacKey(jwtSecret);
+      Map<String, Key> keys = StringUtils.hasText(keyId) ? Collections.singletonMap(keyId, key) : Collections.emptyMap();
+      return new JwtKeyProvider(algorithm, keyId, key, keys, key);
+    }
+
+    Map<String, Key> publicKeys = new HashMap<>();
+    for (String entry : StringUtils.commaDelimitedListToStringArray(publicKeyLocations)) {
+      String[] kidAndLocation = entry.trim().split("=", 2);
+      if (kidAndLocation.length != 2) {
+        throw new IllegalStateException("Expected kid=location in oc.app.jwtPublicKeys: " + entry);
+      }
+      publicKeys.put(kidAndLocation[0], readKey(resourceLoader, kidAndLocation[1], X509EncodedKeySpec::new));
+    }
+    if (publicKeys.isEmpty()) {
+      throw new IllegalStateException("oc.app.jwtPublicKeys is required with " + algorithm);
+    }
+
+    Key privateKey = null;
+    if (StringUtils.hasText(privateKeyLocation)) {
+      if (!StringUtils.hasText(keyId)) {
+        throw new IllegalStateException("oc.app.jwtKeyId is required to sign with " + algorithm);
+      }
+      privateKey = readKey(resourceLoader, privateKeyLocation, PKCS8EncodedKeySpec::new);
+    }
+
+    return new JwtKeyProvider(algorithm, keyId, privateKey, publicKeys, null);
+  }
+
+  // Reads a PEM encoded public (X.509) or private (PKCS#8) RSA or EC key
+  private static Key readKey(ResourceLoader resourceLoader, String location, Function<byte[], EncodedKeySpec> spec) {
+    byte[] der;
+    try (InputStream in = resourceLoader.getResource(location).getInputStream()) {
+      String pem = StreamUtils.copyToString(in, StandardCharsets.US_ASCII);
+      der = Base64.getMimeDecoder().decode(pem.replaceAll("-----[A-Z ]+-----", ""));
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read the JWT key " + location, e);
+    }
+
+    for (String family : new String[] { "RSA", "EC" }) {
+      try {
+        KeyFactory factory = KeyFactory.getInstance(family);
+        EncodedKeySpec keySpec = spec.apply(der);
+        return keySpec instanceof PKCS8EncodedKeySpec ? factory.generatePrivate(keySpec) : factory.generatePublic(keySpec);
+      } catch (InvalidKeySpecException e) {
+        // Not a key of this family, try the next one
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    throw new IllegalStateException("Unsupported JWT key " + location);
+  }
+}
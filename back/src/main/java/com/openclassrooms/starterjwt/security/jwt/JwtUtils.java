@@ -2,58 +2,144 @@ package com.openclassrooms.starterjwt.security.jwt;
 
 import java.util.Date;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import com.openclassrooms.starterjwt.security.audit.SecurityEvent;
+import com.openclassrooms.starterjwt.security.audit.SecurityEventLogger;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
 
 @Component
 public class JwtUtils {
-  private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
-
-  @Value("${oc.app.jwtSecret}")
-  private String jwtSecret;
+  public static final String CLAIM_ID = "id";
+  static final String CLAIM_FIRST_NAME = "firstName";
+  static final String CLAIM_LAST_NAME = "lastName";
+  static final String CLAIM_ADMIN = "admin";
+  static final String CLAIM_SCOPE = "scope";
+  static final String SCOPE_SESSION_EVENTS = "session-events";
 
   @Value("${oc.app.jwtExpirationMs}")
-  private int jwtExpirationMs;
+  private long jwtExpirationMs;
+
+  // Lifetime of the tokens that open the session event stream: the stream is authenticated once,
+  // when it connects
+  @Value("${oc.app.jwtEventsExpirationMs:60000}")
+  private long eventsExpirationMs = 60000;
+
+  private final VerifiedTokenCache tokenCache;
+
+  private final JwtKeyProvider keyProvider;
+
+  private final SecurityEventLogger securityEventLogger;
+
+  public JwtUtils(VerifiedTokenCache tokenCache, JwtKeyProvider keyProvider, SecurityEventLogger securityEventLogger) {
+    this.tokenCache = tokenCache;
+    this.keyProvider = keyProvider;
+    this.securityEventLogger = securityEventLogger;
+  }
 
   public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
+
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
+    return builder(userPrincipal, jwtExpirationMs).compact();
+  }
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  /**
+   * Short-lived token that only opens the session event stream. A browser EventSource cannot set
+   * the Authorization header, so it is passed in the URL, where it may end up in access logs; it is
+   * refused as a bearer token anywhere else.
+   */
+  public String generateEventsToken(UserDetailsImpl userPrincipal) {
+    return builder(userPrincipal, eventsExpirationMs)
+        .claim(CLAIM_SCOPE, SCOPE_SESSION_EVENTS)
+        .compact();
+  }
+
+  public boolean isEventsToken(Claims claims) {
+    return SCOPE_SESSION_EVENTS.equals(claims.get(CLAIM_SCOPE, String.class));
+  }
 
+  private JwtBuilder builder(UserDetailsImpl userPrincipal, long expirationMs) {
+    Date now = new Date();
     return Jwts.builder()
+        .setHeaderParam(JwsHeader.KEY_ID, keyProvider.getKeyId())
         .setSubject((userPrincipal.getUsername()))
-        .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
-        .compact();
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+        .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+        .claim(CLAIM_ADMIN, userPrincipal.getAdmin())
+        .setIssuedAt(now)
+        .setExpiration(new Date(now.getTime() + expirationMs))
+        .signWith(keyProvider.getSigningKey(), keyProvider.getAlgorithm());
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    return parseClaims(token).getSubject();
+  }
+
+  /**
+   * Rebuilds the principal from the signed claims of the token, without any database lookup.
+   * Returns null for tokens issued before the claims were added, so that callers can fall back
+   * to loading the user by name.
+   */
+  public UserDetailsImpl getUserDetailsFromJwtToken(String token) {
+    return getUserDetailsFromClaims(parseClaims(token));
+  }
+
+  public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+    Long id = claims.get(CLAIM_ID, Long.class);
+    if (id == null) {
+      return null;
+    }
+
+    return UserDetailsImpl
+            .builder()
+            .id(id)
+            .username(claims.getSubject())
+            .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+            .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+            .admin(Boolean.TRUE.equals(claims.get(CLAIM_ADMIN, Boolean.class)))
+            .build();
   }
 
   public boolean validateJwtToken(String authToken) {
+    return getValidatedClaims(authToken) != null;
+  }
+
+  /**
+   * Verifies the token and returns its claims, or null when the token is invalid. The signature
+   * is checked once per token: later calls are served from the verified-token cache.
+   */
+  public Claims getValidatedClaims(String authToken) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      return parseClaims(authToken);
     } catch (SignatureException e) {
-      logger.error("Invalid JWT signature: {}", e.getMessage());
+      securityEventLogger.record(SecurityEvent.INVALID_SIGNATURE, e.getMessage());
     } catch (MalformedJwtException e) {
-      logger.error("Invalid JWT token: {}", e.getMessage());
+      securityEventLogger.record(SecurityEvent.MALFORMED_TOKEN, e.getMessage());
     } catch (ExpiredJwtException e) {
-      logger.error("JWT token is expired: {}", e.getMessage());
+      securityEventLogger.record(SecurityEvent.EXPIRED_TOKEN, e.getMessage());
     } catch (UnsupportedJwtException e) {
-      logger.error("JWT token is unsupported: {}", e.getMessage());
+      securityEventLogger.record(SecurityEvent.UNSUPPORTED_TOKEN, e.getMessage());
     } catch (IllegalArgumentException e) {
-      logger.error("JWT claims string is empty: {}", e.getMessage());
+      securityEventLogger.record(SecurityEvent.EMPTY_TOKEN, e.getMessage());
+    } catch (JwtException e) {
+      securityEventLogger.record(SecurityEvent.INVALID_TOKEN, e.getMessage());
+    }
+
+    return null;
+  }
+
+  private Claims parseClaims(String token) {
+    if (token == null || token.isEmpty()) {
+      throw new IllegalArgumentException("JWT String argument cannot be null or empty.");
     }
 
-    return false;
+    return tokenCache.get(token, t -> keyProvider.parser().parseClaimsJws(t).getBody());
   }
 }
@@ -0,0 +1,96 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.models.RefreshToken.RevocationReason;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Per-user token epochs: access tokens issued before the epoch of their user are rejected. Token
+ * issue times are whole seconds, so epochs are too: a token issued in the second of a revocation,
+ * maybe right after it, is accepted.
+ * The lookup is a single map access, so revocation is enforced without any database round-trip
+ * on the request path. The map is rebuilt from the revoked refresh tokens at startup and kept in
+ * sync with other nodes by a periodic query; entries older than the access-token lifetime are
+ * dropped since no token they could reject is still valid.
+ */
+@Component
+public class TokenRevocationList {
+  private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+  private final Map<Long, Long> notBefore = new ConcurrentHashMap<>();
+
+  private final RefreshTokenRepository refreshTokenRepository;
+
+  private final long jwtExpirationMs;
+
+  private volatile LocalDateTime lastSync;
+
+  public TokenRevocationList(RefreshTokenRepository refreshTokenRepository,
+                             @Value("${oc.app.jwtExpirationMs}") long jwtExpirationMs) {
+    this.refreshTokenRepository = refreshTokenRepository;
+    this.jwtExpirationMs = jwtExpirationMs;
+  }
+
+  @PostConstruct
+  public void load() {
+    lastSync = LocalDateTime.now().minusNanos(jwtExpirationMs * 1_000_000);
+    synchronize();
+    logger.info("Token revocation list loaded with {} users", notBefore.size());
+  }
+
+  public boolean isRevoked(Claims claims) {
+    Long userId = claims.get(JwtUtils.CLAIM_ID, Long.class);
+    if (userId == null) {
+      return false;
+    }
+
+    Long epoch = notBefore.get(userId);
+    Date issuedAt = claims.getIssuedAt();
+    return epoch != null && (issuedAt == null || issuedAt.getTime() < epoch);
+  }
+
+  public void revokeUser(Long userId, LocalDateTime revokedAt) {
+    notBefore.merge(userId, toEpochMilli(revokedAt.truncatedTo(ChronoUnit.SECONDS)), Math::max);
+  }
+
+  public int size() {
+    return notBefore.size();
+  }
+
+  @Scheduled(fixedDelayString = "${oc.app.revocationSyncMs:30000}")
+  public void synchronize() {
+    LocalDateTime now = LocalDateTime.now();
+    // Overlaps the previous window a little so that revocations committed late are not missed
+    LocalDateTime since = lastSync.minusSeconds(5);
+
+    List<Object[]> revocations = refreshTokenRepository.findLatestRevocationsSince(since, RevocationReason.USER_REVOKED);
+    for (Object[] revocation : revocations) {
+      revokeUser((Long) revocation[0], (LocalDateTime) revocation[1]);
+    }
+    lastSync = now;
+
+    long expired = System.currentTimeMillis() - jwtExpirationMs;
+    notBefore.values().removeIf(epoch -> epoch < expired);
+  }
+
+  private static long toEpochMilli(LocalDateTime dateTime) {
+    return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+}
@@ -0,0 +1,146 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bounded cache of tokens whose signature has already been verified, keyed by the SHA-256 digest
+ * of the token. Entries expire at the token's {@code exp}, so a cached token is never accepted
+ * after it would have been rejected by the parser.
+ */
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+  private final Map<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+
+  private final int maxEntries;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public VerifiedTokenCache(@Value("${oc.app.jwtCacheMaxEntries:10000}") int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Returns the verified claims of the token, calling the verifier on a miss only. Concurrent
+   * misses on the same token may each verify it; one entry is kept. Verification errors are
+   * propagated and never cached.
+   */
+  public Claims get(String token, Function<String, Claims> verifier) {
+    ByteBuffer key = digest(token);
+    long now = System.currentTimeMillis();
+
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      if (entry.expiresAt > now) {
+        hits.increment();
+        return entry.claims;
+      }
+      if (entries.remove(key, entry)) {
+        evictions.increment();
+      }
+    }
+
+    if (entries.size() >= maxEntries) {
+      evict(now);
+    }
+
+    // Verified outside of the map: computeIfAbsent would hold the lock of the bin, and block the
+    // other tokens hashed to it, for the whole signature check
+    misses.increment();
+    Claims claims = verifier.apply(token);
+    Date expiration = claims.getExpiration();
+    Entry verified = new Entry(claims, expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+
+    // A concurrent request may have verified the same token meanwhile: keep a single entry
+    entry = entries.putIfAbsent(key, verified);
+    return entry != null ? entry.claims : claims;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("jwt.cache.hits", this, VerifiedTokenCache::getHitCount)
+        .description("Tokens served from the verified-token cache")
+        .register(registry);
+    FunctionCounter.builder("jwt.cache.misses", this, VerifiedTokenCache::getMissCount)
+        .description("Tokens parsed and verified")
+        .register(registry);
+    FunctionCounter.builder("jwt.cache.evictions", this, VerifiedTokenCache::getEvictionCount)
+        .description("Tokens removed on expiry or to respect the size limit")
+        .register(registry);
+    Gauge.builder("jwt.cache.size", this, VerifiedTokenCache::size)
+        .register(registry);
+  }
+
+  // Drops expired entries first, then arbitrary ones until a tenth of the capacity is free.
+  private void evict(long now) {
+    entries.entrySet().removeIf(e -> {
+      if (e.getValue().expiresAt <= now) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    });
+
+    int target = maxEntries - Math.max(1, maxEntries / 10);
+    Iterator<ByteBuffer> keys = entries.keySet().iterator();
+    while (entries.size() > target && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+      evictions.increment();
+    }
+  }
+
+  private static ByteBuffer digest(String token) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static final class Entry {
+    private final Claims claims;
+    private final long expiresAt;
+
+    private Entry(Claims claims, long expiresAt) {
+      this.claims = claims;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * In-process throttling of the authentication endpoints, with one token bucket per client IP and
+ * one per account email. It runs before any password hashing, so rejected attempts cost a map
+ * lookup and a CAS instead of a BCrypt verification.
+ */
+@Component
+public class LoginRateLimiter implements MeterBinder {
+  private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+  private final Map<String, TokenBucket> emailBuckets = new ConcurrentHashMap<>();
+
+  private final int ipCapacity;
+  private final long ipRefillNanos;
+  private final int emailCapacity;
+  private final long emailRefillNanos;
+
+  private final LongSupplier clock;
+
+  private final LongAdder ipRejected = new LongAdder();
+  private final LongAdder emailRejected = new LongAdder();
+
+  @Autowired
+  public LoginRateLimiter(@Value("${oc.app.loginIpCapacity:20}") int ipCapacity,
+                          @Value("${oc.app.loginIpRefillMs:1000}") long ipRefillMs,
+                          @Value("${oc.app.loginEmailCapacity:5}") int emailCapacity,
+                          @Value("${oc.app.loginEmailRefillMs:12000}") long emailRefillMs) {
+    this(ipCapacity, ipRefillMs, emailCapacity, emailRefillMs, System::nanoTime);
+  }
+
+  LoginRateLimiter(int ipCapacity, long ipRefillMs, int emailCapacity, long emailRefillMs, LongSupplier clock) {
+    this.ipCapacity = ipCapacity;
+    this.ipRefillNanos = TimeUnit.MILLISECONDS.toNanos(ipRefillMs);
+    this.emailCapacity = emailCapacity;
+    this.emailRefillNanos = TimeUnit.MILLISECONDS.toNanos(emailRefillMs);
+    this.clock = clock;
+  }
+
+  /**
+   * Takes a token for the client IP and, when given, for the email. Returns 0 when the request may
+   * proceed, otherwise the number of milliseconds the client should wait before retrying.
+   */
+  public long tryAcquire(String email, String clientIp) {
+    long now = clock.getAsLong();
+
+    if (clientIp != null) {
+      long waitNanos = take(ipBuckets, clientIp, ipCapacity, ipRefillNanos, now);
+      if (waitNanos > 0) {
+        ipRejected.increment();
+        return toMillis(waitNanos);
+      }
+    }
+
+    if (email != null) {
+      String key = email.trim().toLowerCase(Locale.ROOT);
+      long waitNanos = take(emailBuckets, key, emailCapacity, emailRefillNanos, now);
+      if (waitNanos > 0) {
+        emailRejected.increment();
+        return toMillis(waitNanos);
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Drops buckets that have refilled completely: recreating them on the next request gives the
+   * same result, so only clients that are currently being throttled use memory. Each bucket is
+   * retired under the lock of its map entry, and only if no token was taken since it was seen
+   * idle.
+   */
+  @Scheduled(fixedDelayString = "${oc.app.loginBucketSweepMs:60000}")
+  public void evictIdleBuckets() {
+    long now = clock.getAsLong();
+    evictIdle(ipBuckets, now);
+    evictIdle(emailBuckets, now);
+  }
+
+  private static void evictIdle(Map<String, TokenBucket> buckets, long now) {
+    for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+      if (entry.getValue().isIdle(now)) {
+        buckets.computeIfPresent(entry.getKey(), (key, bucket) -> bucket.retire(now) ? null : bucket);
+      }
+    }
+  }
+
+  public int size() {
+    return ipBuckets.size() + emailBuckets.size();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("auth.ratelimit.rejected", ipRejected, LongAdder::sum)
+        .tag("key", "ip")
+        .register(registry);
+    FunctionCounter.builder("auth.ratelimit.rejected", emailRejected, LongAdder::sum)
+        .tag("key", "email")
+        .register(registry);
+    Gauge.builder("auth.ratelimit.buckets", this, LoginRateLimiter::size)
+        .register(registry);
+  }
+
+  // Takes from the bucket of the key, or from a new one when it was evicted in the meantime
+  private static long take(Map<String, TokenBucket> buckets, String key, int capacity, long refillNanos, long now) {
+    while (true) {
+      TokenBucket bucket = buckets.get(key);
+      if (bucket == null || bucket.isRetired()) {
+        bucket = buckets.compute(key, (k, current) -> current == null || current.isRetired()
+            ? new TokenBucket(capacity, refillNanos, now)
+            : current);
+      }
+      long waitNanos = bucket.tryTake(now);
+      if (waitNanos != TokenBucket.RETIRED) {
+        return waitNanos;
+      }
+    }
+  }
+
+  private static long toMillis(long nanos) {
+    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos + 999_999));
+  }
+}
@@ -0,0 +1,65 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Its whole state is the instant at which the bucket will be full again
+ * (the "theoretical arrival time" of the generic cell rate algorithm), updated with a single CAS:
+ * taking a token pushes that instant one refill interval further, and the take is refused when
+ * the bucket would then be more than {@code capacity} tokens in debt.
+ */
+class TokenBucket {
+  // Returned by tryTake() once the bucket has been evicted: the caller takes from a new one
+  static final long RETIRED = Long.MIN_VALUE;
+
+  private final long refillNanos;
+
+  private final long burstNanos;
+
+  private final AtomicLong fullAt;
+
+  TokenBucket(int capacity, long refillNanos, long now) {
+    this.refillNanos = refillNanos;
+    this.burstNanos = refillNanos * capacity;
+    this.fullAt = new AtomicLong(now);
+  }
+
+  /**
+   * Takes one token. Returns 0 on success, otherwise the number of nanoseconds until a token
+   * becomes available; a refused call does not consume anything.
+   */
+  long tryTake(long now) {
+    while (true) {
+      long current = fullAt.get();
+      if (current == RETIRED) {
+        return RETIRED;
+      }
+      long next = Math.max(current, now) + refillNanos;
+      long debt = next - now;
+      if (debt > burstNanos) {
+        return debt - burstNanos;
+      }
+      if (fullAt.compareAndSet(current, next)) {
+        return 0;
+      }
+    }
+  }
+
+  boolean isIdle(long now) {
+    long current = fullAt.get();
+    return current != RETIRED && current <= now;
+  }
+
+  /**
+   * Retires the bucket if it is still full, in the same CAS as the takes: a take that lands first
+   * keeps the bucket, and one that comes after sees it retired instead of being lost with it.
+   */
+  boolean retire(long now) {
+    long current = fullAt.get();
+    return current != RETIRED && current <= now && fullAt.compareAndSet(current, RETIRED);
+  }
+
+  boolean isRetired() {
+    return fullAt.get() == RETIRED;
+  }
+}
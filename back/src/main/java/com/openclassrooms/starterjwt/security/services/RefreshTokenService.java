@@ -0,0 +1,150 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.models.RefreshToken.RevocationReason;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+
+/**
+ * Opaque, single-use refresh tokens. Only their SHA-256 is stored; each refresh revokes the token
+ * it consumes, and presenting an already rotated token revokes every token of the user, since it
+ * means the token was copied.
+ */
+@Service
+public class RefreshTokenService {
+  private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+  private static final int TOKEN_BYTES = 32;
+
+  private final SecureRandom random = new SecureRandom();
+
+  private final RefreshTokenRepository refreshTokenRepository;
+  private final TokenRevocationList revocationList;
+
+  private final long jwtRefreshExpirationMs;
+  private final long jwtExpirationMs;
+
+  public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                             TokenRevocationList revocationList,
+                             @Value("${oc.app.jwtRefreshExpirationMs}") long jwtRefreshExpirationMs,
+                             @Value("${oc.app.jwtExpirationMs}") long jwtExpirationMs) {
+    this.refreshTokenRepository = refreshTokenRepository;
+    this.revocationList = revocationList;
+    this.jwtRefreshExpirationMs = jwtRefreshExpirationMs;
+    this.jwtExpirationMs = jwtExpirationMs;
+  }
+
+  @Transactional
+  public String create(Long userId) {
+    byte[] bytes = new byte[TOKEN_BYTES];
+    random.nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+    refreshTokenRepository.save(RefreshToken.builder()
+        .tokenHash(hash(token))
+        .userId(userId)
+        .expiresAt(LocalDateTime.now().plusNanos(jwtRefreshExpirationMs * 1_000_000))
+        .build());
+
+    return token;
+  }
+
+  /**
+   * Revokes the token and returns the id of its user, or null when the token is unknown, expired
+   * or already used.
+   */
+  @Transactional
+  public Long consume(String token) {
+    String tokenHash = hash(token);
+    Optional<RefreshToken> found = refreshTokenRepository.findByTokenHash(tokenHash);
+    if (!found.isPresent()) {
+      return null;
+    }
+
+    RefreshToken refreshToken = found.get();
+    if (refreshToken.getRevokedAt() != null) {
+      if (refreshToken.getRevocationReason() == RevocationReason.ROTATED) {
+        logger.warn("Refresh token reused for user {}, revoking all its tokens", refreshToken.getUserId());
+        revokeAll(refreshToken.getUserId());
+      }
+      return null;
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+    if (refreshToken.getExpiresAt().isBefore(now)) {
+      return null;
+    }
+
+    // Conditional update: of two concurrent refreshes with the same token, only one succeeds
+    if (refreshTokenRepository.revokeByTokenHash(tokenHash, now, RevocationReason.ROTATED) == 0) {
+      return null;
+    }
+
+    return refreshToken.getUserId();
+  }
+
+  @Transactional
+  public void revoke(String token) {
+    refreshTokenRepository.revokeByTokenHash(hash(token), LocalDateTime.now(), RevocationReason.LOGOUT);
+  }
+
+  /**
+   * Revokes the refresh tokens of the user and rejects its access tokens issued until now. The
+   * revocation is applied locally at once and reaches the other nodes with their next sync.
+   */
+  @Transactional
+  public void revokeAll(Long userId) {
+    LocalDateTime now = LocalDateTime.now();
+    if (refreshTokenRepository.revokeAllByUserId(userId, now, RevocationReason.USER_REVOKED) == 0) {
+      // No live refresh token: a marker row still carries the revocation to the other nodes
+      refreshTokenRepository.save(RefreshToken.builder()
+          .tokenHash(hash(UUID.randomUUID().toString()))
+          .userId(userId)
+          .expiresAt(now.plusNanos(jwtExpirationMs * 1_000_000))
+          .revokedAt(now)
+          .revocationReason(RevocationReason.USER_REVOKED)
+          .build());
+    }
+
+    revocationList.revokeUser(userId, now);
+  }
+
+  // Keeps revoked rows for one access-token lifetime, so that the revocation list can be rebuilt
+  @Scheduled(fixedDelayString = "${oc.app.refreshTokenPurgeMs:3600000}")
+  @Transactional
+  public void purgeExpired() {
+    int deleted = refreshTokenRepository.deleteExpiredBefore(LocalDateTime.now().minusNanos(jwtExpirationMs * 1_000_000));
+    if (deleted > 0) {
+      logger.info("Purged {} expired refresh tokens", deleted);
+    }
+  }
+
+  static String hash(String token) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+/**
+ * Short-lived principal cache used by the JWT filter when the user has to be loaded from the
+ * database. Entries expire after {@code oc.app.principalCacheTtlMs}; a TTL of 0 disables caching.
+ * Cached users hold no password: the filter only reads the principal, and login goes through the
+ * authentication manager, which does not use this cache. Users whose credentials cannot be erased
+ * are not cached.
+ */
+@Component
+public class TtlUserCache implements UserCache {
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final long ttlMs;
+
+  private final int maxEntries;
+
+  public TtlUserCache(@Value("${oc.app.principalCacheTtlMs:30000}") long ttlMs,
+                      @Value("${oc.app.principalCacheMaxEntries:10000}") int maxEntries) {
+    this.ttlMs = ttlMs;
+    this.maxEntries = maxEntries;
+  }
+
+  @Override
+  public UserDetails getUserFromCache(String username) {
+    Entry entry = entries.get(username);
+    if (entry == null) {
+      return null;
+    }
+
+    if (entry.expiresAt <= System.currentTimeMillis()) {
+      entries.remove(username, entry);
+      return null;
+    }
+
+    return entry.user;
+  }
+
+  @Override
+  public void putUserInCache(UserDetails user) {
+    if (ttlMs <= 0 || !(user instanceof CredentialsContainer)) {
+      return;
+    }
+    ((CredentialsContainer) user).eraseCredentials();
+
+    long now = System.currentTimeMillis();
+    if (entries.size() >= maxEntries) {
+      entries.values().removeIf(entry -> entry.expiresAt <= now);
+      if (entries.size() >= maxEntries) {
+        entries.clear();
+      }
+    }
+
+    entries.put(user.getUsername(), new Entry(user, now + ttlMs));
+  }
+
+  @Override
+  public void removeUserFromCache(String username) {
+    entries.remove(username);
+  }
+
+  private static final class Entry {
+    private final UserDetails user;
+    private final long expiresAt;
+
+    private Entry(UserDetails user, long expiresAt) {
+      this.user = user;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -1,10 +1,13 @@
 package com.openclassrooms.starterjwt.security.services;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
+import org.springframework.security.core.CredentialsContainer;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -16,9 +19,14 @@ import lombok.Getter;
 @Builder
 @AllArgsConstructor
 @Getter
-public class UserDetailsImpl implements UserDetails {
+public class UserDetailsImpl implements UserDetails, CredentialsContainer {
   private static final long serialVersionUID = 1L;
 
+  public static final String ROLE_ADMIN = "ROLE_ADMIN";
+
+  private static final List<GrantedAuthority> ADMIN_AUTHORITIES =
+      Collections.singletonList(new SimpleGrantedAuthority(ROLE_ADMIN));
+
   private Long id;
 
   private String username;
@@ -32,8 +40,15 @@ public class UserDetailsImpl implements UserDetails {
   @JsonIgnore
   private String password;  
   
-  public Collection<? extends GrantedAuthority> getAuthorities() {        
-      return new HashSet<GrantedAuthority>();
+  public Collection<? extends GrantedAuthority> getAuthorities() {
+      return Boolean.TRUE.equals(admin) ? ADMIN_AUTHORITIES : Collections.emptyList();
+  }
+
+  // Called once the password has been checked, and before the user is cached: the requests
+  // authenticated by a token never need it
+  @Override
+  public void eraseCredentials() {
+    password = null;
   }
 
   @Override
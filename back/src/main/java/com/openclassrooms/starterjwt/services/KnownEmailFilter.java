@@ -0,0 +1,144 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bloom filter of the registered emails. A negative answer is definite, so a signup with a new
+ * email goes straight to the insert; a positive one may be a false positive and is confirmed by
+ * the database. Deleted users are never removed, which only adds false positives, and emails
+ * registered on other nodes are caught by the unique constraint on insert.
+ *
+ * <p>Until the filter has been loaded at startup, every email is reported as possibly known.
+ */
+@Component
+public class KnownEmailFilter implements MeterBinder {
+  private static final Logger logger = LoggerFactory.getLogger(KnownEmailFilter.class);
+
+  private final AtomicLongArray bits;
+  private final long bitCount;
+  private final int hashCount;
+  private final long expectedEmails;
+
+  private final UserRepository userRepository;
+
+  private volatile boolean loaded;
+
+  private final LongAdder negatives = new LongAdder();
+  private final LongAdder positives = new LongAdder();
+
+  public KnownEmailFilter(UserRepository userRepository,
+                          @Value("${oc.app.emailFilterExpectedEmails:100000}") long expectedEmails,
+                          @Value("${oc.app.emailFilterFalsePositiveRate:0.01}") double falsePositiveRate) {
+    this.userRepository = userRepository;
+    this.expectedEmails = expectedEmails;
+
+    // Optimal sizing: m = -n ln(p) / ln(2)^2 bits and k = m/n ln(2) hash functions
+    long m = (long) Math.ceil(-expectedEmails * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    this.bitCount = Math.max(64, (m + 63) / 64 * 64);
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedEmails * Math.log(2)));
+    this.bits = new AtomicLongArray((int) (bitCount / 64));
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void load() {
+    LongAdder count = new LongAdder();
+    try (Stream<String> emails = userRepository.streamAllEmails()) {
+      emails.forEach(email -> {
+        put(email);
+        count.increment();
+      });
+    }
+    loaded = true;
+
+    if (count.sum() > expectedEmails) {
+      logger.warn("{} registered emails exceed oc.app.emailFilterExpectedEmails={}: raise it to keep false positives low",
+          count, expectedEmails);
+    }
+    logger.info("Known email filter loaded with {} emails ({} bits, {} hashes)", count, bitCount, hashCount);
+  }
+
+  public boolean mightContain(String email) {
+    if (!loaded) {
+      positives.increment();
+      return true;
+    }
+
+    long hash = hash(email);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashCount; i++) {
+      long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+      if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        negatives.increment();
+        return false;
+      }
+    }
+
+    positives.increment();
+    return true;
+  }
+
+  public void put(String email) {
+    long hash = hash(email);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashCount; i++) {
+      long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+      int index = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long word = bits.get(index);
+      while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask)) {
+        word = bits.get(index);
+      }
+    }
+  }
+
+  void markLoaded() {
+    loaded = true;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("auth.register.email_filter", negatives, LongAdder::sum)
+        .tag("result", "negative")
+        .register(registry);
+    FunctionCounter.builder("auth.register.email_filter", positives, LongAdder::sum)
+        .tag("result", "positive")
+        .register(registry);
+  }
+
+  // 64-bit FNV-1a of the lower-cased email, with the MurmurHash3 finalizer; emails are compared
+  // case-insensitively by the database, so they are hashed the same way
+  private static long hash(String email) {
+    String key = email.toLowerCase(Locale.ROOT);
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      h ^= key.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,114 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Date;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+
+/**
+ * Position in a paged sync of the session changes, handed to clients as an opaque URL-safe token.
+ * A resync pages every session by {@code (date, id)}. An incremental sync pages the sessions
+ * updated within its window by {@code (updated_at, id)}, then the sessions whose participants
+ * changed within it by id. The window, and the watermark returned by the last page, are fixed by
+ * the first page, so that changes made while the client pages are left to the next sync.
+ */
+public final class SessionChangesCursor {
+    public enum Step { RESYNC, UPDATED, PARTICIPANTS }
+
+    private final Step step;
+
+    // Bounds of the window: changes after since, up to until; since is null for a resync
+    private final LocalDateTime since;
+    private final LocalDateTime until;
+
+    // Last session sent: its date for a resync, its update time for the updated sessions
+    private final Date date;
+    private final LocalDateTime updatedAt;
+    private final Long id;
+
+    private SessionChangesCursor(Step step, LocalDateTime since, LocalDateTime until,
+                                 Date date, LocalDateTime updatedAt, Long id) {
+        this.step = step;
+        this.since = since;
+        this.until = until;
+        this.date = date;
+        this.updatedAt = updatedAt;
+        this.id = id;
+    }
+
+    public static SessionChangesCursor resync(LocalDateTime until, Date date, Long id) {
+        return new SessionChangesCursor(Step.RESYNC, null, until, date, null, id);
+    }
+
+    public static SessionChangesCursor updated(LocalDateTime since, LocalDateTime until, LocalDateTime updatedAt, Long id) {
+        return new SessionChangesCursor(Step.UPDATED, since, until, null, updatedAt, id);
+    }
+
+    public static SessionChangesCursor participants(LocalDateTime since, LocalDateTime until, Long id) {
+        return new SessionChangesCursor(Step.PARTICIPANTS, since, until, null, null, id);
+    }
+
+    public static SessionChangesCursor decode(String token) {
+        try {
+            String[] values = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(",");
+            switch (values[0]) {
+                case "R":
+                    return resync(LocalDateTime.parse(values[1]), new Date(Long.parseLong(values[2])),
+                            Long.valueOf(values[3]));
+                case "U":
+                    return updated(LocalDateTime.parse(values[1]), LocalDateTime.parse(values[2]),
+                            LocalDateTime.parse(values[3]), Long.valueOf(values[4]));
+                case "P":
+                    return participants(LocalDateTime.parse(values[1]), LocalDateTime.parse(values[2]),
+                            Long.valueOf(values[3]));
+                default:
+                    throw new BadRequestException();
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new BadRequestException();
+        }
+    }
+
+    public String encode() {
+        String value;
+        switch (step) {
+            case RESYNC:
+                value = "R," + until + "," + date.getTime() + "," + id;
+                break;
+            case UPDATED:
+                value = "U," + since + "," + until + "," + updatedAt + "," + id;
+                break;
+            default:
+                value = "P," + since + "," + until + "," + id;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public Step getStep() {
+        return step;
+    }
+
+    public LocalDateTime getSince() {
+        return since;
+    }
+
+    public LocalDateTime getUntil() {
+        return until;
+    }
+
+    // Position of a resync in the session listing
+    public SessionCursor getSessionCursor() {
+        return SessionCursor.of(date, id);
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
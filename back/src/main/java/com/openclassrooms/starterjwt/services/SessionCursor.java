@@ -0,0 +1,54 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+
+/**
+ * Position in the session listing, ordered by {@code (date, id)}: the next page starts right after
+ * the session it designates. It is handed to clients as an opaque URL-safe token.
+ */
+public final class SessionCursor {
+    private final Date date;
+    private final Long id;
+
+    private SessionCursor(Date date, Long id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public static SessionCursor after(SessionDto session) {
+        return new SessionCursor(session.getDate(), session.getId());
+    }
+
+    static SessionCursor of(Date date, Long id) {
+        return new SessionCursor(date, id);
+    }
+
+    public static SessionCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int separator = value.indexOf(':');
+            return new SessionCursor(new Date(Long.parseLong(value.substring(0, separator))),
+                    Long.valueOf(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestException();
+        }
+    }
+
+    public String encode() {
+        String value = date.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
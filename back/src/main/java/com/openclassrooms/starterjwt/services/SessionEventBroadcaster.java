@@ -0,0 +1,248 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes session events to the clients subscribed over Server-Sent Events. Publishing never
+ * blocks: an event is only offered to a bounded buffer per subscriber, which a small pool of
+ * sender threads drains to the connections. A subscriber whose buffer is full is too slow to keep
+ * up and is disconnected; it can reconnect and catch up with /api/session/changes.
+ *
+ * <p>Writes to a connection are blocking: a client that stops reading would hold a sender thread
+ * until the socket times out. Each write therefore has a deadline, oc.app.sseWriteTimeoutMs: a
+ * watchdog completes the emitter of a write running past it with an error, which closes the
+ * response and releases the sender thread, and drops the subscriber.
+ */
+@Component
+public class SessionEventBroadcaster implements MeterBinder, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(SessionEventBroadcaster.class);
+
+    // Sent as an SSE comment to keep idle connections open through proxies
+    private static final Object HEARTBEAT = new Object();
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // A subscriber is queued at most once at a time, so the queue is bounded by maxSubscribers
+    private final ThreadPoolExecutor executor;
+
+    private final int bufferSize;
+
+    private final int maxSubscribers;
+
+    private final long timeoutMs;
+
+    private final long writeTimeoutNanos;
+
+    private final LongAdder disconnected = new LongAdder();
+
+    public SessionEventBroadcaster(@Value("${oc.app.sseSenderThreads:8}") int senderThreads,
+                                   @Value("${oc.app.sseBufferSize:256}") int bufferSize,
+                                   @Value("${oc.app.sseMaxSubscribers:10000}") int maxSubscribers,
+                                   @Value("${oc.app.sseTimeoutMs:1800000}") long timeoutMs,
+                                   @Value("${oc.app.sseWriteTimeoutMs:10000}") long writeTimeoutMs) {
+        this.executor = new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("sse-"));
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMs = timeoutMs;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+    }
+
+    /**
+     * Opens a stream of the events of one session, or of all sessions when sessionId is null.
+     * Returns null when the subscribers limit is reached.
+     */
+    public SseEmitter subscribe(Long sessionId) {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+        return register(new SseEmitter(timeoutMs), sessionId);
+    }
+
+    SseEmitter register(SseEmitter emitter, Long sessionId) {
+        Subscriber subscriber = new Subscriber(emitter, sessionId, bufferSize);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Sends the event to the subscribers once the current transaction, if any, has committed, so
+     * that clients reading the session back see the change.
+     */
+    public void publish(SessionEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    broadcast(event);
+                }
+            });
+        } else {
+            broadcast(event);
+        }
+    }
+
+    private void broadcast(SessionEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.sessionId == null || subscriber.sessionId.equals(event.getSessionId())) {
+                offer(subscriber, event);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${oc.app.sseHeartbeatMs:15000}")
+    public void heartbeat() {
+        subscribers.forEach(subscriber -> offer(subscriber, HEARTBEAT));
+    }
+
+    /**
+     * Drops the subscribers whose current write has run past the deadline. Checked every
+     * oc.app.sseWriteCheckMs, so a stalled write is given up after at most the sum of both.
+     */
+    @Scheduled(fixedDelayString = "${oc.app.sseWriteCheckMs:1000}")
+    public void expireStalledWrites() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > writeTimeoutNanos) {
+                subscriber.closed = true;
+                if (subscribers.remove(subscriber)) {
+                    disconnected.increment();
+                    logger.debug("Disconnected an event subscriber whose write timed out");
+                }
+                subscriber.emitter.completeWithError(new IOException("Event write timed out"));
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getDisconnectedCount() {
+        return disconnected.sum();
+    }
+
+    private void offer(Subscriber subscriber, Object item) {
+        if (!subscriber.buffer.offer(item)) {
+            // The sender thread completes the emitter: it may be blocked writing to this very client
+            subscriber.closed = true;
+            if (subscribers.remove(subscriber)) {
+                disconnected.increment();
+                logger.debug("Disconnected a slow event subscriber");
+            }
+        }
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        IOException failure = null;
+        try {
+            Object item;
+            while (!subscriber.closed && (item = subscriber.buffer.poll()) != null) {
+                subscriber.sendingSince = System.nanoTime();
+                subscriber.emitter.send(item == HEARTBEAT
+                        ? SseEmitter.event().comment("")
+                        : SseEmitter.event().name(((SessionEvent) item).getType()).data(item));
+                subscriber.sendingSince = 0;
+            }
+        } catch (IOException e) {
+            // Connection closed by the client, or write aborted by the watchdog
+            failure = e;
+            subscriber.closed = true;
+            subscribers.remove(subscriber);
+        } catch (IllegalStateException e) {
+            // Emitter already completed
+            subscriber.closed = true;
+            subscribers.remove(subscriber);
+        } finally {
+            subscriber.sendingSince = 0;
+        }
+
+        if (subscriber.closed) {
+            subscriber.buffer.clear();
+            if (failure != null) {
+                // The response is broken: completing it normally would try to flush it again
+                subscriber.emitter.completeWithError(failure);
+            } else {
+                subscriber.emitter.complete();
+            }
+            return;
+        }
+        subscriber.scheduled.set(false);
+        if (!subscriber.buffer.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("sessions.events.subscribers", this, SessionEventBroadcaster::getSubscriberCount)
+                .description("Clients subscribed to the session events")
+                .register(registry);
+        FunctionCounter.builder("sessions.events.disconnected", this, SessionEventBroadcaster::getDisconnectedCount)
+                .description("Subscribers disconnected because they did not keep up with the events")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        subscribers.forEach(subscriber -> subscriber.closed = true);
+        subscribers.forEach(this::schedule);
+        executor.shutdown();
+    }
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+
+        private final Long sessionId;
+
+        private final BlockingQueue<Object> buffer;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        // System.nanoTime() at the start of the write in progress, 0 when none
+        private volatile long sendingSince;
+
+        Subscriber(SseEmitter emitter, Long sessionId, int bufferSize) {
+            this.emitter = emitter;
+            this.sessionId = sessionId;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
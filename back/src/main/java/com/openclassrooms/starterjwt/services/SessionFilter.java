@@ -0,0 +1,62 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.util.Date;
+
+/**
+ * Criteria of the session listing; null criteria are not applied. The date range includes its
+ * start and excludes its end, so that consecutive ranges do not overlap.
+ */
+public final class SessionFilter {
+    public static final SessionFilter NONE = new SessionFilter(null, null, null);
+
+    private final Date from;
+    private final Date to;
+    private final Long teacherId;
+    private final Long participantId;
+
+    public SessionFilter(Date from, Date to, Long teacherId) {
+        this(from, to, teacherId, null);
+    }
+
+    private SessionFilter(Date from, Date to, Long teacherId, Long participantId) {
+        this.from = from;
+        this.to = to;
+        this.teacherId = teacherId;
+        this.participantId = participantId;
+    }
+
+    /**
+     * Same criteria, with the range starting at now at the earliest.
+     */
+    public SessionFilter upcoming() {
+        Date now = new Date();
+        return new SessionFilter(from == null || from.before(now) ? now : from, to, teacherId, participantId);
+    }
+
+    /**
+     * Same criteria, limited to the sessions the user participates in.
+     */
+    public SessionFilter participant(Long userId) {
+        return new SessionFilter(from, to, teacherId, userId);
+    }
+
+    public boolean isEmpty() {
+        return from == null && to == null && teacherId == null && participantId == null;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public Long getTeacherId() {
+        return teacherId;
+    }
+
+    public Long getParticipantId() {
+        return participantId;
+    }
+}
@@ -0,0 +1,523 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionTombstoneRepository;
+
+/**
+ * Inverted index of the words of the session names and descriptions, ranked with BM25. A word of
+ * the name weighs as much as three of the description.
+ *
+ * <p>Each indexed version of a session gets a new ordinal, so the postings of a word are sorted by
+ * ordinal and a query merges them one document at a time, without a score map. Replacing or
+ * removing a session only forgets its ordinal: its postings become stale, are skipped by queries,
+ * and are compacted once they make up half of a word's postings. When the ordinals run out, they
+ * are renumbered instead of growing if at least half of them were forgotten, so that a session
+ * edited over and over does not grow the index.
+ *
+ * <p>The index is loaded at startup and follows the writes of this node as they commit. The
+ * writes of other nodes, and any write missed during the load, are caught up periodically from
+ * the updated_at column and the session tombstones. Until loaded, {@link #isLoaded()} is false.
+ */
+@Component
+public class SessionSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SessionSearchIndex.class);
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "au", "aux", "avec", "ce", "ces", "dans", "de", "des", "du", "en", "et", "il", "la", "le", "les",
+            "leur", "ou", "par", "pas", "pour", "qui", "sur", "un", "une", "vous", "votre",
+            "an", "and", "are", "as", "at", "be", "by", "for", "in", "is", "it", "of", "on", "or", "the",
+            "this", "to", "with", "you", "your");
+
+    private static final int NAME_WEIGHT = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final SessionRepository sessionRepository;
+
+    private final SessionTombstoneRepository tombstoneRepository;
+
+    // How far back each catch-up starts, to include the transactions still running at the last one
+    private final long refreshLagMs;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    // Current ordinal of each indexed session
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+
+    // Indexed versions by ordinal, null once replaced or removed
+    private Document[] documents = new Document[1024];
+
+    private int nextOrdinal;
+
+    private long totalLength;
+
+    private volatile boolean loaded;
+
+    private LocalDateTime refreshedAt;
+
+    public SessionSearchIndex(SessionRepository sessionRepository, SessionTombstoneRepository tombstoneRepository,
+                              @Value("${oc.app.sessionChangesLagMs:5000}") long refreshLagMs) {
+        this.sessionRepository = sessionRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.refreshLagMs = refreshLagMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        LocalDateTime start = LocalDateTime.now();
+        LongAdder count = new LongAdder();
+        try (Stream<Object[]> rows = sessionRepository.streamSearchFields()) {
+            rows.forEach(row -> {
+                Long id = ((Number) row[0]).longValue();
+                lock.writeLock().lock();
+                try {
+                    // Sessions written since the load started are already indexed
+                    if (!ordinals.containsKey(id)) {
+                        put(id, (String) row[1], (String) row[2]);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                count.increment();
+            });
+        }
+        refreshedAt = start;
+        loaded = true;
+
+        logger.info("Session search index loaded with {} sessions and {} words in {} ms",
+                count, postings.size(), ChronoUnit.MILLIS.between(start, LocalDateTime.now()));
+    }
+
+    /**
+     * Indexes the sessions changed or deleted since the last catch-up.
+     */
+    @Scheduled(fixedDelayString = "${oc.app.sessionSearchRefreshMs:60000}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        if (!loaded) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = refreshedAt.minus(refreshLagMs, ChronoUnit.MILLIS);
+
+        List<SessionDto> updated = sessionRepository.findUpdatedAfter(since);
+        List<Long> deleted = tombstoneRepository.findSessionIdsDeletedAfter(since);
+        lock.writeLock().lock();
+        try {
+            updated.forEach(session -> put(session.getId(), session.getName(), session.getDescription()));
+            deleted.forEach(this::delete);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        refreshedAt = now;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Indexes the name and description of the session, in place of its previous ones, once the
+     * current transaction if any has committed.
+     */
+    public void index(Long id, String name, String description) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                put(id, name, description);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Removes the session from the index once the current transaction if any has committed.
+     */
+    public void remove(Long id) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                delete(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Returns the ids of the sessions matching any word of the query, best first, skipping the
+     * first offset ones, and the number of sessions matched.
+     */
+    public Hits search(String query, int offset, int limit) {
+        List<String> terms = new ArrayList<>(tokenize(query).keySet());
+
+        lock.readLock().lock();
+        try {
+            int count = ordinals.size();
+            double averageLength = count == 0 ? 1 : (double) totalLength / count;
+
+            Postings[] lists = new Postings[terms.size()];
+            double[] weights = new double[terms.size()];
+            int listCount = 0;
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list != null) {
+                    int frequency = list.size - list.stale;
+                    lists[listCount] = list;
+                    weights[listCount] = Math.log(1 + (count - frequency + 0.5) / (frequency + 0.5));
+                    listCount++;
+                }
+            }
+
+            // Worst hit kept on top: lowest score, then highest id, so that the ones kept are the
+            // best scores, then the oldest sessions
+            int kept = offset + limit;
+            PriorityQueue<Hit> best = new PriorityQueue<>(Math.max(1, Math.min(kept, 1024)));
+            int total = 0;
+
+            int[] positions = new int[listCount];
+            while (true) {
+                int ordinal = Integer.MAX_VALUE;
+                for (int i = 0; i < listCount; i++) {
+                    if (positions[i] < lists[i].size) {
+                        ordinal = Math.min(ordinal, lists[i].ordinals[positions[i]]);
+                    }
+                }
+                if (ordinal == Integer.MAX_VALUE) {
+                    break;
+                }
+
+                Document document = documents[ordinal];
+                double score = 0;
+                for (int i = 0; i < listCount; i++) {
+                    Postings list = lists[i];
+                    if (positions[i] < list.size && list.ordinals[positions[i]] == ordinal) {
+                        if (document != null) {
+                            int frequency = list.frequencies[positions[i]];
+                            double norm = K1 * (1 - B + B * document.length / averageLength);
+                            score += weights[i] * frequency * (K1 + 1) / (frequency + norm);
+                        }
+                        positions[i]++;
+                    }
+                }
+                if (document == null) {
+                    continue;
+                }
+                total++;
+
+                if (best.size() < kept) {
+                    best.add(new Hit(document.sessionId, score));
+                } else if (kept > 0 && best.peek().isWorseThan(document.sessionId, score)) {
+                    best.poll();
+                    best.add(new Hit(document.sessionId, score));
+                }
+            }
+
+            // Polled worst first, so filled from the end to rank the best first
+            Long[] ranked = new Long[best.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                ranked[i] = best.poll().sessionId;
+            }
+            List<Long> page = offset >= ranked.length
+                    ? List.of()
+                    : Arrays.asList(ranked).subList(offset, ranked.length);
+            return new Hits(page, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Words of the text and how many times each occurs: lower-cased, without accents, stop words
+    // and one-letter words, and without the plural s so that "postures" finds "posture"
+    static Map<String, Integer> tokenize(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        if (text == null) {
+            return terms;
+        }
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String word : SEPARATORS.split(normalized)) {
+            if (word.length() < 2 || STOP_WORDS.contains(word)) {
+                continue;
+            }
+            if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+                word = word.substring(0, word.length() - 1);
+            }
+            terms.merge(word, 1, Integer::sum);
+        }
+        return terms;
+    }
+
+    // Callers hold the write lock
+    private void put(Long id, String name, String description) {
+        ByteBuffer digest = digest(name, description);
+        long textHigh = digest.getLong();
+        long textLow = digest.getLong();
+        Integer previous = ordinals.get(id);
+        if (previous != null && documents[previous].hasText(textHigh, textLow)) {
+            return;
+        }
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (Map.Entry<String, Integer> term : tokenize(name).entrySet()) {
+            frequencies.merge(term.getKey(), NAME_WEIGHT * term.getValue(), Integer::sum);
+            length += NAME_WEIGHT * term.getValue();
+        }
+        for (Map.Entry<String, Integer> term : tokenize(description).entrySet()) {
+            frequencies.merge(term.getKey(), term.getValue(), Integer::sum);
+            length += term.getValue();
+        }
+
+        delete(id);
+        if (nextOrdinal == documents.length) {
+            if ((nextOrdinal - ordinals.size()) * 2 >= nextOrdinal) {
+                renumber();
+            } else {
+                documents = Arrays.copyOf(documents, documents.length * 2);
+            }
+        }
+        int ordinal = nextOrdinal++;
+        Postings[] lists = new Postings[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> term : frequencies.entrySet()) {
+            Postings list = postings.computeIfAbsent(term.getKey(), Postings::new);
+            list.add(ordinal, term.getValue());
+            lists[i++] = list;
+        }
+
+        documents[ordinal] = new Document(id, textHigh, textLow, length, lists);
+        ordinals.put(id, ordinal);
+        totalLength += length;
+    }
+
+    // Callers hold the write lock
+    private void delete(Long id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+
+        Document document = documents[ordinal];
+        documents[ordinal] = null;
+        totalLength -= document.length;
+        for (Postings list : document.postings) {
+            list.stale++;
+            if (list.stale * 2 > list.size) {
+                list.compact(documents);
+                if (list.size == 0) {
+                    postings.remove(list.term);
+                }
+            }
+        }
+    }
+
+    // Gives the indexed versions consecutive ordinals, in the same order so that the postings stay
+    // sorted, and drops the stale postings. Callers hold the write lock
+    private void renumber() {
+        int[] renumbered = new int[nextOrdinal];
+        int live = 0;
+        for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+            Document document = documents[ordinal];
+            if (document == null) {
+                renumbered[ordinal] = -1;
+                continue;
+            }
+            renumbered[ordinal] = live;
+            documents[live] = document;
+            ordinals.put(document.sessionId, live);
+            live++;
+        }
+        Arrays.fill(documents, live, nextOrdinal, null);
+        nextOrdinal = live;
+
+        postings.values().removeIf(list -> {
+            list.renumber(renumbered);
+            return list.size == 0;
+        });
+    }
+
+    private static void afterCommit(Runnable write) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    write.run();
+                }
+            });
+        } else {
+            write.run();
+        }
+    }
+
+    /**
+     * Ids of one page of results, and the number of sessions matched.
+     */
+    public static class Hits {
+        private final List<Long> ids;
+        private final int total;
+
+        public Hits(List<Long> ids, int total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    private static class Hit implements Comparable<Hit> {
+        private final long sessionId;
+        private final double score;
+
+        Hit(long sessionId, double score) {
+            this.sessionId = sessionId;
+            this.score = score;
+        }
+
+        boolean isWorseThan(long otherId, double otherScore) {
+            return score < otherScore || (score == otherScore && sessionId > otherId);
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            if (score != other.score) {
+                return Double.compare(score, other.score);
+            }
+            return Long.compare(other.sessionId, sessionId);
+        }
+    }
+
+    // SHA-256 of the name and description, each prefixed with its length, or -1 when null, so that
+    // no two pairs of texts hash the same bytes
+    private static ByteBuffer digest(String name, String description) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String text : new String[] { name, description }) {
+                byte[] bytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(text == null ? -1 : bytes.length).array());
+                digest.update(bytes);
+            }
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Document {
+        private final long sessionId;
+        // First 128 bits of the digest of the indexed text, compared instead of keeping the text
+        private final long textHigh;
+        private final long textLow;
+        private final int length;
+        private final Postings[] postings;
+
+        Document(long sessionId, long textHigh, long textLow, int length, Postings[] postings) {
+            this.sessionId = sessionId;
+            this.textHigh = textHigh;
+            this.textLow = textLow;
+            this.length = length;
+            this.postings = postings;
+        }
+
+        boolean hasText(long otherHigh, long otherLow) {
+            return textHigh == otherHigh && textLow == otherLow;
+        }
+    }
+
+    // Ordinals in increasing order, with the weighted frequency of the word in each
+    private static class Postings {
+        private final String term;
+        private int[] ordinals = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+        private int stale;
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void add(int ordinal, int frequency) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            ordinals[size] = ordinal;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        void compact(Document[] documents) {
+            int live = 0;
+            for (int i = 0; i < size; i++) {
+                if (documents[ordinals[i]] != null) {
+                    ordinals[live] = ordinals[i];
+                    frequencies[live] = frequencies[i];
+                    live++;
+                }
+            }
+            size = live;
+            stale = 0;
+        }
+
+        // Maps each ordinal to its new one, -1 for the stale postings, which are dropped
+        void renumber(int[] renumbered) {
+            int live = 0;
+            for (int i = 0; i < size; i++) {
+                int ordinal = renumbered[ordinals[i]];
+                if (ordinal >= 0) {
+                    ordinals[live] = ordinal;
+                    frequencies[live] = frequencies[i];
+                    live++;
+                }
+            }
+            size = live;
+            stale = 0;
+        }
+    }
+}
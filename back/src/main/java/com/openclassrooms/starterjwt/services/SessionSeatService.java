@@ -0,0 +1,212 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionEvent;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.SessionSeats;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.ParticipantChangeRepository;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSeatsRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Seats of the sessions that have a capacity, and their waitlists. A seat is taken with a single
+ * conditional update of the session's counter, so concurrent bookings neither over-allocate nor
+ * wait on each other longer than that statement. Sessions without a capacity have no counter and
+ * every booking succeeds.
+ */
+@Service
+public class SessionSeatService {
+    private final SessionSeatsRepository seatsRepository;
+
+    private final WaitlistRepository waitlistRepository;
+
+    private final SessionRepository sessionRepository;
+
+    private final ParticipantChangeRepository participantChangeRepository;
+
+    private final SessionEventBroadcaster eventBroadcaster;
+
+    public SessionSeatService(SessionSeatsRepository seatsRepository,
+                              WaitlistRepository waitlistRepository,
+                              SessionRepository sessionRepository,
+                              ParticipantChangeRepository participantChangeRepository,
+                              SessionEventBroadcaster eventBroadcaster) {
+        this.seatsRepository = seatsRepository;
+        this.waitlistRepository = waitlistRepository;
+        this.sessionRepository = sessionRepository;
+        this.participantChangeRepository = participantChangeRepository;
+        this.eventBroadcaster = eventBroadcaster;
+    }
+
+    /**
+     * Returns false when the session is full.
+     */
+    @Transactional
+    public boolean takeSeat(Long sessionId) {
+        return this.seatsRepository.reserve(sessionId) == 1 || !this.seatsRepository.existsById(sessionId);
+    }
+
+    /**
+     * Takes up to the wanted number of seats in each session, in a single statement per batch of
+     * counters. The counters stay locked until the commit.
+     *
+     * @return the seats taken in each session; all of them in sessions without a capacity
+     */
+    @Transactional
+    public Map<Long, Integer> takeSeats(Map<Long, Integer> wanted) {
+        Map<Long, Integer> taken = new HashMap<>(wanted);
+        for (SessionSeats seats : this.seatsRepository.findAllForUpdate(wanted.keySet())) {
+            int free = Math.max(seats.getCapacity() - seats.getTaken(), 0);
+            int granted = Math.min(wanted.get(seats.getSessionId()), free);
+            seats.setTaken(seats.getTaken() + granted);
+            taken.put(seats.getSessionId(), granted);
+        }
+        return taken;
+    }
+
+    /**
+     * Gives back seats taken by takeSeats in the current transaction and left unused. The counters
+     * are still locked, so no other request has seen them taken.
+     */
+    @Transactional
+    public void returnSeats(Map<Long, Integer> unused) {
+        for (SessionSeats seats : this.seatsRepository.findAllForUpdate(unused.keySet())) {
+            seats.setTaken(Math.max(seats.getTaken() - unused.get(seats.getSessionId()), 0));
+        }
+    }
+
+    public boolean isWaiting(Long sessionId, Long userId) {
+        return this.waitlistRepository.existsBySessionIdAndUserId(sessionId, userId);
+    }
+
+    public List<WaitlistEntry> findWaiting(Collection<Long> sessionIds, Collection<Long> userIds) {
+        return this.waitlistRepository.findBySessionIdInAndUserIdIn(sessionIds, userIds);
+    }
+
+    /**
+     * Adds the user at the end of the waitlist. A seat freed since the session was found full, while
+     * nobody was waiting, goes to the waitlist right away.
+     *
+     * @return false if the user got a seat after all
+     */
+    @Transactional
+    public boolean enqueue(Long sessionId, Long userId) {
+        try {
+            this.waitlistRepository.saveAndFlush(WaitlistEntry.builder().sessionId(sessionId).userId(userId).build());
+        } catch (DataIntegrityViolationException e) {
+            // Already waiting, from a concurrent request
+            throw new BadRequestException();
+        }
+
+        fillFromWaitlist(sessionId);
+        return isWaiting(sessionId, userId);
+    }
+
+    @Transactional
+    public boolean leaveWaitlist(Long sessionId, Long userId) {
+        return this.waitlistRepository.remove(sessionId, userId) == 1;
+    }
+
+    /**
+     * Hands the seat of a participant who left to the first user of the waitlist, or frees it when
+     * nobody is waiting.
+     */
+    @Transactional
+    public void releaseSeat(Long sessionId) {
+        if (!promoteFirstWaiting(sessionId)) {
+            this.seatsRepository.release(sessionId);
+        }
+    }
+
+    /**
+     * Creates the seat counters of new sessions that have a capacity, in a single batch.
+     */
+    public void createSeats(List<Session> sessions) {
+        List<SessionSeats> seats = new ArrayList<>();
+        for (Session session : sessions) {
+            if (session.getCapacity() != null) {
+                int participants = session.getUsers() == null ? 0 : session.getUsers().size();
+                seats.add(new SessionSeats(session.getId(), session.getCapacity(), participants));
+            }
+        }
+        this.seatsRepository.saveAll(seats);
+    }
+
+    /**
+     * Sets the capacity of a session, null for no limit. Seats opened by a higher capacity go to
+     * the waitlist first; a lower one keeps the current participants but takes no new ones until
+     * enough have left.
+     */
+    @Transactional
+    public void setCapacity(Long sessionId, Integer capacity) {
+        if (capacity == null) {
+            if (this.seatsRepository.existsById(sessionId)) {
+                this.seatsRepository.deleteById(sessionId);
+            }
+            return;
+        }
+
+        if (this.seatsRepository.setCapacity(sessionId, capacity) == 0) {
+            this.seatsRepository.saveAndFlush(
+                    new SessionSeats(sessionId, capacity, (int) this.sessionRepository.countParticipants(sessionId)));
+        }
+        fillFromWaitlist(sessionId);
+    }
+
+    /**
+     * Counts the seats taken again after the participants of the session were replaced. Seats
+     * freed by a shorter list go to the waitlist; a list longer than the capacity is kept, as when
+     * the capacity is lowered, and nobody else gets a seat until enough participants have left.
+     */
+    @Transactional
+    public void recount(Long sessionId) {
+        if (this.seatsRepository.recount(sessionId) == 1) {
+            fillFromWaitlist(sessionId);
+        }
+    }
+
+    // Gives the free seats to the waiting users, in order
+    private void fillFromWaitlist(Long sessionId) {
+        while (this.seatsRepository.reserve(sessionId) == 1) {
+            if (!promoteFirstWaiting(sessionId)) {
+                this.seatsRepository.release(sessionId);
+                return;
+            }
+        }
+    }
+
+    // Moves the first waiting user to the participants, on a seat already counted as taken.
+    // Entries removed concurrently, or whose user no longer exists, are skipped: the scan moves
+    // forward by id, as the transaction may keep seeing entries already removed by others.
+    private boolean promoteFirstWaiting(Long sessionId) {
+        long after = 0;
+        while (true) {
+            Optional<WaitlistEntry> first =
+                    this.waitlistRepository.findFirstBySessionIdAndIdGreaterThanOrderByIdAsc(sessionId, after);
+            if (first.isEmpty()) {
+                return false;
+            }
+            if (this.waitlistRepository.deleteEntry(first.get().getId()) == 1
+                    && this.sessionRepository.addParticipant(sessionId, first.get().getUserId()) == 1) {
+                this.participantChangeRepository.record(sessionId, LocalDateTime.now());
+                this.eventBroadcaster.publish(
+                        new SessionEvent(SessionEvent.PARTICIPATE, sessionId, first.get().getUserId()));
+                return true;
+            }
+            after = first.get().getId();
+        }
+    }
+}
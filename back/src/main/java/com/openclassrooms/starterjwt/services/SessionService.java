@@ -1,78 +1,672 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.CacheValidator;
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto;
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto.Outcome;
+import com.openclassrooms.starterjwt.dto.SessionChangesDto;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionEvent;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.SessionTombstone;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.ParticipantChangeRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionTombstoneRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 @Service
 public class SessionService {
+    private static final Logger logger = LoggerFactory.getLogger(SessionService.class);
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    // Most sessions returned by the non-paginated listing
+    @Value("${oc.app.sessionListMaxSize:500}")
+    private int listMaxSize = 500;
+
+    @Value("${oc.app.sessionPageSize:20}")
+    private int defaultPageSize = 20;
+
+    @Value("${oc.app.sessionPageMaxSize:100}")
+    private int maxPageSize = 100;
+
+    // Most sessions created, or participations added, by a single bulk or series request
+    @Value("${oc.app.sessionBulkMaxSize:10000}")
+    private int bulkMaxSize = 10000;
+
+    // Deepest result a search can page to
+    @Value("${oc.app.sessionSearchMaxResults:1000}")
+    private int searchMaxResults = 1000;
+
+    // Attempts of a write that fails on a concurrent change, and base of the random backoff
+    @Value("${oc.app.sessionWriteAttempts:5}")
+    private int retryAttempts = 5;
+
+    @Value("${oc.app.sessionWriteRetryDelayMs:10}")
+    private long retryDelayMs = 10;
+
+    // How far back the watermark of a sync is set, so that the changes of transactions still
+    // running when it was read are sent by the next sync
+    @Value("${oc.app.sessionChangesLagMs:5000}")
+    private long changesLagMs = 5000;
+
+    @Value("${oc.app.sessionTombstoneRetentionMs:2592000000}")
+    private long tombstoneRetentionMs = 2_592_000_000L;
+
+    private final SessionSeatService seatService;
+
+    private final SessionTombstoneRepository tombstoneRepository;
+
+    private final ParticipantChangeRepository participantChangeRepository;
+
+    private final SessionEventBroadcaster eventBroadcaster;
+
+    private final SessionSearchIndex searchIndex;
+
+    // One transaction per attempt of a retried write, which an optimistic locking failure rolls back
+    private final TransactionTemplate transactionTemplate;
+
+    public SessionService(SessionRepository sessionRepository, UserRepository userRepository,
+                          SessionSeatService seatService, SessionTombstoneRepository tombstoneRepository,
+                          ParticipantChangeRepository participantChangeRepository, SessionEventBroadcaster eventBroadcaster, SessionSearchIndex searchIndex,
+                          TransactionTemplate transactionTemplate) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.seatService = seatService;
+        this.tombstoneRepository = tombstoneRepository;
+        this.participantChangeRepository = participantChangeRepository;
+        this.eventBroadcaster = eventBroadcaster;
+        this.searchIndex = searchIndex;
+        this.transactionTemplate = transactionTemplate;
     }
 
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        Session created = this.sessionRepository.save(session);
+        if (created.getCapacity() != null) {
+            this.seatService.setCapacity(created.getId(), created.getCapacity());
+        }
+        this.searchIndex.index(created.getId(), created.getName(), created.getDescription());
+        this.eventBroadcaster.publish(SessionEvent.of(SessionEvent.CREATE, created.getId()));
+        return created;
+    }
+
+    /**
+     * Creates all the sessions, or none. Their rows, then the seat counters of those with a
+     * capacity, are inserted in JDBC batches when the transaction flushes.
+     */
+    @Transactional
+    public List<Session> createAll(List<Session> sessions) {
+        if (sessions.size() > bulkMaxSize) {
+            throw new BadRequestException();
+        }
+
+        List<Session> created = this.sessionRepository.saveAll(sessions);
+        // The sessions are inserted before the counters that reference them
+        this.sessionRepository.flush();
+        this.seatService.createSeats(created);
+
+        for (Session session : created) {
+            this.searchIndex.index(session.getId(), session.getName(), session.getDescription());
+            this.eventBroadcaster.publish(SessionEvent.of(SessionEvent.CREATE, session.getId()));
+        }
+        return created;
+    }
+
+    /**
+     * Creates a copy of the session on each of the days of the week, every interval weeks, from
+     * its date until the last day included. Every copy starts at the local time of the session,
+     * across daylight saving time changes.
+     */
+    @Transactional
+    public List<Session> createSeries(Session session, Set<DayOfWeek> days, LocalDate until, int interval) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDateTime first = LocalDateTime.ofInstant(session.getDate().toInstant(), zone);
+        LocalDate firstWeek = first.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+        List<Session> occurrences = new ArrayList<>();
+        for (LocalDate day = first.toLocalDate(); !day.isAfter(until); day = day.plusDays(1)) {
+            if (!days.contains(day.getDayOfWeek()) || ChronoUnit.WEEKS.between(firstWeek, day) % interval != 0) {
+                continue;
+            }
+            if (occurrences.size() == bulkMaxSize) {
+                throw new BadRequestException();
+            }
+            occurrences.add(Session.builder()
+                    .name(session.getName())
+                    .date(Date.from(day.atTime(first.toLocalTime()).atZone(zone).toInstant()))
+                    .description(session.getDescription())
+                    .teacher(session.getTeacher())
+                    .capacity(session.getCapacity())
+                    .users(new ArrayList<>())
+                    .build());
+        }
+
+        if (occurrences.isEmpty()) {
+            throw new BadRequestException();
+        }
+        return createAll(occurrences);
     }
 
+    @Transactional
     public void delete(Long id) {
         this.sessionRepository.deleteById(id);
+        this.tombstoneRepository.save(new SessionTombstone(id, LocalDateTime.now()));
+        this.searchIndex.remove(id);
+        this.eventBroadcaster.publish(SessionEvent.of(SessionEvent.DELETE, id));
     }
 
-    public List<Session> findAll() {
-        return this.sessionRepository.findAll();
+    /**
+     * Returns the sessions created, updated or deleted after the watermark, at most
+     * oc.app.sessionListMaxSize at a time. While more pages follow, the client passes back the
+     * cursor alone; the last page holds the deletions and the watermark of the next sync. Sessions
+     * changed just before the new watermark are sent again by the next sync, so clients merge them
+     * by id. Without a watermark, or with one older than the tombstones kept, the client starts over
+     * from the first page of every session.
+     */
+    public SessionChangesDto findChanges(LocalDateTime since, String cursor) {
+        if (cursor != null) {
+            SessionChangesCursor after = SessionChangesCursor.decode(cursor);
+            switch (after.getStep()) {
+                case RESYNC:
+                    return resyncPage(after.getSessionCursor(), false, after.getUntil());
+                case UPDATED:
+                    return updatedPage(after.getSince(), after.getUntil(), after.getUpdatedAt(), after.getId());
+                default:
+                    return participantsPage(after.getSince(), after.getUntil(), after.getId(), List.of());
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime watermark = now.minus(changesLagMs, ChronoUnit.MILLIS);
+
+        if (since == null || since.isBefore(now.minus(tombstoneRetentionMs, ChronoUnit.MILLIS))) {
+            return resyncPage(null, true, watermark);
+        }
+        return updatedPage(since, watermark, since, Long.MAX_VALUE);
+    }
+
+    // One page of every session, and one extra row to tell whether a next page exists
+    private SessionChangesDto resyncPage(SessionCursor after, boolean reset, LocalDateTime watermark) {
+        List<SessionDto> sessions = this.sessionRepository.findPage(SessionFilter.NONE, after, listMaxSize + 1);
+        if (sessions.size() <= listMaxSize) {
+            return new SessionChangesDto(withParticipants(sessions), List.of(), reset, watermark, null);
+        }
+        List<SessionDto> content = withParticipants(sessions.subList(0, listMaxSize));
+        SessionDto last = content.get(content.size() - 1);
+        return new SessionChangesDto(content, List.of(), reset, null,
+                SessionChangesCursor.resync(watermark, last.getDate(), last.getId()).encode());
+    }
+
+    // One page of the sessions updated in (since, until], by (updatedAt, id); once they are all
+    // sent, the page is filled with the sessions whose participants changed
+    private SessionChangesDto updatedPage(LocalDateTime since, LocalDateTime until,
+                                          LocalDateTime afterUpdatedAt, Long afterId) {
+        List<SessionDto> sessions = this.sessionRepository.findUpdatedPage(until, afterUpdatedAt, afterId,
+                PageRequest.of(0, listMaxSize + 1));
+        if (sessions.size() <= listMaxSize) {
+            return participantsPage(since, until, Long.MIN_VALUE, sessions);
+        }
+        List<SessionDto> content = withParticipants(sessions.subList(0, listMaxSize));
+        SessionDto last = content.get(content.size() - 1);
+        return new SessionChangesDto(content, List.of(), false, null,
+                SessionChangesCursor.updated(since, until, last.getUpdatedAt(), last.getId()).encode());
+    }
+
+    // The sessions whose participants changed in (since, until], by id after the given one, in the
+    // room left by the updated sessions; the last page adds the deletions and the watermark
+    private SessionChangesDto participantsPage(LocalDateTime since, LocalDateTime until, Long afterId,
+                                               List<SessionDto> updated) {
+        int room = listMaxSize - updated.size();
+        List<Long> ids = this.participantChangeRepository.findSessionIdsChangedBetween(since, until, afterId,
+                PageRequest.of(0, room + 1));
+        boolean hasNext = ids.size() > room;
+        List<Long> pageIds = hasNext ? ids.subList(0, room) : ids;
+
+        List<SessionDto> content = new ArrayList<>(updated);
+        if (!pageIds.isEmpty()) {
+            content.addAll(this.sessionRepository.findDtosByIds(pageIds));
+        }
+        content = withParticipants(content);
+        if (hasNext) {
+            Long last = pageIds.isEmpty() ? afterId : pageIds.get(pageIds.size() - 1);
+            return new SessionChangesDto(content, List.of(), false, null,
+                    SessionChangesCursor.participants(since, until, last).encode());
+        }
+        return new SessionChangesDto(content, this.tombstoneRepository.findSessionIdsDeletedAfter(since),
+                false, until, null);
+    }
+
+    @Scheduled(fixedDelayString = "${oc.app.sessionTombstonePurgeMs:3600000}")
+    @Transactional
+    public void purgeTombstones() {
+        LocalDateTime before = LocalDateTime.now().minus(tombstoneRetentionMs, ChronoUnit.MILLIS);
+        int deleted = this.tombstoneRepository.deleteOlderThan(before);
+        if (deleted > 0) {
+            logger.info("Purged {} session tombstones", deleted);
+        }
+        // Older changes are never asked for: a sync that far back starts over
+        this.participantChangeRepository.deleteOlderThan(before);
+    }
+
+    public List<SessionDto> findAll() {
+        return withParticipants(this.sessionRepository.findFirstPage(PageRequest.of(0, listMaxSize)));
+    }
+
+    /**
+     * Returns the sessions matching the filter that follow the cursor, or the first ones when it
+     * is null, ordered by date then id. One extra row is read to tell whether a next page exists.
+     */
+    public Slice<SessionDto> findPage(String cursor, Integer size, SessionFilter filter) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        SessionCursor after = cursor == null ? null : SessionCursor.decode(cursor);
+
+        List<SessionDto> sessions = this.sessionRepository.findPage(filter, after, pageSize + 1);
+
+        boolean hasNext = sessions.size() > pageSize;
+        List<SessionDto> content = withParticipants(hasNext ? sessions.subList(0, pageSize) : sessions);
+        return new SliceImpl<>(content, PageRequest.of(0, pageSize), hasNext);
+    }
+
+    /**
+     * Returns one page of the sessions matching words of the query in their name or description,
+     * best first, or null while the search index is loading.
+     */
+    public Page<SessionDto> search(String query, Integer page, Integer size) {
+        if (!this.searchIndex.isLoaded()) {
+            return null;
+        }
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        int pageNumber = page == null ? 0 : Math.max(0, page);
+        Pageable pageable = PageRequest.of(pageNumber, pageSize);
+        long offset = (long) pageNumber * pageSize;
+        if (offset + pageSize > searchMaxResults) {
+            throw new BadRequestException();
+        }
+
+        SessionSearchIndex.Hits hits = this.searchIndex.search(query, (int) offset, pageSize);
+        if (hits.getIds().isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, hits.getTotal());
+        }
+
+        // Read back in the order of the ranking; sessions deleted meanwhile are left out
+        Map<Long, SessionDto> sessions = new HashMap<>();
+        for (SessionDto session : this.sessionRepository.findDtosByIds(hits.getIds())) {
+            sessions.put(session.getId(), session);
+        }
+        List<SessionDto> ranked = new ArrayList<>();
+        for (Long id : hits.getIds()) {
+            if (sessions.containsKey(id)) {
+                ranked.add(sessions.get(id));
+            }
+        }
+        return new PageImpl<>(withParticipants(ranked), pageable, hits.getTotal());
     }
 
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    public SessionDto findDtoById(Long id) {
+        return this.sessionRepository.findDtoById(id)
+                .map(session -> withParticipants(List.of(session)).get(0))
+                .orElse(null);
+    }
+
+    /**
+     * Validator of the session, its participants included, or null when it does not exist.
+     */
+    public CacheValidator findValidatorById(Long id) {
+        return this.sessionRepository.findValidatorById(id).orElse(null);
+    }
+
+    /**
+     * Validator of every listing and page of sessions.
+     */
+    public CacheValidator findListValidator() {
+        return this.sessionRepository.findListValidator();
+    }
+
+    // Fills in the participant ids of the sessions with a single query on the join table
+    private List<SessionDto> withParticipants(List<SessionDto> sessions) {
+        if (sessions.isEmpty()) {
+            return sessions;
+        }
+
+        Map<Long, List<Long>> participants = new HashMap<>();
+        for (SessionDto session : sessions) {
+            participants.put(session.getId(), new ArrayList<>());
+        }
+        for (Object[] row : this.sessionRepository.findParticipantIds(participants.keySet())) {
+            participants.get(((Number) row[0]).longValue()).add(((Number) row[1]).longValue());
+        }
+
+        for (SessionDto session : sessions) {
+            session.setUsers(participants.get(session.getId()));
+        }
+        return sessions;
+    }
+
+    /**
+     * Copies the edited fields onto the current session. The participants are only replaced when
+     * the request lists them, and the seats taken are then counted again in the same transaction.
+     * If the request carries the version it was edited from and the session has changed since, it
+     * is rejected; otherwise a concurrent write between the read and the save is retried on the
+     * new version.
+     */
     public Session update(Long id, Session session) {
-        session.setId(id);
-        return this.sessionRepository.save(session);
+        Session updated = retryOnConflict(() -> this.transactionTemplate.execute(status -> {
+            Session current = this.sessionRepository.findById(id).orElseThrow(NotFoundException::new);
+            if (session.getVersion() != null && !session.getVersion().equals(current.getVersion())) {
+                throw new ConflictException();
+            }
+
+            current.setName(session.getName())
+                    .setDate(session.getDate())
+                    .setDescription(session.getDescription())
+                    .setTeacher(session.getTeacher())
+                    .setCapacity(session.getCapacity());
+            if (session.getUsers() != null) {
+                current.setUsers(session.getUsers());
+            }
+            Session saved = this.sessionRepository.save(current);
+
+            this.seatService.setCapacity(id, saved.getCapacity());
+            if (session.getUsers() != null) {
+                this.seatService.recount(id);
+            }
+            return saved;
+        }));
+
+        this.searchIndex.index(id, updated.getName(), updated.getDescription());
+        this.eventBroadcaster.publish(SessionEvent.of(SessionEvent.UPDATE, id));
+        return updated;
     }
 
-    public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+    /**
+     * Copies the non-null fields of the patch onto the current session, with the same version
+     * check and retries as update(). The participants are never loaded nor written, and the UPDATE
+     * statement only sets the columns that changed.
+     */
+    public Session patch(Long id, Session patch) {
+        Session updated = retryOnConflict(() -> this.transactionTemplate.execute(status -> {
+            Session current = this.sessionRepository.findById(id).orElseThrow(NotFoundException::new);
+            if (patch.getVersion() != null && !patch.getVersion().equals(current.getVersion())) {
+                throw new ConflictException();
+            }
+
+            Optional.ofNullable(patch.getName()).ifPresent(current::setName);
+            Optional.ofNullable(patch.getDate()).ifPresent(current::setDate);
+            Optional.ofNullable(patch.getDescription()).ifPresent(current::setDescription);
+            Optional.ofNullable(patch.getTeacher()).ifPresent(current::setTeacher);
+            Optional.ofNullable(patch.getCapacity()).ifPresent(current::setCapacity);
+            Session saved = this.sessionRepository.save(current);
+
+            if (patch.getCapacity() != null) {
+                this.seatService.setCapacity(id, saved.getCapacity());
+            }
+            return saved;
+        }));
+
+        if (patch.getName() != null || patch.getDescription() != null) {
+            this.searchIndex.index(id, updated.getName(), updated.getDescription());
+        }
+        this.eventBroadcaster.publish(SessionEvent.of(SessionEvent.UPDATE, id));
+        return updated;
+    }
+
+    // Runs the write again after an optimistic locking failure, waiting a random delay of up to
+    // retryDelayMs * 2^attempt so that the writers that collided do not collide again
+    private <T> T retryOnConflict(Supplier<T> write) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return write.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= retryAttempts) {
+                    throw new ConflictException();
+                }
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(retryDelayMs << attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new ConflictException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the user to the participants, or to the waitlist when the session is full.
+     *
+     * <p>The participants are written to PARTICIPATE directly: the session and its users are not
+     * loaded, and the statements cost the same whatever the number of participants. They are not
+     * covered by the version of the session, so that participations never make an edit conflict,
+     * and the SESSIONS row is neither written nor locked: the change is traced in
+     * PARTICIPANT_CHANGES, from which cached copies of the session are refreshed. The insert does
+     * not read PARTICIPATE, so that concurrent bookings of the session take no shared lock on it
+     * that would make them deadlock; a duplicate is rejected by the primary key instead. The seat
+     * is taken last, so that its counter stays locked only until the commit.
+     *
+     * @return false when the user was put on the waitlist
+     */
+    @Transactional
+    public boolean participate(Long id, Long userId) {
+        if (this.seatService.isWaiting(id, userId)) {
+            throw new BadRequestException();
+        }
+
+        int inserted;
+        try {
+            inserted = this.sessionRepository.insertParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            // Already participating, possibly from a concurrent request
+            throw new BadRequestException();
+        }
+        if (inserted == 0) {
+            // The session or the user does not exist
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
+        if (this.seatService.takeSeat(id)) {
+            this.participantChangeRepository.record(id, LocalDateTime.now());
+            this.eventBroadcaster.publish(new SessionEvent(SessionEvent.PARTICIPATE, id, userId));
+            return true;
+        }
+        this.sessionRepository.removeParticipant(id, userId);
+        return !this.seatService.enqueue(id, userId);
+    }
+
+    /**
+     * Adds the users to the participants of the session, as far as its seats allow.
+     */
+    @Transactional
+    public List<ParticipationResultDto> addParticipants(Long id, Collection<Long> userIds) {
+        return enroll(List.of(id), userIds);
+    }
+
+    /**
+     * Adds the user to the participants of the sessions that have a seat left.
+     */
+    @Transactional
+    public List<ParticipationResultDto> addParticipations(Long userId, Collection<Long> sessionIds) {
+        return enroll(sessionIds, List.of(userId));
+    }
+
+    /**
+     * Adds each user to each session, one of the two lists having a single id, and returns the
+     * outcome of every pair in the order of the lists. Unlike participate(), the pairs that cannot
+     * be added are reported instead of failing the others, and nobody is put on a waitlist.
+     *
+     * <p>The statements do not depend on the number of pairs: the sessions, users, participations
+     * and waitlist entries are each read with a single query, the seat counters are locked and
+     * updated together, and the participations, then their traces, are inserted by a single
+     * statement each. Before the insert, the participations are read again with a locking read:
+     * the pairs added concurrently since the first read are reported as already present, and their
+     * seats given back.
+     */
+    private List<ParticipationResultDto> enroll(Collection<Long> sessionIds, Collection<Long> userIds) {
+        Set<Long> sessions = new LinkedHashSet<>(sessionIds);
+        Set<Long> users = new LinkedHashSet<>(userIds);
+        if (sessions.size() * users.size() > bulkMaxSize) {
             throw new BadRequestException();
         }
 
-        session.getUsers().add(user);
+        Set<Long> existingSessions = new HashSet<>(this.sessionRepository.findExistingIds(sessions));
+        Set<Long> existingUsers = new HashSet<>(this.userRepository.findExistingIds(users));
+        Set<List<Long>> present = new HashSet<>();
+        for (Object[] row : this.sessionRepository.findParticipations(sessions, users)) {
+            present.add(List.of(((Number) row[0]).longValue(), ((Number) row[1]).longValue()));
+        }
+        Set<List<Long>> waiting = new HashSet<>();
+        for (WaitlistEntry entry : this.seatService.findWaiting(sessions, users)) {
+            waiting.add(List.of(entry.getSessionId(), entry.getUserId()));
+        }
+
+        List<ParticipationResultDto> results = new ArrayList<>();
+        Map<Long, Integer> wanted = new HashMap<>();
+        for (Long sessionId : sessions) {
+            for (Long userId : users) {
+                List<Long> pair = List.of(sessionId, userId);
+                Outcome outcome;
+                if (!existingSessions.contains(sessionId) || !existingUsers.contains(userId)) {
+                    outcome = Outcome.NOT_FOUND;
+                } else if (present.contains(pair)) {
+                    outcome = Outcome.ALREADY_PRESENT;
+                } else if (waiting.contains(pair)) {
+                    outcome = Outcome.WAITING;
+                } else {
+                    outcome = Outcome.ADDED;
+                    wanted.merge(sessionId, 1, Integer::sum);
+                }
+                results.add(new ParticipationResultDto(sessionId, userId, outcome));
+            }
+        }
+        if (wanted.isEmpty()) {
+            return results;
+        }
+
+        // The seats go to the first users of the list
+        Map<Long, Integer> seats = this.seatService.takeSeats(wanted);
+        Set<Long> addedSessions = new LinkedHashSet<>();
+        Set<Long> addedUsers = new LinkedHashSet<>();
+        for (ParticipationResultDto result : results) {
+            if (result.getOutcome() != Outcome.ADDED) {
+                continue;
+            }
+            if (seats.merge(result.getSessionId(), -1, Integer::sum) < 0) {
+                result.setOutcome(Outcome.FULL);
+            } else {
+                addedSessions.add(result.getSessionId());
+                addedUsers.add(result.getUserId());
+            }
+        }
+        if (addedSessions.isEmpty()) {
+            return results;
+        }
+
+        Set<List<Long>> concurrent = new HashSet<>();
+        for (Object[] row : this.sessionRepository.lockParticipations(addedSessions, addedUsers)) {
+            concurrent.add(List.of(((Number) row[0]).longValue(), ((Number) row[1]).longValue()));
+        }
+        if (!concurrent.isEmpty()) {
+            Map<Long, Integer> unused = new HashMap<>();
+            addedSessions.clear();
+            addedUsers.clear();
+            for (ParticipationResultDto result : results) {
+                if (result.getOutcome() != Outcome.ADDED) {
+                    continue;
+                }
+                if (concurrent.contains(List.of(result.getSessionId(), result.getUserId()))) {
+                    result.setOutcome(Outcome.ALREADY_PRESENT);
+                    unused.merge(result.getSessionId(), 1, Integer::sum);
+                } else {
+                    addedSessions.add(result.getSessionId());
+                    addedUsers.add(result.getUserId());
+                }
+            }
+            this.seatService.returnSeats(unused);
+            if (addedSessions.isEmpty()) {
+                return results;
+            }
+        }
 
-        this.sessionRepository.save(session);
+        // With a single session or a single user, every pair of the two sets is added
+        this.sessionRepository.addParticipants(addedSessions, addedUsers);
+        this.participantChangeRepository.recordAll(addedSessions, LocalDateTime.now());
+        for (ParticipationResultDto result : results) {
+            if (result.getOutcome() == Outcome.ADDED) {
+                this.eventBroadcaster.publish(new SessionEvent(SessionEvent.PARTICIPATE, result.getSessionId(), result.getUserId()));
+            }
+        }
+        return results;
     }
 
+    /**
+     * Removes the user from the participants, handing their seat to the first user of the
+     * waitlist, or from the waitlist.
+     */
+    @Transactional
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
-            throw new NotFoundException();
+        if (this.sessionRepository.removeParticipant(id, userId) == 1) {
+            leave(id, userId);
+            return;
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
-            throw new BadRequestException();
+        if (this.seatService.leaveWaitlist(id, userId)) {
+            return;
         }
+        // Promoted from the waitlist by a concurrent cancellation in the meantime
+        if (this.sessionRepository.removeParticipant(id, userId) == 1) {
+            leave(id, userId);
+            return;
+        }
+        if (!this.sessionRepository.existsById(id)) {
+            throw new NotFoundException();
+        }
+        throw new BadRequestException();
+    }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
-
-        this.sessionRepository.save(session);
+    private void leave(Long id, Long userId) {
+        this.participantChangeRepository.record(id, LocalDateTime.now());
+        this.eventBroadcaster.publish(new SessionEvent(SessionEvent.NO_LONGER_PARTICIPATE, id, userId));
+        this.seatService.releaseSeat(id);
     }
 }
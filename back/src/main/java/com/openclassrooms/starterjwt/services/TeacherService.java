@@ -1,5 +1,6 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.CacheValidator;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import org.springframework.stereotype.Service;
@@ -21,4 +22,12 @@ public class TeacherService {
     public Teacher findById(Long id) {
         return this.teacherRepository.findById(id).orElse(null);
     }
+
+    public CacheValidator findValidatorById(Long id) {
+        return this.teacherRepository.findValidatorById(id).orElse(null);
+    }
+
+    public CacheValidator findListValidator() {
+        return this.teacherRepository.findListValidator();
+    }
 }
@@ -0,0 +1,29 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+/**
+ * Command-line arguments that start the application on an in-memory H2 database and a random
+ * port, with quiet logging. They take precedence over application.properties.
+ */
+final class BenchmarkDatabase {
+    private BenchmarkDatabase() {
+    }
+
+    static String[] arguments(String name) {
+        return new String[] {
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--debug=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.security=WARN",
+                "--logging.level.com.zaxxer.hikari=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+        };
+    }
+}
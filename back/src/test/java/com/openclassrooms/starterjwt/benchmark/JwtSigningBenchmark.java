@@ -0,0 +1,101 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import java.security.Key;
+import java.security.KeyPair;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.audit.SecurityEventLogger;
+import com.openclassrooms.starterjwt.security.jwt.JwtKeyProvider;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Sign and verify throughput for each supported algorithm. Verification goes through the shared
+ * parser, bypassing the verified-token cache; {@code verifyWithNewParser} is the former way of
+ * building a parser for each token.
+ *
+ * <p>mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtSigningBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtSigningBenchmark {
+    @Param({ "HS512", "RS256", "ES256" })
+    private String algorithm;
+
+    private JwtKeyProvider keyProvider;
+
+    private JwtUtils jwtUtils;
+
+    private UserDetailsImpl userDetails;
+
+    private Key verificationKey;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        SignatureAlgorithm alg = SignatureAlgorithm.forName(algorithm);
+        Key signingKey;
+        if (alg.isHmac()) {
+            signingKey = JwtKeyProvider.hmacKey("openclassrooms");
+            verificationKey = signingKey;
+        } else {
+            KeyPair keyPair = Keys.keyPairFor(alg);
+            signingKey = keyPair.getPrivate();
+            verificationKey = keyPair.getPublic();
+        }
+        keyProvider = new JwtKeyProvider(alg, "key-1", signingKey,
+                Collections.singletonMap("key-1", verificationKey), null);
+
+        jwtUtils = new JwtUtils(new VerifiedTokenCache(10000), keyProvider, new SecurityEventLogger(0));
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 900000);
+
+        userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .admin(true)
+                .build();
+        token = jwtUtils.generateJwtToken(userDetails);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtils.generateJwtToken(userDetails);
+    }
+
+    @Benchmark
+    public Claims verify() {
+        return keyProvider.parser().parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Claims verifyWithNewParser() {
+        return Jwts.parserBuilder().setSigningKey(verificationKey).build().parseClaimsJws(token).getBody();
+    }
+}
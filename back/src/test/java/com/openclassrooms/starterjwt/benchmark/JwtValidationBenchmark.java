@@ -0,0 +1,77 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import java.security.Key;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.audit.SecurityEventLogger;
+import com.openclassrooms.starterjwt.security.jwt.JwtKeyProvider;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/**
+ * Cost of authenticating one request: the former validate-then-read path, which parsed and
+ * verified the token twice, against a single lookup in the verified-token cache.
+ *
+ * <p>mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtValidationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtValidationBenchmark {
+    private static final Key KEY = JwtKeyProvider.hmacKey("openclassrooms");
+
+    private JwtUtils jwtUtils;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils(new VerifiedTokenCache(10000),
+                new JwtKeyProvider(SignatureAlgorithm.HS512, null, KEY, Collections.emptyMap(), KEY),
+                new SecurityEventLogger(0));
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 86400000);
+
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .admin(true)
+                .build();
+        token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+    }
+
+    @Benchmark
+    public String doubleParse() {
+        Jwts.parserBuilder().setSigningKey(KEY).build().parseClaimsJws(token);
+        return Jwts.parserBuilder().setSigningKey(KEY).build().parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public String cachedParse() {
+        Claims claims = jwtUtils.getValidatedClaims(token);
+        return claims.getSubject();
+    }
+}
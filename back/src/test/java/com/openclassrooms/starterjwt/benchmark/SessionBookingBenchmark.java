@@ -0,0 +1,100 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.services.SessionService;
+
+/**
+ * Booking throughput on a single hot session, on an in-memory H2 database: every thread books a
+ * seat and cancels it again, as its own user. With a capacity smaller than the number of threads,
+ * half of the bookings go to the waitlist and every cancellation promotes a waiting user.
+ *
+ * <p>mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SessionBookingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class SessionBookingBenchmark {
+    private static final int USERS = 64;
+
+    // Seats of the session; "none" for no limit
+    @Param({ "none", "1000", "8" })
+    private String capacity;
+
+    private ConfigurableApplicationContext context;
+
+    private SessionService sessionService;
+
+    private Long sessionId;
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Booker {
+        private Long userId;
+
+        @Setup
+        public void setUp(SessionBookingBenchmark benchmark) {
+            userId = benchmark.userIds.get(benchmark.nextUser.getAndIncrement());
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .run(BenchmarkDatabase.arguments("bookings"));
+        sessionService = context.getBean(SessionService.class);
+
+        sessionId = sessionService.create(Session.builder()
+                .name("Session").date(new Date()).description("Description")
+                .capacity("none".equals(capacity) ? null : Integer.valueOf(capacity))
+                .build()).getId();
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        for (int i = 0; i < USERS; i++) {
+            jdbc.update("insert into USERS (email, first_name, last_name, password, admin) values (?, ?, ?, ?, false)",
+                    "user" + i + "@mail.com", "User", "USER", "password");
+        }
+        userIds.addAll(jdbc.queryForList("select id from USERS order by id", Long.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void bookAndCancel(Booker booker) {
+        sessionService.participate(sessionId, booker.userId);
+        sessionService.noLongerParticipate(sessionId, booker.userId);
+    }
+}
@@ -0,0 +1,98 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.services.SessionService;
+
+/**
+ * Time to enroll a team into a session with enough seats, on an in-memory H2 database: one
+ * participate() call per user, as a client had to do before, against a single bulk enrollment.
+ *
+ * <p>mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SessionEnrollmentBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionEnrollmentBenchmark {
+    @Param({ "10", "100", "1000" })
+    private int users;
+
+    private ConfigurableApplicationContext context;
+
+    private SessionService sessionService;
+
+    private JdbcTemplate jdbc;
+
+    private Long sessionId;
+
+    private List<Long> userIds;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .run(BenchmarkDatabase.arguments("enrollments"));
+        sessionService = context.getBean(SessionService.class);
+        jdbc = context.getBean(JdbcTemplate.class);
+
+        sessionId = sessionService.create(Session.builder()
+                .name("Session").date(new Date()).description("Description").capacity(users)
+                .build()).getId();
+
+        for (int i = 0; i < users; i++) {
+            jdbc.update("insert into USERS (email, first_name, last_name, password, admin) values (?, ?, ?, ?, false)",
+                    "user" + i + "@mail.com", "User", "USER", "password");
+        }
+        userIds = jdbc.queryForList("select id from USERS order by id", Long.class);
+    }
+
+    // Every invocation enrolls the whole team into an empty session
+    @Setup(Level.Invocation)
+    public void clear() {
+        jdbc.update("delete from PARTICIPATE");
+        jdbc.update("update SESSION_SEATS set taken = 0");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int oneByOne() {
+        int added = 0;
+        for (Long userId : userIds) {
+            added += sessionService.participate(sessionId, userId) ? 1 : 0;
+        }
+        return added;
+    }
+
+    @Benchmark
+    public List<ParticipationResultDto> bulk() {
+        return sessionService.addParticipants(sessionId, userIds);
+    }
+}
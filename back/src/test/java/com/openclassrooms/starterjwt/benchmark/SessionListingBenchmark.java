@@ -0,0 +1,101 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionFilter;
+import com.openclassrooms.starterjwt.services.SessionService;
+
+/**
+ * Latency of one page of sessions as the table grows, on an in-memory H2 database: keyset pages
+ * stay flat wherever they start, while an offset page half-way through the table grows with it.
+ *
+ * <p>mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SessionListingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionListingBenchmark {
+    private static final int PAGE_SIZE = 20;
+
+    @Param({ "1000", "100000", "1000000" })
+    private int sessions;
+
+    private ConfigurableApplicationContext context;
+
+    private SessionService sessionService;
+
+    private SessionRepository sessionRepository;
+
+    private String middleCursor;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .run(BenchmarkDatabase.arguments("sessions"));
+        sessionService = context.getBean(SessionService.class);
+        sessionRepository = context.getBean(SessionRepository.class);
+
+        // Two sessions per minute, so that the (date, id) order has ties on date
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        long start = System.currentTimeMillis();
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            batch.add(new Object[] { i + 1, "Session " + i, "Description " + i, new Timestamp(start + (i / 2) * 60_000L) });
+            if (batch.size() == 10_000 || i == sessions - 1) {
+                jdbc.batchUpdate("insert into SESSIONS (id, name, description, date) values (?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+
+        List<SessionDto> middle = sessionRepository.findFirstPage(PageRequest.of(sessions / 2, 1));
+        middleCursor = SessionCursor.after(middle.get(0)).encode();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<SessionDto> keysetFirstPage() {
+        return sessionService.findPage(null, PAGE_SIZE, SessionFilter.NONE);
+    }
+
+    @Benchmark
+    public Slice<SessionDto> keysetMiddlePage() {
+        return sessionService.findPage(middleCursor, PAGE_SIZE, SessionFilter.NONE);
+    }
+
+    @Benchmark
+    public List<SessionDto> offsetMiddlePage() {
+        return sessionRepository.findFirstPage(PageRequest.of(sessions / 2 / PAGE_SIZE, PAGE_SIZE));
+    }
+}
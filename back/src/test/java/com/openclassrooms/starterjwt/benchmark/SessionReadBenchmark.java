@@ -0,0 +1,144 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.SessionFilter;
+import com.openclassrooms.starterjwt.services.SessionService;
+
+/**
+ * Reading a page of 20 sessions, and a single session, with their participant ids: mapped from
+ * Session entities whose teacher and users are hydrated, as the listing used to do, or projected
+ * into DTOs with the participant ids read from the join table. The number of SQL statements of
+ * each read is printed at startup; add {@code -prof gc} to compare the bytes allocated per read.
+ *
+ * <p>mvn -Pbenchmark test-compile exec:exec -Dbenchmark="SessionReadBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionReadBenchmark {
+    private static final int SESSIONS = 1_000;
+    private static final int USERS = 200;
+    private static final int TEACHERS = 10;
+    private static final int PARTICIPANTS = 10;
+    private static final int PAGE_SIZE = 20;
+
+    private ConfigurableApplicationContext context;
+
+    private SessionService sessionService;
+
+    private SessionRepository sessionRepository;
+
+    private SessionMapper sessionMapper;
+
+    private TransactionTemplate transactionTemplate;
+
+    private long sessionId;
+
+    @Setup
+    public void setUp() {
+        List<String> arguments = new ArrayList<>(List.of(BenchmarkDatabase.arguments("reads")));
+        arguments.add("--spring.jpa.properties.hibernate.generate_statistics=true");
+        arguments.add("--logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN");
+        context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .run(arguments.toArray(new String[0]));
+        sessionService = context.getBean(SessionService.class);
+        sessionRepository = context.getBean(SessionRepository.class);
+        sessionMapper = context.getBean(SessionMapper.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        for (int i = 1; i <= TEACHERS; i++) {
+            jdbc.update("insert into TEACHERS (id, first_name, last_name) values (?, ?, ?)", i, "Teacher", "TEACHER" + i);
+        }
+        for (int i = 1; i <= USERS; i++) {
+            jdbc.update("insert into USERS (id, email, first_name, last_name, password, admin) values (?, ?, ?, ?, ?, false)",
+                    i, "user" + i + "@mail.com", "User", "USER", "$2a$10$0000000000000000000000000000000000000000000000000000");
+        }
+        long start = System.currentTimeMillis();
+        List<Object[]> sessions = new ArrayList<>();
+        List<Object[]> participants = new ArrayList<>();
+        for (int i = 1; i <= SESSIONS; i++) {
+            sessions.add(new Object[] { i, "Session " + i, "Description " + i, new Timestamp(start + i * 60_000L), i % TEACHERS + 1 });
+            for (int j = 0; j < PARTICIPANTS; j++) {
+                participants.add(new Object[] { i, (i + j * 17) % USERS + 1 });
+            }
+        }
+        jdbc.batchUpdate("insert into SESSIONS (id, name, description, date, teacher_id) values (?, ?, ?, ?, ?)", sessions);
+        jdbc.batchUpdate("insert into PARTICIPATE (session_id, user_id) values (?, ?)", participants);
+        sessionId = SESSIONS / 2;
+
+        Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        report(statistics, "entityPage", this::entityPage);
+        report(statistics, "projectionPage", this::projectionPage);
+        report(statistics, "entityDetail", this::entityDetail);
+        report(statistics, "projectionDetail", this::projectionDetail);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<SessionDto> entityPage() {
+        return transactionTemplate.execute(status -> sessionMapper.toDto(
+                sessionRepository.findAll(PageRequest.of(0, PAGE_SIZE, Sort.by("date", "id"))).getContent()));
+    }
+
+    @Benchmark
+    public Slice<SessionDto> projectionPage() {
+        return sessionService.findPage(null, PAGE_SIZE, SessionFilter.NONE);
+    }
+
+    @Benchmark
+    public SessionDto entityDetail() {
+        return transactionTemplate.execute(status -> sessionMapper.toDto(sessionRepository.findById(sessionId).orElseThrow()));
+    }
+
+    @Benchmark
+    public SessionDto projectionDetail() {
+        return sessionService.findDtoById(sessionId);
+    }
+
+    private static void report(Statistics statistics, String read, Supplier<?> call) {
+        statistics.clear();
+        call.get();
+        System.out.printf("%s: %d SQL statements, %d entities and %d collections loaded%n", read,
+                statistics.getPrepareStatementCount(), statistics.getEntityLoadCount(), statistics.getCollectionLoadCount());
+    }
+}
@@ -0,0 +1,141 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.services.SessionSearchIndex;
+import com.openclassrooms.starterjwt.services.SessionService;
+
+/**
+ * Latency of the first page of a keyword search, on an in-memory H2 database: through the search
+ * index, for a rare word, a frequent one and two words, against a LIKE '%word%' scan of the name
+ * and description, whose count of matches reads the whole table. The descriptions draw 40 words from a
+ * vocabulary of 5000 with a Zipf distribution; "prenatal" is in 1% of the names and "vinyasa" in
+ * 20%. The time to load the index is printed at startup.
+ *
+ * <p>mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SessionSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SessionSearchBenchmark {
+    private static final int PAGE_SIZE = 20;
+    private static final int VOCABULARY = 5000;
+    private static final int DESCRIPTION_WORDS = 40;
+    private static final String[] STYLES = { "Hatha", "Yin", "Ashtanga", "Kundalini", "Restorative" };
+
+    @Param({ "100000", "1000000" })
+    private int sessions;
+
+    private ConfigurableApplicationContext context;
+
+    private SessionService sessionService;
+
+    private JdbcTemplate jdbc;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .run(BenchmarkDatabase.arguments("search"));
+        sessionService = context.getBean(SessionService.class);
+        jdbc = context.getBean(JdbcTemplate.class);
+
+        // Cumulative Zipf weights of the vocabulary
+        double[] cumulative = new double[VOCABULARY];
+        double sum = 0;
+        for (int i = 0; i < VOCABULARY; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+
+        Random random = new Random(42);
+        long start = System.currentTimeMillis();
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            String style = i % 100 == 0 ? "Prenatal" : i % 5 == 0 ? "Vinyasa" : STYLES[i % STYLES.length];
+            StringBuilder description = new StringBuilder();
+            for (int j = 0; j < DESCRIPTION_WORDS; j++) {
+                int word = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                description.append("word").append(word < 0 ? -word - 1 : word).append(' ');
+            }
+            batch.add(new Object[] { i + 1, style + " " + i, description.toString(), new Timestamp(start + i * 60_000L) });
+            if (batch.size() == 10_000 || i == sessions - 1) {
+                jdbc.batchUpdate("insert into SESSIONS (id, name, description, date) values (?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+
+        long loadStart = System.nanoTime();
+        context.getBean(SessionSearchIndex.class).load();
+        System.out.printf("%nIndex of %d sessions loaded in %d ms%n", sessions,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStart));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<SessionDto> indexRareWord() {
+        return sessionService.search("prenatal", 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<SessionDto> indexFrequentWord() {
+        return sessionService.search("vinyasa", 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<SessionDto> indexTwoWords() {
+        return sessionService.search("prenatal word42", 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<Long> likeRareWord() {
+        return like("prenatal");
+    }
+
+    @Benchmark
+    public Page<Long> likeFrequentWord() {
+        return like("vinyasa");
+    }
+
+    // The first page and the number of matches, which takes a scan of the whole table
+    private Page<Long> like(String word) {
+        String pattern = "%" + word + "%";
+        List<Long> ids = jdbc.queryForList("select id from SESSIONS where lower(name) like ? or lower(description) like ? limit ?",
+                Long.class, pattern, pattern, PAGE_SIZE);
+        Long total = jdbc.queryForObject("select count(*) from SESSIONS where lower(name) like ? or lower(description) like ?",
+                Long.class, pattern, pattern);
+        return new PageImpl<>(ids, PageRequest.of(0, PAGE_SIZE), total);
+    }
+}
@@ -2,17 +2,20 @@ package com.openclassrooms.starterjwt.controllers;
 
 // Importation des bibliothèques nécessaires pour les tests, les assertions, et les mocks
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
-import java.time.LocalDateTime;
-
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -20,14 +23,23 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.request.TokenRefreshRequest;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.bulkhead.AuthBulkhead;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.ratelimit.LoginRateLimiter;
+import com.openclassrooms.starterjwt.security.services.RefreshTokenService;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.KnownEmailFilter;
 
 // Annotation pour utiliser Mockito avec JUnit 5
 @ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
@@ -52,6 +64,21 @@ class AuthControllerTest {
     @Mock
     private UserRepository userRepository;
 
+    // Pool d'authentification réel, de taille minimale, pour exécuter les traitements asynchrones
+    @Spy
+    private AuthBulkhead authBulkhead = new AuthBulkhead(1, 10, 1);
+
+    @Mock
+    private LoginRateLimiter loginRateLimiter;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private KnownEmailFilter knownEmailFilter;
+
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+
     // Injection des mocks dans l'instance du contrôleur
     @InjectMocks
     private AuthController authController;
@@ -74,30 +101,19 @@ class AuthControllerTest {
 
         // Création d'un utilisateur avec des détails simulés
         UserDetailsImpl userDetails = mock(UserDetailsImpl.class);
+        when(userDetails.getId()).thenReturn(1L);
         when(userDetails.getUsername()).thenReturn("user@example.com");
+        when(userDetails.getAdmin()).thenReturn(true);
 
         // Configuration des comportements attendus des mocks
         when(authentication.getPrincipal()).thenReturn(userDetails);
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(authentication);
-        when(jwtUtils.generateJwtToken(authentication)).thenReturn("mockJwtToken");
-
-        // Création d'un utilisateur factice en utilisant le constructeur avec des arguments
-        User mockUser = new User(
-                "user1@mail.com",  // email
-                "USER",            // lastName
-                "User",            // firstName
-                "password",        // password
-                false              // admin
-        );
-        mockUser.setId(1L);  // Utilisation de `setId` pour l'ID
-        mockUser.setCreatedAt(LocalDateTime.now());
-        mockUser.setUpdatedAt(LocalDateTime.now());
-
-        when(userRepository.findByEmail(any())).thenReturn(java.util.Optional.of(mockUser));
+        when(jwtUtils.generateJwtToken(userDetails)).thenReturn("mockJwtToken");
+        when(refreshTokenService.create(1L)).thenReturn("mockRefreshToken");
 
         // WHEN
         // Appel de la méthode authenticateUser du contrôleur
-        ResponseEntity<?> response = authController.authenticateUser(loginRequest);
+        ResponseEntity<?> response = authController.authenticateUser(loginRequest, request).join();
 
         // THEN
         // Vérification du code de statut HTTP et du contenu de la réponse
@@ -105,7 +121,12 @@ class AuthControllerTest {
         assertThat(response.getBody()).isInstanceOf(JwtResponse.class);
         JwtResponse jwtResponse = (JwtResponse) response.getBody();
         assertThat(jwtResponse.getToken()).isEqualTo("mockJwtToken");
+        assertThat(jwtResponse.getRefreshToken()).isEqualTo("mockRefreshToken");
         assertThat(jwtResponse.getUsername()).isEqualTo("user@example.com");
+        assertThat(jwtResponse.getAdmin()).isTrue();
+
+        // Le statut administrateur provient du principal : aucune seconde requête en base
+        verifyNoInteractions(userRepository);
     }
 
     // Test de la méthode registerUser() pour un utilisateur avec des informations valides
@@ -120,12 +141,13 @@ class AuthControllerTest {
         signUpRequest.setPassword("password");
 
         // Configuration des comportements attendus des mocks
+        when(knownEmailFilter.mightContain("user@example.com")).thenReturn(true);
         when(userRepository.existsByEmail(any())).thenReturn(false);
         when(passwordEncoder.encode(any())).thenReturn("encodedPassword");
 
         // WHEN
         // Appel de la méthode registerUser du contrôleur
-        ResponseEntity<?> response = authController.registerUser(signUpRequest);
+        ResponseEntity<?> response = authController.registerUser(signUpRequest, request).join();
 
         // THEN
         // Vérification du code de statut HTTP et du contenu de la réponse
@@ -133,6 +155,70 @@ class AuthControllerTest {
         assertThat(response.getBody()).isInstanceOf(MessageResponse.class);
         MessageResponse messageResponse = (MessageResponse) response.getBody();
         assertThat(messageResponse.getMessage()).isEqualTo("User registered successfully!");
+        // Le nouvel email est ajouté au filtre
+        verify(knownEmailFilter, times(1)).put("user@example.com");
+    }
+
+    // Test de la méthode registerUser() pour un email inconnu du filtre : aucune requête d'existence
+    @Test
+    void registerUserUnknownEmailTest() {
+        // GIVEN
+        SignupRequest signUpRequest = new SignupRequest();
+        signUpRequest.setEmail("new@example.com");
+        signUpRequest.setFirstName("User");
+        signUpRequest.setLastName("USER");
+        signUpRequest.setPassword("password");
+        when(knownEmailFilter.mightContain("new@example.com")).thenReturn(false);
+        when(passwordEncoder.encode(any())).thenReturn("encodedPassword");
+
+        // WHEN
+        ResponseEntity<?> response = authController.registerUser(signUpRequest, request).join();
+
+        // THEN : Un seul aller-retour, l'insertion
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(userRepository, never()).existsByEmail(any());
+        verify(userRepository, times(1)).save(any());
+    }
+
+    // Test de la méthode registerUser() lorsque la contrainte d'unicité rejette l'insertion
+    @Test
+    void registerUserDuplicateOnInsertTest() {
+        // GIVEN : Un email inscrit entre-temps, par exemple sur un autre noeud
+        SignupRequest signUpRequest = new SignupRequest();
+        signUpRequest.setEmail("user@example.com");
+        signUpRequest.setFirstName("User");
+        signUpRequest.setLastName("USER");
+        signUpRequest.setPassword("password");
+        when(knownEmailFilter.mightContain("user@example.com")).thenReturn(false);
+        when(passwordEncoder.encode(any())).thenReturn("encodedPassword");
+        when(userRepository.save(any())).thenThrow(new DataIntegrityViolationException("Duplicate entry",
+                new ConstraintViolationException("Duplicate entry", new SQLException(), "UK_USERS_EMAIL_INDEX_4")));
+
+        // WHEN
+        ResponseEntity<?> response = authController.registerUser(signUpRequest, request).join();
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(knownEmailFilter, never()).put(any());
+    }
+
+    // Test de la méthode registerUser() lorsqu'une autre contrainte rejette l'insertion
+    @Test
+    void registerUserOtherViolationTest() {
+        // GIVEN : Un nom trop long pour sa colonne, et un email libre
+        SignupRequest signUpRequest = new SignupRequest();
+        signUpRequest.setEmail("user@example.com");
+        signUpRequest.setFirstName("User");
+        signUpRequest.setLastName("USER");
+        signUpRequest.setPassword("password");
+        when(passwordEncoder.encode(any())).thenReturn("encodedPassword");
+        when(userRepository.save(any())).thenThrow(new DataIntegrityViolationException("Value too long"));
+        when(userRepository.existsByEmail("user@example.com")).thenReturn(false);
+
+        // WHEN / THEN : L'erreur n'est pas présentée comme un email déjà utilisé
+        assertThatThrownBy(() -> authController.registerUser(signUpRequest, request).join())
+                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+        verify(knownEmailFilter, never()).put(any());
     }
 
     // Test de la méthode registerUser() pour un utilisateur dont l'email existe déjà
@@ -147,14 +233,87 @@ class AuthControllerTest {
         invalidSignUpRequest.setPassword("password");
 
         // Configuration des comportements attendus des mocks
+        when(knownEmailFilter.mightContain("user@example.com")).thenReturn(true);
         when(userRepository.existsByEmail(any())).thenReturn(true);
 
         // WHEN
         // Appel de la méthode registerUser du contrôleur
-        ResponseEntity<?> response = authController.registerUser(invalidSignUpRequest);
+        ResponseEntity<?> response = authController.registerUser(invalidSignUpRequest, request).join();
 
         // THEN
         // Vérification du code de statut HTTP pour un email existant
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
+
+    // Test de la méthode authenticateUser() lorsque la limite de tentatives est atteinte
+    @Test
+    void authenticateUserRateLimitedTest() {
+        // GIVEN : Le limiteur refuse la tentative pour les 1500 prochaines millisecondes
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("email@test.com");
+        loginRequest.setPassword("password");
+        when(loginRateLimiter.tryAcquire("email@test.com", request.getRemoteAddr())).thenReturn(1500L);
+
+        // WHEN
+        ResponseEntity<?> response = authController.authenticateUser(loginRequest, request).join();
+
+        // THEN : Réponse 429 immédiate, sans vérification du mot de passe
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst("Retry-After")).isEqualTo("2");
+        verifyNoInteractions(authenticationManager, authBulkhead);
+    }
+
+    // Test de la méthode refreshToken() avec un jeton de rafraîchissement valide
+    @Test
+    void refreshTokenTest() {
+        // GIVEN : Le jeton est consommé et un nouveau couple de jetons est émis
+        TokenRefreshRequest refreshRequest = new TokenRefreshRequest();
+        refreshRequest.setRefreshToken("oldRefreshToken");
+        User user = new User(1L, "user@example.com", "USER", "User", "password", false, LocalDateTime.now(), LocalDateTime.now());
+        when(refreshTokenService.consume("oldRefreshToken")).thenReturn(1L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(jwtUtils.generateJwtToken(any(UserDetailsImpl.class))).thenReturn("newJwtToken");
+        when(refreshTokenService.create(1L)).thenReturn("newRefreshToken");
+
+        // WHEN
+        ResponseEntity<?> response = authController.refreshToken(refreshRequest);
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        JwtResponse jwtResponse = (JwtResponse) response.getBody();
+        assertThat(jwtResponse.getToken()).isEqualTo("newJwtToken");
+        assertThat(jwtResponse.getRefreshToken()).isEqualTo("newRefreshToken");
+        assertThat(jwtResponse.getUsername()).isEqualTo("user@example.com");
+    }
+
+    // Test de la méthode refreshToken() avec un jeton invalide, expiré ou déjà utilisé
+    @Test
+    void refreshTokenInvalidTest() {
+        // GIVEN
+        TokenRefreshRequest refreshRequest = new TokenRefreshRequest();
+        refreshRequest.setRefreshToken("usedRefreshToken");
+        when(refreshTokenService.consume("usedRefreshToken")).thenReturn(null);
+
+        // WHEN
+        ResponseEntity<?> response = authController.refreshToken(refreshRequest);
+
+        // THEN : Réponse 401 sans nouveau jeton
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        verifyNoInteractions(userRepository, jwtUtils);
+    }
+
+    // Test de la méthode logout() : le jeton de rafraîchissement est révoqué
+    @Test
+    void logoutTest() {
+        // GIVEN
+        TokenRefreshRequest logoutRequest = new TokenRefreshRequest();
+        logoutRequest.setRefreshToken("refreshToken");
+
+        // WHEN
+        ResponseEntity<?> response = authController.logout(logoutRequest);
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(refreshTokenService).revoke("refreshToken");
+    }
 }
@@ -1,30 +1,60 @@
 package com.openclassrooms.starterjwt.controllers;
 
 // Importation des classes nécessaires pour les tests, la manipulation du temps, et la gestion des données
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.openclassrooms.starterjwt.dto.CacheValidator;
+import com.openclassrooms.starterjwt.dto.ParticipationBatchDto;
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto;
+import com.openclassrooms.starterjwt.dto.SessionBatchDto;
+import com.openclassrooms.starterjwt.dto.SessionChangesDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
+import com.openclassrooms.starterjwt.dto.SessionSearchPageDto;
+import com.openclassrooms.starterjwt.dto.SessionSeriesDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionEventBroadcaster;
+import com.openclassrooms.starterjwt.services.SessionFilter;
 import com.openclassrooms.starterjwt.services.SessionService;
 
 // Annotation pour utiliser Mockito avec JUnit 5
@@ -38,6 +68,12 @@ class SessionControllerTest {
     @Mock
     private SessionMapper sessionMapper;
 
+    @Mock
+    private SessionEventBroadcaster eventBroadcaster;
+
+    @Mock
+    private JwtUtils jwtUtils;
+
     // Injection des mocks dans l'instance du contrôleur
     @InjectMocks
     private SessionController sessionController;
@@ -45,9 +81,20 @@ class SessionControllerTest {
     // Instance de session pour les tests
     private Session mockSession;
 
+    // DTO renvoyé par les lectures du service
+    private SessionDto mockSessionDto;
+
+    // Requête HTTP, sans en-tête conditionnel par défaut
+    private MockHttpServletRequest httpRequest;
+
+    private ServletWebRequest webRequest;
+
     // Méthode exécutée avant chaque test pour préparer l'environnement de test
     @BeforeEach
     public void setup() {
+
+        this.httpRequest = new MockHttpServletRequest("GET", "/");
+        this.webRequest = new ServletWebRequest(this.httpRequest, new MockHttpServletResponse());
         // Création d'utilisateurs factices
         List<User> mockUsers = new ArrayList<>();
         mockUsers.add(new User(1L, "user1@mail.com", "User", "USER", "password", false, LocalDateTime.now(), LocalDateTime.now()));
@@ -57,7 +104,9 @@ class SessionControllerTest {
         Teacher mockTeacher = new Teacher(1L, "Toto", "TOTO", LocalDateTime.now(), LocalDateTime.now());
 
         // Création d'une session factice
-        this.mockSession = new Session(1L, "Session 1", new Date(), "description 1", mockTeacher, mockUsers, LocalDateTime.now(), LocalDateTime.now());
+        this.mockSession = new Session(1L, "Session 1", new Date(), "description 1", mockTeacher, mockUsers, LocalDateTime.now(), LocalDateTime.now(), 0L, null);
+        this.mockSessionDto = new SessionDto(1L, "Session 1", this.mockSession.getDate(), 1L, "description 1", List.of(1L, 2L),
+                LocalDateTime.now(), LocalDateTime.now(), 0L, null);
     }
 
     // Test de la méthode findById() lorsqu'une session est trouvée avec succès
@@ -65,17 +114,18 @@ class SessionControllerTest {
     void findByIdSuccessTest() {
         // GIVEN
         String sessionId = "1";
-        Session session = this.mockSession;
-        // Simulation de la méthode getById du service pour renvoyer la session factice
-        when(sessionService.getById(anyLong())).thenReturn(session);
+        SessionDto session = this.mockSessionDto;
+        // Simulation de la lecture du DTO par le service
+        when(sessionService.findValidatorById(1L)).thenReturn(new CacheValidator(0L, LocalDateTime.now()));
+        when(sessionService.findDtoById(anyLong())).thenReturn(session);
 
         // WHEN
-        ResponseEntity<?> response = sessionController.findById(sessionId);
+        ResponseEntity<?> response = sessionController.findById(sessionId, webRequest);
 
         // THEN
         // Vérification que le code de statut HTTP est OK et que le corps de la réponse est correct
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody()).isEqualTo(this.sessionMapper.toDto(session));
+        assertThat(response.getBody()).isEqualTo(session);
     }
 
     // Test de la méthode findById() lorsqu'aucune session n'est trouvée
@@ -83,11 +133,11 @@ class SessionControllerTest {
     void findByIdNotFoundTest() {
         // GIVEN
         String sessionId = "1";
-        // Simulation de la méthode getById du service pour renvoyer null
-        when(sessionService.getById(anyLong())).thenReturn(null);
+        // Simulation du service pour renvoyer null : la session n'existe pas
+        when(sessionService.findValidatorById(1L)).thenReturn(null);
 
         // WHEN
-        ResponseEntity<?> response = sessionController.findById(sessionId);
+        ResponseEntity<?> response = sessionController.findById(sessionId, webRequest);
 
         // THEN
         // Vérification que le code de statut HTTP est NOT_FOUND
@@ -101,28 +151,249 @@ class SessionControllerTest {
         String invalidSessionId = "invalidId";
 
         // WHEN
-        ResponseEntity<?> response = sessionController.findById(invalidSessionId);
+        ResponseEntity<?> response = sessionController.findById(invalidSessionId, webRequest);
 
         // THEN
         // Vérification que le code de statut HTTP est BAD_REQUEST
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    // Test de la méthode findById() lorsque le client a déjà la version courante de la session
+    @Test
+    void findByIdNotModifiedTest() {
+        // GIVEN : La requête porte l'ETag courant de la session
+        CacheValidator validator = new CacheValidator(3L, LocalDateTime.now());
+        when(sessionService.findValidatorById(1L)).thenReturn(validator);
+        httpRequest.addHeader("If-None-Match", validator.getEtag());
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.findById("1", webRequest);
+
+        // THEN : 304 sans que la session ne soit lue
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(sessionService, never()).findDtoById(anyLong());
+    }
+
     // Test de la méthode findAll() lorsqu'une liste de sessions est récupérée avec succès
     @Test
     void findAllSuccessTest() {
         // GIVEN
-        List<Session> sessions = List.of(this.mockSession);
+        List<SessionDto> sessions = List.of(this.mockSessionDto);
         // Simulation de la méthode findAll du service pour renvoyer la liste des sessions
+        when(sessionService.findListValidator()).thenReturn(new CacheValidator(1L, LocalDateTime.now()));
         when(sessionService.findAll()).thenReturn(sessions);
 
         // WHEN
-        ResponseEntity<?> response = sessionController.findAll();
+        ResponseEntity<?> response = sessionController.findAll(null, null, null, null, null, false, webRequest);
 
         // THEN
         // Vérification que le code de statut HTTP est OK et que le corps de la réponse est correct
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody()).isEqualTo(this.sessionMapper.toDto(sessions));
+        assertThat(response.getBody()).isEqualTo(sessions);
+    }
+
+    // Test de la méthode findAll() avec pagination : le curseur de la page suivante est renvoyé
+    @Test
+    void findAllPaginatedTest() {
+        // GIVEN : Une page de 1 session suivie d'autres sessions
+        List<SessionDto> sessions = List.of(this.mockSessionDto);
+        when(sessionService.findListValidator()).thenReturn(new CacheValidator(2L, LocalDateTime.now()));
+        when(sessionService.findPage(eq(null), eq(1), any(SessionFilter.class)))
+                .thenReturn(new SliceImpl<>(sessions, PageRequest.of(0, 1), true));
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.findAll(null, 1, null, null, null, false, webRequest);
+
+        // THEN : Le curseur désigne la dernière session de la page
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        SessionPageDto page = (SessionPageDto) response.getBody();
+        assertThat(SessionCursor.decode(page.getNextCursor()).getId()).isEqualTo(1L);
+        assertThat(SessionCursor.decode(page.getNextCursor()).getDate()).isEqualTo(this.mockSessionDto.getDate());
+    }
+
+    // Test de la méthode findAll() avec pagination sur la dernière page
+    @Test
+    void findAllLastPageTest() {
+        when(sessionService.findListValidator()).thenReturn(new CacheValidator(2L, LocalDateTime.now()));
+        when(sessionService.findPage(eq("cursor"), eq(null), any(SessionFilter.class)))
+                .thenReturn(new SliceImpl<>(List.of(this.mockSessionDto), PageRequest.of(0, 20), false));
+
+        ResponseEntity<?> response = sessionController.findAll("cursor", null, null, null, null, false, webRequest);
+
+        assertThat(((SessionPageDto) response.getBody()).getNextCursor()).isNull();
+    }
+
+    // Test de la méthode findAll() avec filtres : la réponse est paginée et les sessions passées sont exclues
+    @Test
+    void findAllFilteredTest() {
+        // GIVEN : Une copie du client à jour, qui ne vaut pas pour les sessions à venir
+        Date to = new Date(System.currentTimeMillis() + 86_400_000L);
+        when(sessionService.findPage(eq(null), eq(null), any(SessionFilter.class)))
+                .thenReturn(new SliceImpl<>(List.of(this.mockSessionDto), PageRequest.of(0, 20), false));
+        httpRequest.addHeader("If-Modified-Since", System.currentTimeMillis());
+
+        // WHEN : Sessions à venir de l'enseignant 1 jusqu'à demain
+        ResponseEntity<?> response = sessionController.findAll(null, null, 1L, null, to, true, webRequest);
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(((SessionPageDto) response.getBody()).getItems()).containsExactly(this.mockSessionDto);
+        verify(sessionService, never()).findListValidator();
+        verify(sessionService).findPage(eq(null), eq(null), argThat(filter -> filter.getTeacherId().equals(1L)
+                && filter.getFrom() != null && filter.getTo().equals(to)));
+    }
+
+    // Test de la méthode findMine() : seules les sessions de l'utilisateur connecté sont demandées
+    @Test
+    void findMineTest() {
+        // GIVEN : L'utilisateur 7 est connecté
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(7L).username("yoga@studio.com").build();
+        SecurityContextHolder.setContext(new SecurityContextImpl(new UsernamePasswordAuthenticationToken(userDetails, null)));
+        when(sessionService.findPage(eq(null), eq(10), any(SessionFilter.class)))
+                .thenReturn(new SliceImpl<>(List.of(this.mockSessionDto), PageRequest.of(0, 10), false));
+
+        try {
+            // WHEN : Ses sessions à venir
+            ResponseEntity<?> response = sessionController.findMine(null, 10, true);
+
+            // THEN
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(((SessionPageDto) response.getBody()).getItems()).containsExactly(this.mockSessionDto);
+            verify(sessionService).findPage(eq(null), eq(10), argThat(filter -> filter.getParticipantId().equals(7L)
+                    && filter.getFrom() != null && filter.getTeacherId() == null));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    // Test de la méthode createAll() : rien n'est créé si une session a un enseignant inconnu
+    @Test
+    void createAllUnknownTeacherTest() {
+        // GIVEN : La deuxième session référence un enseignant qui n'existe pas
+        List<SessionDto> dtos = List.of(this.mockSessionDto, this.mockSessionDto);
+        when(sessionMapper.toEntity(dtos)).thenReturn(List.of(this.mockSession, new Session().setName("Sans enseignant")));
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.createAll(new SessionBatchDto(dtos));
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(((MessageResponse) response.getBody()).getMessage()).isEqualTo("Unknown teacher for sessions [1]");
+        verify(sessionService, never()).createAll(any());
+    }
+
+    // Test de la méthode createSeries() : les séances sont créées à partir de la première
+    @Test
+    void createSeriesTest() {
+        // GIVEN : Une série les lundis, sans intervalle précisé
+        SessionSeriesDto seriesDto = new SessionSeriesDto(this.mockSessionDto, Set.of(DayOfWeek.MONDAY),
+                LocalDate.now().plusMonths(6), null);
+        when(sessionMapper.toEntity(this.mockSessionDto)).thenReturn(this.mockSession);
+        when(sessionService.createSeries(this.mockSession, Set.of(DayOfWeek.MONDAY), seriesDto.getUntil(), 1))
+                .thenReturn(List.of(this.mockSession));
+        when(sessionMapper.toDto(List.of(this.mockSession))).thenReturn(List.of(this.mockSessionDto));
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.createSeries(seriesDto);
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(List.of(this.mockSessionDto));
+    }
+
+    // Test de la méthode addParticipants() : un résultat par utilisateur
+    @Test
+    void addParticipantsTest() {
+        // GIVEN
+        List<ParticipationResultDto> results = List.of(
+                new ParticipationResultDto(1L, 2L, ParticipationResultDto.Outcome.ADDED),
+                new ParticipationResultDto(1L, 3L, ParticipationResultDto.Outcome.FULL));
+        when(sessionService.addParticipants(1L, List.of(2L, 3L))).thenReturn(results);
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.addParticipants("1", new ParticipationBatchDto(List.of(2L, 3L)));
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(results);
+    }
+
+    // Test de la méthode addParticipations() avec un identifiant invalide
+    @Test
+    void addParticipationsInvalidIdTest() {
+        // WHEN
+        ResponseEntity<?> response = sessionController.addParticipations("abc", new ParticipationBatchDto(List.of(1L)));
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(sessionService, never()).addParticipations(any(), any());
+    }
+
+    // Test de la méthode search() : les sessions trouvées et leur nombre total
+    @Test
+    void searchTest() {
+        when(sessionService.search("vinyasa", null, 1))
+                .thenReturn(new PageImpl<>(List.of(this.mockSessionDto), PageRequest.of(0, 1), 12));
+
+        ResponseEntity<?> response = sessionController.search("vinyasa", null, 1);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        SessionSearchPageDto page = (SessionSearchPageDto) response.getBody();
+        assertThat(page.getItems()).containsExactly(this.mockSessionDto);
+        assertThat(page.getTotal()).isEqualTo(12);
+    }
+
+    // Test de la méthode search() pendant le chargement de l'index
+    @Test
+    void searchUnavailableTest() {
+        when(sessionService.search("vinyasa", null, null)).thenReturn(null);
+
+        ResponseEntity<?> response = sessionController.search("vinyasa", null, null);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst("Retry-After")).isEqualTo("30");
+    }
+
+    // Test de la méthode findAll() lorsqu'aucune session n'a changé depuis la date du client
+    @Test
+    void findAllNotModifiedTest() {
+        // GIVEN : Dernière modification il y a une heure, copie du client de maintenant
+        when(sessionService.findListValidator()).thenReturn(new CacheValidator(1L, LocalDateTime.now().minusHours(1)));
+        httpRequest.addHeader("If-Modified-Since", System.currentTimeMillis());
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.findAll(null, null, null, null, null, false, webRequest);
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(sessionService, never()).findAll();
+    }
+
+    // Test de la méthode findChanges() : les changements depuis le repère sont renvoyés tels quels
+    @Test
+    void findChangesTest() {
+        // GIVEN
+        LocalDateTime since = LocalDateTime.now().minusMinutes(1);
+        SessionChangesDto changes = new SessionChangesDto(List.of(this.mockSessionDto), List.of(2L), false, LocalDateTime.now(), null);
+        when(sessionService.findChanges(since, null)).thenReturn(changes);
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.findChanges(since, null);
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(changes);
+    }
+
+    // Test de la méthode events() lorsque le nombre maximal d'abonnés est atteint
+    @Test
+    void eventsTooManySubscribersTest() {
+        when(eventBroadcaster.subscribe(1L)).thenReturn(null);
+
+        ResponseEntity<?> response = sessionController.events(1L);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst("Retry-After")).isEqualTo("30");
     }
 
     // Test de la méthode create() lorsqu'une session est créée avec succès
@@ -181,6 +452,40 @@ class SessionControllerTest {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    // Test de la méthode patch() : la session modifiée est relue sans charger ses participants
+    @Test
+    void patchSuccessTest() {
+        // GIVEN : Seule la description est modifiée
+        SessionPatchDto patchDto = new SessionPatchDto(null, null, null, "New description", null, null);
+        Session patch = new Session().setDescription("New description");
+        when(sessionMapper.toEntity(patchDto)).thenReturn(patch);
+        when(sessionService.findDtoById(1L)).thenReturn(this.mockSessionDto);
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.patch("1", patchDto);
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(this.mockSessionDto);
+        verify(sessionService).patch(1L, patch);
+        verify(sessionMapper, never()).toDto(any(Session.class));
+    }
+
+    // Test de la méthode patch() avec un enseignant inconnu
+    @Test
+    void patchUnknownTeacherTest() {
+        // GIVEN
+        SessionPatchDto patchDto = new SessionPatchDto(null, null, 99L, null, null, null);
+        when(sessionMapper.toEntity(patchDto)).thenReturn(new Session());
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.patch("1", patchDto);
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(sessionService, never()).patch(any(), any());
+    }
+
     // Test de la méthode delete() lorsqu'une session est supprimée avec succès
     @Test
     void deleteSuccessTest() {
@@ -233,6 +538,7 @@ class SessionControllerTest {
         // GIVEN
         String sessionId = "1";
         String userId = "1";
+        when(sessionService.participate(1L, 1L)).thenReturn(true);
 
         // WHEN
         ResponseEntity<?> response = sessionController.participate(sessionId, userId);
@@ -243,6 +549,19 @@ class SessionControllerTest {
         verify(sessionService, times(1)).participate(Long.valueOf(sessionId), Long.valueOf(userId));
     }
 
+    // Test de la méthode participate() lorsque la session est complète
+    @Test
+    void participateWaitlistedTest() {
+        // GIVEN : L'utilisateur est placé en liste d'attente
+        when(sessionService.participate(1L, 1L)).thenReturn(false);
+
+        // WHEN
+        ResponseEntity<?> response = sessionController.participate("1", "1");
+
+        // THEN : La demande est acceptée sans que l'inscription soit faite
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    }
+
     // Test de la méthode participate() lorsqu'un identifiant de session invalide est fourni
     @Test
     void participateBadRequestTest() {
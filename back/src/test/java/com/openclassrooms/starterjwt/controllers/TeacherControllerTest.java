@@ -12,8 +12,12 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 
 // Importation des classes spécifiques au projet
+import com.openclassrooms.starterjwt.dto.CacheValidator;
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.services.TeacherService;
@@ -36,9 +40,17 @@ class TeacherControllerTest {
     // Instance d'enseignant pour les tests
     private Teacher mockTeacher;
 
+    // Requête HTTP, sans en-tête conditionnel par défaut
+    private MockHttpServletRequest httpRequest;
+
+    private ServletWebRequest webRequest;
+
     // Méthode exécutée avant chaque test pour préparer l'environnement de test
     @BeforeEach
     public void setup() {    
+
+        this.httpRequest = new MockHttpServletRequest("GET", "/");
+        this.webRequest = new ServletWebRequest(this.httpRequest, new MockHttpServletResponse());
         // Création d'un enseignant factice pour les tests
         this.mockTeacher = new Teacher(1L, "Toto", "TOTO", LocalDateTime.now(), LocalDateTime.now());
     }
@@ -50,10 +62,11 @@ class TeacherControllerTest {
         String teacherId = "1";
         Teacher teacher = this.mockTeacher;
         // Simulation de la méthode findById du service pour renvoyer l'enseignant factice
+        when(teacherService.findValidatorById(1L)).thenReturn(new CacheValidator(teacher.getUpdatedAt()));
         when(teacherService.findById(anyLong())).thenReturn(teacher);
 
         // WHEN
-        ResponseEntity<?> response = teacherController.findById(teacherId);
+        ResponseEntity<?> response = teacherController.findById(teacherId, webRequest);
 
         // THEN
         // Vérification que le code de statut HTTP est OK et que le corps de la réponse est correct
@@ -66,11 +79,11 @@ class TeacherControllerTest {
     void findByIdNotFoundTest() {
         // GIVEN
         String teacherId = "1";
-        // Simulation de la méthode findById du service pour renvoyer null
-        when(teacherService.findById(anyLong())).thenReturn(null);
+        // Simulation du service pour renvoyer null : l'enseignant n'existe pas
+        when(teacherService.findValidatorById(1L)).thenReturn(null);
 
         // WHEN
-        ResponseEntity<?> response = teacherController.findById(teacherId);
+        ResponseEntity<?> response = teacherController.findById(teacherId, webRequest);
 
         // THEN
         // Vérification que le code de statut HTTP est NOT_FOUND
@@ -84,7 +97,7 @@ class TeacherControllerTest {
         String invalidTeacherId = "invalidId";
 
         // WHEN
-        ResponseEntity<?> response = teacherController.findById(invalidTeacherId);
+        ResponseEntity<?> response = teacherController.findById(invalidTeacherId, webRequest);
 
         // THEN
         // Vérification que le code de statut HTTP est BAD_REQUEST
@@ -97,14 +110,32 @@ class TeacherControllerTest {
         // GIVEN
         List<Teacher> teachers = List.of(this.mockTeacher);
         // Simulation de la méthode findAll du service pour renvoyer une liste d'enseignants
+        when(teacherService.findListValidator()).thenReturn(new CacheValidator(1L, this.mockTeacher.getUpdatedAt()));
         when(teacherService.findAll()).thenReturn(teachers);
 
         // WHEN
-        ResponseEntity<?> response = teacherController.findAll();
+        ResponseEntity<?> response = teacherController.findAll(webRequest);
 
         // THEN
         // Vérification que le code de statut HTTP est OK et que le corps de la réponse est correct
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(this.teacherMapper.toDto(teachers));
     }
+
+    // Test de la méthode findAll() lorsque le client a déjà la liste courante
+    @Test
+    void findAllNotModifiedTest() {
+        // GIVEN : La requête porte l'ETag courant de la liste
+        CacheValidator validator = new CacheValidator(1L, this.mockTeacher.getUpdatedAt());
+        when(teacherService.findListValidator()).thenReturn(validator);
+        httpRequest.addHeader("If-None-Match", validator.getEtag());
+
+        // WHEN
+        ResponseEntity<?> response = teacherController.findAll(webRequest);
+
+        // THEN : 304 sans lecture ni conversion des enseignants
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(teacherService, never()).findAll();
+        verify(teacherMapper, never()).toDto(anyList());
+    }
 }
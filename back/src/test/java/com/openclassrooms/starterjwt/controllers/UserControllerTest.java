@@ -11,16 +11,21 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import com.openclassrooms.starterjwt.dto.CacheValidator;
 import com.openclassrooms.starterjwt.dto.UserDto;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
@@ -47,9 +52,17 @@ class UserControllerTest {
     // Instance d'utilisateur pour les tests
     private User mockUser;
 
+    // Requête HTTP, sans en-tête conditionnel par défaut
+    private MockHttpServletRequest httpRequest;
+
+    private ServletWebRequest webRequest;
+
     // Méthode exécutée avant chaque test pour initialiser les données
     @BeforeEach
     public void setup() {
+
+        this.httpRequest = new MockHttpServletRequest("GET", "/");
+        this.webRequest = new ServletWebRequest(this.httpRequest, new MockHttpServletResponse());
         SecurityContextHolder.setContext(securityContext);
 
         // Création d'un utilisateur factice pour les tests
@@ -64,11 +77,12 @@ class UserControllerTest {
         User user = this.mockUser;
         UserDto userDto = new UserDto();
         // Simulation des méthodes du service et du mapper
+        when(userService.findValidatorById(1L)).thenReturn(new CacheValidator(user.getUpdatedAt()));
         when(userService.findById(anyLong())).thenReturn(user);
         when(userMapper.toDto(user)).thenReturn(userDto);
 
         // WHEN
-        ResponseEntity<?> response = userController.findById(userId);
+        ResponseEntity<?> response = userController.findById(userId, webRequest);
 
         // THEN
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
@@ -81,10 +95,10 @@ class UserControllerTest {
         // GIVEN
         String userId = "1";
         // Simulation du service renvoyant null pour un utilisateur non trouvé
-        when(userService.findById(anyLong())).thenReturn(null);
+        when(userService.findValidatorById(1L)).thenReturn(null);
 
         // WHEN
-        ResponseEntity<?> response = userController.findById(userId);
+        ResponseEntity<?> response = userController.findById(userId, webRequest);
 
         // THEN
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
@@ -97,12 +111,28 @@ class UserControllerTest {
         String invalidUserId = "invalidId";
 
         // WHEN
-        ResponseEntity<?> response = userController.findById(invalidUserId);
+        ResponseEntity<?> response = userController.findById(invalidUserId, webRequest);
 
         // THEN
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    // Test de la méthode findById() lorsque le client a déjà la version courante de l'utilisateur
+    @Test
+    void findByIdNotModifiedTest() {
+        // GIVEN : La requête porte l'ETag courant de l'utilisateur
+        CacheValidator validator = new CacheValidator(this.mockUser.getUpdatedAt());
+        when(userService.findValidatorById(1L)).thenReturn(validator);
+        httpRequest.addHeader("If-None-Match", validator.getEtag());
+
+        // WHEN
+        ResponseEntity<?> response = userController.findById("1", webRequest);
+
+        // THEN : 304 sans lecture de l'utilisateur
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(userService, never()).findById(anyLong());
+    }
+
     // Test de la méthode delete() lorsqu'une suppression d'utilisateur réussit
     @Test
     void deleteSuccessTest() {
@@ -0,0 +1,134 @@
+package com.openclassrooms.starterjwt.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.services.UserService;
+
+@ExtendWith(MockitoExtension.class)
+class SessionMapperTest {
+
+    @Mock
+    private TeacherService teacherService;
+
+    @Mock
+    private UserService userService;
+
+    @Spy
+    private RequestIdentityMap identityMap;
+
+    @InjectMocks
+    private SessionMapperImpl sessionMapper;
+
+    // Simule le traitement d'une requête HTTP
+    @BeforeEach
+    void setUp() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    // Test pour vérifier que 200 participants sont résolus en un seul appel
+    @Test
+    void toEntityResolvesUsersAtOnceTest() {
+        // GIVEN : Une session de 200 participants, dont l'un n'existe plus
+        List<Long> ids = LongStream.rangeClosed(1, 200).boxed().collect(Collectors.toList());
+        Teacher teacher = new Teacher(1L, "DELAHAYE", "Margot", LocalDateTime.now(), LocalDateTime.now());
+        when(teacherService.findById(1L)).thenReturn(teacher);
+        when(userService.findAllById(any())).thenReturn(ids.stream()
+                .filter(id -> id != 200L)
+                .collect(Collectors.toMap(Function.identity(), SessionMapperTest::user)));
+
+        // WHEN
+        Session session = sessionMapper.toEntity(sessionDto(ids));
+
+        // THEN
+        assertThat(session.getTeacher()).isEqualTo(teacher);
+        assertThat(session.getUsers()).hasSize(200);
+        assertThat(session.getUsers().get(0).getId()).isEqualTo(1L);
+        assertThat(session.getUsers().get(199)).isNull();
+        verify(userService, times(1)).findAllById(any());
+    }
+
+    // Test pour vérifier qu'une même entité n'est lue qu'une fois pendant la requête
+    @Test
+    void toEntityReusesEntitiesWithinRequestTest() {
+        // GIVEN
+        when(teacherService.findById(1L)).thenReturn(null);
+        when(userService.findAllById(List.of(1L, 2L))).thenReturn(Map.of(1L, user(1L), 2L, user(2L)));
+        when(userService.findAllById(List.of(3L))).thenReturn(Map.of(3L, user(3L)));
+
+        // WHEN : Deux conversions partagent l'enseignant et un participant
+        sessionMapper.toEntity(sessionDto(List.of(1L, 2L, 1L)));
+        Session session = sessionMapper.toEntity(sessionDto(List.of(2L, 3L)));
+
+        // THEN : Seul l'utilisateur 3 est lu la seconde fois, et l'enseignant inconnu n'est pas relu
+        assertThat(session.getUsers()).extracting(User::getId).containsExactly(2L, 3L);
+        verify(teacherService, times(1)).findById(1L);
+        verify(userService, times(1)).findAllById(List.of(3L));
+    }
+
+    // Test pour vérifier que les participants d'un lot de sessions sont résolus en un seul appel
+    @Test
+    void toEntityListResolvesUsersAtOnceTest() {
+        // GIVEN : Trois sessions hors requête HTTP, dont deux partagent un participant
+        RequestContextHolder.resetRequestAttributes();
+        when(teacherService.findById(1L)).thenReturn(null);
+        when(userService.findAllById(List.of(1L, 2L, 3L))).thenReturn(Map.of(1L, user(1L), 2L, user(2L), 3L, user(3L)));
+        SessionDto withoutUsers = sessionDto(List.of());
+        withoutUsers.setUsers(null);
+
+        // WHEN
+        List<Session> sessions = sessionMapper.toEntity(
+                List.of(sessionDto(List.of(1L, 2L)), sessionDto(List.of(2L, 3L)), withoutUsers));
+
+        // THEN
+        assertThat(sessions).hasSize(3);
+        assertThat(sessions.get(0).getUsers()).extracting(User::getId).containsExactly(1L, 2L);
+        assertThat(sessions.get(1).getUsers()).extracting(User::getId).containsExactly(2L, 3L);
+        assertThat(sessions.get(2).getUsers()).isNull();
+        verify(userService, times(1)).findAllById(any());
+    }
+
+    private static SessionDto sessionDto(List<Long> users) {
+        return new SessionDto(null, "Session", new Date(), 1L, "Description", new ArrayList<>(users),
+                null, null, null, null);
+    }
+
+    private static User user(Long id) {
+        return new User(id, "user" + id + "@mail.com", "USER", "User", "password", false,
+                LocalDateTime.now(), LocalDateTime.now());
+    }
+}
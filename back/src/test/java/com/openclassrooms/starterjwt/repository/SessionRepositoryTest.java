@@ -0,0 +1,505 @@
+package com.openclassrooms.starterjwt.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.openclassrooms.starterjwt.dto.CacheValidator;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionFilter;
+
+// Base H2 en mémoire à la place de MySQL
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.query.in_clause_parameter_padding=true",
+        "oc.app.participationsChunkSize=2",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.openclassrooms.starterjwt.repository.SessionRepositoryTest$SqlCapture"
+})
+class SessionRepositoryTest {
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ParticipantChangeRepository participantChangeRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Session> sessions = new ArrayList<>();
+
+    private final List<User> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            users.add(userRepository.save(new User("user" + i + "@mail.com", "USER", "User", "password", false)));
+        }
+
+        // GIVEN : 7 sessions, dont plusieurs à la même date, insérées dans le désordre
+        long[] days = { 3, 1, 2, 1, 3, 1, 2 };
+        for (int i = 0; i < days.length; i++) {
+            sessions.add(sessionRepository.save(Session.builder()
+                    .name("Session " + i)
+                    .date(new Date(days[i] * 86_400_000L))
+                    .description("description " + i)
+                    .users(new ArrayList<>(users.subList(0, i % 4)))
+                    .build()));
+        }
+        sessions.sort((a, b) -> a.getDate().equals(b.getDate())
+                ? a.getId().compareTo(b.getId())
+                : a.getDate().compareTo(b.getDate()));
+
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    // Test pour vérifier que le parcours par curseur renvoie chaque session une fois, dans l'ordre (date, id)
+    @Test
+    void keysetPaginationTest() {
+        List<SessionDto> visited = new ArrayList<>();
+
+        // WHEN : Parcours par pages de 2 sessions, les réservations étant lues par lots de 2
+        List<SessionDto> page = sessionRepository.findFirstPage(PageRequest.of(0, 2));
+        while (!page.isEmpty()) {
+            visited.addAll(page);
+            SessionDto last = page.get(page.size() - 1);
+            page = sessionRepository.findPage(SessionFilter.NONE, SessionCursor.after(last), 2);
+        }
+
+        // THEN
+        assertThat(visited.stream().map(SessionDto::getId).collect(Collectors.toList()))
+                .isEqualTo(sessions.stream().map(Session::getId).collect(Collectors.toList()));
+    }
+
+    // Test pour vérifier que les filtres par enseignant et par période se combinent au curseur
+    @Test
+    void findPageFilteredTest() {
+        // GIVEN : Les sessions des jours 1 et 2 sont données par l'enseignant, sauf la dernière du jour 1
+        Teacher teacher = Teacher.builder().lastName("DELAHAYE").firstName("Margot").build();
+        entityManager.persist(teacher);
+        entityManager.flush();
+        Long teacherId = teacher.getId();
+        for (Session session : sessions.subList(0, 5)) {
+            jdbcTemplate.update("update SESSIONS set teacher_id = ? where id = ?", teacherId, session.getId());
+        }
+        jdbcTemplate.update("update SESSIONS set teacher_id = null where id = ?", sessions.get(2).getId());
+        SessionFilter filter = new SessionFilter(new Date(86_400_000L), new Date(3 * 86_400_000L), teacherId);
+
+        // WHEN : Parcours par pages de 2 sessions, les réservations étant lues par lots de 2
+        List<SessionDto> first = sessionRepository.findPage(filter, null, 2);
+        List<SessionDto> second = sessionRepository.findPage(filter, SessionCursor.after(first.get(1)), 2);
+
+        // THEN : Jour 3 exclu par la borne de fin, session sans enseignant exclue
+        assertThat(first).extracting(SessionDto::getId).containsExactly(sessions.get(0).getId(), sessions.get(1).getId());
+        assertThat(second).extracting(SessionDto::getId).containsExactly(sessions.get(3).getId(), sessions.get(4).getId());
+        assertThat(sessionRepository.findPage(new SessionFilter(new Date(2 * 86_400_000L), null, null), null, 10))
+                .extracting(SessionDto::getId)
+                .containsExactlyElementsOf(sessions.subList(3, 7).stream().map(Session::getId).collect(Collectors.toList()));
+    }
+
+    // Test pour vérifier que les sessions d'un participant se lisent par pages, dans l'ordre (date, id)
+    @Test
+    void findPageOfParticipantTest() {
+        // GIVEN : Le premier utilisateur participe aux sessions 1, 2, 3, 5 et 6, le troisième à la session 3
+        List<Long> expected = sessions.stream()
+                .filter(session -> !session.getUsers().isEmpty())
+                .map(Session::getId)
+                .collect(Collectors.toList());
+        SessionFilter filter = SessionFilter.NONE.participant(users.get(0).getId());
+
+        // WHEN : Parcours par pages de 2 sessions, les réservations étant lues par lots de 2
+        List<SessionDto> visited = new ArrayList<>();
+        List<SessionDto> page = sessionRepository.findPage(filter, null, 2);
+        while (!page.isEmpty()) {
+            visited.addAll(page);
+            page = sessionRepository.findPage(filter, SessionCursor.after(page.get(page.size() - 1)), 2);
+        }
+
+        // THEN
+        assertThat(visited).extracting(SessionDto::getId).containsExactlyElementsOf(expected);
+        assertThat(sessionRepository.findPage(SessionFilter.NONE.participant(users.get(2).getId()), null, 10))
+                .extracting(SessionDto::getName).containsExactly("Session 3");
+        assertThat(sessionRepository.findPage(SessionFilter.NONE.participant(-1L), null, 10)).isEmpty();
+    }
+
+    // Test pour vérifier que les sessions d'un participant sont lues depuis l'index de ses réservations
+    @Test
+    void findPageOfParticipantUsesBookingsIndexTest() {
+        // GIVEN
+        SqlCapture.STATEMENTS.clear();
+
+        // WHEN
+        sessionRepository.findPage(SessionFilter.NONE.participant(users.get(0).getId()), null, 2);
+        String sql = SqlCapture.STATEMENTS.stream()
+                .filter(statement -> statement.contains("PARTICIPATE"))
+                .findFirst().orElseThrow();
+
+        // THEN : Les sessions réservées sont lues par l'index (user_id, session_id), par lots de 2
+        String plan = jdbcTemplate.queryForObject("explain " + sql, String.class, users.get(0).getId(), 2);
+        assertThat(plan).containsIgnoringCase("IDX_PARTICIPATE_USER_ID_SESSION_ID: USER_ID = ?1");
+    }
+
+    // Test pour vérifier que les sessions créées ensemble sont insérées par lots, avec des identifiants réservés par blocs
+    @Test
+    void batchInsertTest() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<Session> created = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            created.add(Session.builder().name("Batch " + i).date(new Date()).description("description").build());
+        }
+        statistics.clear();
+
+        // WHEN
+        sessionRepository.saveAll(created);
+        entityManager.flush();
+
+        // THEN : 120 lignes en 3 lots, et au plus 3 appels à la séquence
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(120);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(6);
+        assertThat(created.stream().map(Session::getId).distinct()).hasSize(120);
+    }
+
+    // Test pour vérifier que les participants d'une page sont lus depuis la table de jointure seule
+    @Test
+    void findParticipantIdsTest() {
+        // GIVEN : La session 3 a 3 participants, la session 4 aucun
+        Session withThree = sessionByName("Session 3");
+        Session withNone = sessionByName("Session 4");
+
+        // WHEN
+        List<Object[]> rows = sessionRepository.findParticipantIds(Set.of(withThree.getId(), withNone.getId()));
+
+        // THEN
+        assertThat(rows).hasSize(3);
+        assertThat(rows.stream().map(row -> ((Number) row[0]).longValue())).containsOnly(withThree.getId());
+        assertThat(rows.stream().map(row -> ((Number) row[1]).longValue()))
+                .containsExactlyElementsOf(users.stream().map(User::getId).collect(Collectors.toList()));
+    }
+
+    // Test pour vérifier qu'une page se lit en 2 requêtes sans charger aucune entité
+    @Test
+    void pageReadStatementsTest() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // WHEN : Lecture d'une page puis de ses participants
+        List<SessionDto> page = sessionRepository.findFirstPage(PageRequest.of(0, 5));
+        sessionRepository.findParticipantIds(page.stream().map(SessionDto::getId).collect(Collectors.toSet()));
+
+        // THEN : Ni session, ni enseignant, ni utilisateur n'est hydraté
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+    }
+
+    // Test pour vérifier que les participants d'une session se résolvent en une requête,
+    // dont le plan sert aussi pour une liste de taille voisine
+    @Test
+    void findUsersByIdsTest() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<Long> ids = users.stream().map(User::getId).collect(Collectors.toList());
+        userRepository.findAllById(ids.subList(0, 2));
+        entityManager.clear();
+        statistics.clear();
+
+        // WHEN : 3 identifiants, puis 4
+        List<User> found = userRepository.findAllById(ids);
+        userRepository.findAllById(List.of(ids.get(0), ids.get(1), ids.get(2), -1L));
+
+        // THEN : Une requête chacune ; la liste de 3 est complétée à 4 et partage le plan de la seconde
+        assertThat(found).hasSize(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getQueryPlanCacheMissCount()).isEqualTo(1);
+    }
+
+    // Test pour vérifier que les validateurs changent avec les participants et avec les suppressions
+    @Test
+    void cacheValidatorsTest() {
+        // GIVEN
+        Session session = sessionByName("Session 1");
+        CacheValidator before = sessionRepository.findValidatorById(session.getId()).orElseThrow();
+        CacheValidator listBefore = sessionRepository.findListValidator();
+
+        // WHEN : Une inscription est tracée à part, sans écrire la ligne de la session
+        sessionRepository.addParticipant(session.getId(), users.get(2).getId());
+        participantChangeRepository.record(session.getId(), LocalDateTime.now().plusSeconds(1));
+        entityManager.clear();
+
+        // THEN
+        CacheValidator after = sessionRepository.findValidatorById(session.getId()).orElseThrow();
+        Session unchanged = sessionRepository.findById(session.getId()).orElseThrow();
+        assertThat(after.getEtag()).isNotEqualTo(before.getEtag());
+        assertThat(after.getLastModified()).isGreaterThan(before.getLastModified());
+        assertThat(unchanged.getVersion()).isEqualTo(session.getVersion());
+        assertThat(unchanged.getUpdatedAt()).isCloseTo(session.getUpdatedAt(), within(1, ChronoUnit.MILLIS));
+
+        // WHEN / THEN : Une désinscription plus tardive change encore le validateur
+        sessionRepository.removeParticipant(session.getId(), users.get(2).getId());
+        participantChangeRepository.record(session.getId(), LocalDateTime.now().plusSeconds(2));
+        assertThat(sessionRepository.findValidatorById(session.getId()).orElseThrow().getEtag())
+                .isNotIn(before.getEtag(), after.getEtag());
+
+        // WHEN : Suppression de la session la plus récemment modifiée
+        CacheValidator listAfterTouch = sessionRepository.findListValidator();
+        sessionRepository.deleteById(session.getId());
+        entityManager.flush();
+
+        // THEN : La liste change à chaque fois, même si la date maximale redescend
+        CacheValidator listAfterDelete = sessionRepository.findListValidator();
+        assertThat(listAfterTouch.getEtag()).isNotEqualTo(listBefore.getEtag());
+        assertThat(listAfterDelete.getEtag()).isNotIn(listBefore.getEtag(), listAfterTouch.getEtag());
+        assertThat(sessionRepository.findValidatorById(session.getId())).isEmpty();
+    }
+
+    // Test pour vérifier que seules les sessions modifiées après le repère sont lues
+    @Test
+    void findUpdatedAfterTest() {
+        // GIVEN : Une seule session dont les participants ont changé après le repère
+        LocalDateTime since = LocalDateTime.now().plusMinutes(1);
+        Session session = sessionByName("Session 2");
+        participantChangeRepository.record(session.getId(), since.plusSeconds(1));
+        participantChangeRepository.record(sessionByName("Session 1").getId(), since.minusSeconds(1));
+
+        // WHEN
+        List<SessionDto> updated = sessionRepository.findUpdatedAfter(since);
+
+        // THEN
+        assertThat(updated).extracting(SessionDto::getId).containsExactly(session.getId());
+        assertThat(sessionRepository.count()).isEqualTo(sessions.size());
+    }
+
+    // Test pour vérifier que les sessions modifiées se lisent par pages, dans l'ordre (updatedAt, id), jusqu'à la borne
+    @Test
+    void findUpdatedPageTest() {
+        // GIVEN : Trois sessions modifiées dans la fenêtre, dont deux au même instant, et une après la borne
+        LocalDateTime since = LocalDateTime.of(2030, 1, 1, 0, 0);
+        LocalDateTime until = since.plusHours(1);
+        setUpdatedAt("Session 1", since.plusMinutes(2));
+        setUpdatedAt("Session 2", since.plusMinutes(1));
+        setUpdatedAt("Session 3", since.plusMinutes(1));
+        setUpdatedAt("Session 4", until.plusMinutes(1));
+
+        // WHEN : Parcours par pages de 2 sessions
+        List<SessionDto> visited = new ArrayList<>();
+        List<SessionDto> page = sessionRepository.findUpdatedPage(until, since, Long.MAX_VALUE, PageRequest.of(0, 2));
+        while (!page.isEmpty()) {
+            visited.addAll(page);
+            SessionDto last = page.get(page.size() - 1);
+            page = sessionRepository.findUpdatedPage(until, last.getUpdatedAt(), last.getId(), PageRequest.of(0, 2));
+        }
+
+        // THEN
+        assertThat(visited).extracting(SessionDto::getName).containsExactly("Session 2", "Session 3", "Session 1");
+    }
+
+    // Test pour vérifier que les sessions dont les participants ont changé dans la fenêtre se lisent une fois, par id
+    @Test
+    void findSessionIdsChangedBetweenTest() {
+        // GIVEN : Deux traces pour une même session, une pour une autre, et une hors de la fenêtre
+        LocalDateTime since = LocalDateTime.of(2030, 1, 1, 0, 0);
+        LocalDateTime until = since.plusHours(1);
+        Long first = sessionByName("Session 1").getId();
+        Long second = sessionByName("Session 2").getId();
+        participantChangeRepository.record(first, since.plusMinutes(1));
+        participantChangeRepository.record(first, since.plusMinutes(2));
+        participantChangeRepository.record(second, since.plusMinutes(3));
+        participantChangeRepository.record(sessionByName("Session 3").getId(), until.plusMinutes(1));
+
+        // WHEN / THEN
+        assertThat(participantChangeRepository.findSessionIdsChangedBetween(since, until, Long.MIN_VALUE, PageRequest.of(0, 10)))
+                .containsExactly(Math.min(first, second), Math.max(first, second));
+        assertThat(participantChangeRepository.findSessionIdsChangedBetween(since, until, Math.min(first, second), PageRequest.of(0, 10)))
+                .containsExactly(Math.max(first, second));
+    }
+
+    // Test pour vérifier que l'inscription n'insère la ligne que si la session et l'utilisateur existent
+    @Test
+    void addParticipantTest() {
+        Session session = sessionByName("Session 1");
+        Long userId = users.get(1).getId();
+
+        // WHEN / THEN : Première inscription, puis doublon, session inconnue et utilisateur inconnu
+        assertThat(sessionRepository.addParticipant(session.getId(), userId)).isEqualTo(1);
+        assertThat(sessionRepository.addParticipant(session.getId(), userId)).isZero();
+        assertThat(sessionRepository.addParticipant(-1L, userId)).isZero();
+        assertThat(sessionRepository.addParticipant(session.getId(), -1L)).isZero();
+
+        // THEN : Désinscription, puis désinscription d'un utilisateur non inscrit
+        assertThat(sessionRepository.removeParticipant(session.getId(), userId)).isEqualTo(1);
+        assertThat(sessionRepository.removeParticipant(session.getId(), userId)).isZero();
+    }
+
+    // Test pour vérifier que l'inscription sans lecture préalable laisse la clé primaire rejeter les doublons
+    @Test
+    void insertParticipantTest() {
+        Session session = sessionByName("Session 1");
+        Long userId = users.get(1).getId();
+
+        // WHEN / THEN : Première inscription, session inconnue, utilisateur inconnu, puis doublon
+        assertThat(sessionRepository.insertParticipant(session.getId(), userId)).isEqualTo(1);
+        assertThat(sessionRepository.insertParticipant(-1L, userId)).isZero();
+        assertThat(sessionRepository.insertParticipant(session.getId(), -1L)).isZero();
+        assertThatThrownBy(() -> sessionRepository.insertParticipant(session.getId(), userId))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    // Test pour vérifier l'inscription en lot et la lecture des inscriptions existantes parmi des listes d'identifiants
+    @Test
+    void addParticipantsTest() {
+        // GIVEN : La session 0 n'a pas de participant, la session 2 a les deux premiers utilisateurs
+        Session empty = sessionByName("Session 0");
+        Session two = sessionByName("Session 2");
+        List<Long> userIds = users.stream().map(User::getId).collect(Collectors.toList());
+
+        // WHEN : Tous les utilisateurs sont inscrits à la session 0 en une requête
+        int inserted = sessionRepository.addParticipants(List.of(empty.getId()), userIds);
+
+        // THEN : Une seconde inscription des mêmes utilisateurs, et de ceux de la session 2, n'insère que les absents
+        assertThat(inserted).isEqualTo(3);
+        assertThat(sessionRepository.addParticipants(List.of(empty.getId()), userIds)).isZero();
+        assertThat(sessionRepository.addParticipants(List.of(two.getId()), userIds)).isEqualTo(1);
+        assertThat(sessionRepository.lockParticipations(List.of(empty.getId()), userIds)).hasSize(3);
+        assertThat(sessionRepository.findParticipations(List.of(empty.getId(), two.getId()), userIds.subList(1, 3)))
+                .extracting(row -> ((Number) row[0]).longValue() + ":" + ((Number) row[1]).longValue())
+                .containsExactlyInAnyOrder(
+                        empty.getId() + ":" + userIds.get(1), empty.getId() + ":" + userIds.get(2),
+                        two.getId() + ":" + userIds.get(1), two.getId() + ":" + userIds.get(2));
+        assertThat(sessionRepository.findExistingIds(List.of(empty.getId(), -1L))).containsExactly(empty.getId());
+        assertThat(userRepository.findExistingIds(List.of(-1L, userIds.get(0)))).containsExactly(userIds.get(0));
+    }
+
+    // Test pour vérifier qu'une modification n'écrit que les colonnes changées, sans lire ni réécrire les participants
+    @Test
+    void dynamicUpdateTest() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Long id = sessionByName("Session 3").getId();
+        Session current = sessionRepository.findById(id).orElseThrow();
+
+        // GIVEN : Le nom est changé en base après la lecture de la session
+        jdbcTemplate.update("update SESSIONS set name = 'Renamed' where id = ?", id);
+        statistics.clear();
+
+        // WHEN : Seule la description est modifiée
+        sessionRepository.save(current.setDescription("New description"));
+        entityManager.flush();
+        entityManager.clear();
+
+        // THEN : Le nom n'est pas écrasé et la table de jointure n'est pas touchée
+        assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+        assertThat(statistics.getCollectionUpdateCount() + statistics.getCollectionRecreateCount()).isZero();
+        Session updated = sessionRepository.findById(id).orElseThrow();
+        assertThat(updated.getName()).isEqualTo("Renamed");
+        assertThat(updated.getDescription()).isEqualTo("New description");
+        assertThat(sessionRepository.countParticipants(id)).isEqualTo(3);
+    }
+
+    // Test pour vérifier qu'un doublon inséré sans contrôle est rejeté par la contrainte de PARTICIPATE
+    @Test
+    void duplicateParticipantRejectedTest() {
+        Session session = sessionByName("Session 1");
+
+        assertThatThrownBy(() -> jdbcTemplate.update("insert into PARTICIPATE (session_id, user_id) values (?, ?)",
+                session.getId(), users.get(0).getId()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    // Test de charge : sur une session de 5 000 participants, chaque inscription ou désinscription
+    // est une seule requête qui ne charge ni la session ni ses participants
+    @Test
+    void participationOnLargeSessionTest() {
+        // GIVEN : 5 000 utilisateurs inscrits à la même session
+        Session session = sessionByName("Session 0");
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            rows.add(new Object[] { "load" + i + "@mail.com", "User", "USER", "password" });
+        }
+        jdbcTemplate.batchUpdate("insert into USERS (email, first_name, last_name, password, admin) values (?, ?, ?, ?, false)", rows);
+        jdbcTemplate.update("insert into PARTICIPATE (session_id, user_id) select ?, id from USERS where email like 'load%'",
+                session.getId());
+        Long newUserId = userRepository.save(new User("new@mail.com", "USER", "User", "password", false)).getId();
+        Long participantId = jdbcTemplate.queryForObject("select id from USERS where email = 'load2500@mail.com'", Long.class);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // WHEN
+        long start = System.nanoTime();
+        int inserted = sessionRepository.addParticipant(session.getId(), newUserId);
+        int duplicate = sessionRepository.addParticipant(session.getId(), participantId);
+        int removed = sessionRepository.removeParticipant(session.getId(), participantId);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // THEN : Une requête par appel, aucune entité chargée
+        assertThat(inserted).isEqualTo(1);
+        assertThat(duplicate).isZero();
+        assertThat(removed).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from PARTICIPATE where session_id = ?", Long.class,
+                session.getId())).isEqualTo(5_000);
+        assertThat(elapsedMillis).isLessThan(1_000);
+    }
+
+    private Session sessionByName(String name) {
+        return sessions.stream().filter(session -> session.getName().equals(name)).findFirst().orElseThrow();
+    }
+
+    private void setUpdatedAt(String name, LocalDateTime updatedAt) {
+        entityManager.flush();
+        jdbcTemplate.update("update SESSIONS set updated_at = ? where id = ?", updatedAt, sessionByName(name).getId());
+    }
+
+    // Garde les requêtes SQL envoyées par Hibernate
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.openclassrooms.starterjwt.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.stream.Stream;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.openclassrooms.starterjwt.models.User;
+
+// Base H2 en mémoire à la place de MySQL
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class UserRepositoryTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Test pour vérifier la lecture de tous les emails par lots, avec la taille de lot indiquée au pilote
+    @Test
+    void streamAllEmailsTest() {
+        for (int i = 0; i < 1500; i++) {
+            userRepository.save(new User("user" + i + "@mail.com", "USER", "User", "password", false));
+        }
+        userRepository.flush();
+
+        try (Stream<String> emails = userRepository.streamAllEmails()) {
+            assertThat(emails).hasSize(1500).contains("user1499@mail.com");
+        }
+    }
+
+    // Test pour vérifier qu'un doublon d'email est rejeté par la contrainte nommée, que l'inscription reconnaît
+    @Test
+    void duplicateEmailConstraintNameTest() {
+        userRepository.saveAndFlush(new User("user@mail.com", "USER", "User", "password", false));
+
+        assertThatThrownBy(() -> userRepository.saveAndFlush(new User("user@mail.com", "OTHER", "Other", "password", false)))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .getCause().isInstanceOf(ConstraintViolationException.class)
+                .extracting(cause -> ((ConstraintViolationException) cause).getConstraintName()).asString()
+                .containsIgnoringCase(User.EMAIL_CONSTRAINT);
+    }
+}
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+
+import com.openclassrooms.starterjwt.security.crypto.AdaptiveBCryptPasswordEncoder;
+
+class AdaptiveBCryptPasswordEncoderTest {
+
+    private final AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(5);
+
+    // Test pour vérifier que seul un hash d'un coût inférieur doit être ré-haché
+    @Test
+    void upgradeEncodingTest() {
+        // GIVEN : Des hashes produits avec le coût courant, un coût inférieur et un coût supérieur
+        String current = encoder.encode("password");
+        String weaker = new BCryptPasswordEncoder(4).encode("password");
+        String stronger = new BCryptPasswordEncoder(6).encode("password");
+
+        // THEN : Le hash plus faible est renforcé, le hash plus fort n'est jamais affaibli
+        assertThat(encoder.upgradeEncoding(current)).isFalse();
+        assertThat(encoder.upgradeEncoding(weaker)).isTrue();
+        assertThat(encoder.upgradeEncoding(stronger)).isFalse();
+        assertThat(encoder.matches("password", stronger)).isTrue();
+    }
+
+    // Test pour vérifier la lecture du coût stocké dans un hash
+    @Test
+    void costOfTest() {
+        assertThat(AdaptiveBCryptPasswordEncoder.costOf(encoder.encode("password"))).isEqualTo(5);
+        assertThat(AdaptiveBCryptPasswordEncoder.costOf("plain")).isEqualTo(-1);
+        assertThat(AdaptiveBCryptPasswordEncoder.costOf(null)).isEqualTo(-1);
+    }
+
+    // Test pour vérifier que la calibration ne descend jamais sous le coût minimal
+    @Test
+    void calibrateTest() {
+        // WHEN : Calibration avec une cible atteinte dès le coût minimal
+        int strength = AdaptiveBCryptPasswordEncoder.calibrate(0, 0, 4);
+
+        // THEN
+        assertThat(strength).isEqualTo(4);
+    }
+
+    // Test pour vérifier la migration progressive des anciens hashes sans préfixe
+    @Test
+    void delegatingEncoderMigratesLegacyHashesTest() {
+        // GIVEN : L'encodeur délégant tel que configuré dans WebSecurityConfig
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Collections.singletonMap("bcrypt", encoder));
+        delegating.setDefaultPasswordEncoderForMatches(encoder);
+        String legacy = new BCryptPasswordEncoder(4).encode("password");
+
+        // WHEN : Encodage d'un nouveau mot de passe
+        String encoded = delegating.encode("password");
+
+        // THEN : Les anciens hashes restent valides mais sont marqués pour migration
+        assertThat(delegating.matches("password", legacy)).isTrue();
+        assertThat(delegating.upgradeEncoding(legacy)).isTrue();
+        assertThat(encoded).startsWith("{bcrypt}");
+        assertThat(delegating.upgradeEncoding(encoded)).isFalse();
+    }
+}
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.openclassrooms.starterjwt.security.bulkhead.AuthBulkhead;
+
+class AuthBulkheadTest {
+
+    // Un seul thread et une file d'attente d'une seule requête
+    private final AuthBulkhead authBulkhead = new AuthBulkhead(1, 1, 2);
+
+    @AfterEach
+    void tearDown() {
+        authBulkhead.destroy();
+    }
+
+    // Test pour vérifier qu'une requête est exécutée sur le pool dédié
+    @Test
+    void submitTest() {
+        // WHEN
+        ResponseEntity<?> response = authBulkhead.submit(() -> ResponseEntity.ok(Thread.currentThread().getName())).join();
+
+        // THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat((String) response.getBody()).startsWith("auth-");
+    }
+
+    // Test pour vérifier le rejet immédiat en 503 lorsque le pool et sa file sont saturés
+    @Test
+    void submitWhenSaturatedTest() throws Exception {
+        // GIVEN : Le thread du pool est occupé et la file d'attente est pleine
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> running = authBulkhead.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ResponseEntity.ok().build();
+        });
+        started.await();
+        CompletableFuture<ResponseEntity<?>> queued = authBulkhead.submit(() -> ResponseEntity.ok().build());
+
+        // WHEN : Une requête supplémentaire arrive
+        ResponseEntity<?> rejected = authBulkhead.submit(() -> ResponseEntity.ok().build()).join();
+
+        // THEN : Elle est rejetée sans attendre, avec un en-tête Retry-After
+        assertThat(rejected.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(authBulkhead.getRejectedCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.join().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(queued.join().getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+}
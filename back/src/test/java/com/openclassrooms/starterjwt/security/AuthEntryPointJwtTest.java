@@ -17,6 +17,7 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.util.MimeTypeUtils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.security.audit.SecurityEventLogger;
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 
 // Extension du test pour utiliser Mockito, un framework de mock pour les tests unitaires
@@ -24,7 +25,7 @@ import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 class AuthEntryPointJwtTest {
 
     // Création d'une instance de la classe AuthEntryPointJwt, qui gère les erreurs d'authentification
-    private AuthEntryPointJwt authEntryPointJwt = new AuthEntryPointJwt();
+    private AuthEntryPointJwt authEntryPointJwt = new AuthEntryPointJwt(new SecurityEventLogger(0));
 
     // Test unitaire de la méthode 'commence' de la classe AuthEntryPointJwt
     @Test
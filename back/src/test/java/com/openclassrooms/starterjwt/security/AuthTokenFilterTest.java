@@ -0,0 +1,162 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import javax.servlet.FilterChain;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.audit.SecurityEvent;
+import com.openclassrooms.starterjwt.security.audit.SecurityEventLogger;
+import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+
+import io.jsonwebtoken.Claims;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class AuthTokenFilterTest {
+
+    @Mock
+    private JwtUtils jwtUtils;
+
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private TokenRevocationList revocationList;
+
+    @Mock
+    private SecurityEventLogger securityEventLogger;
+
+    @Mock
+    private FilterChain filterChain;
+
+    @Mock
+    private Claims claims;
+
+    @InjectMocks
+    private AuthTokenFilter authTokenFilter;
+
+    private final UserDetailsImpl userDetails = UserDetailsImpl.builder()
+            .id(1L)
+            .username("user1@mail.com")
+            .firstName("User")
+            .lastName("USER")
+            .admin(false)
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        // Les autres tests peuvent laisser un contexte de sécurité simulé
+        SecurityContextHolder.clearContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletRequest requestWithToken() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer token");
+        return request;
+    }
+
+    // Test pour vérifier qu'en mode claims, aucune requête en base n'est effectuée
+    @Test
+    void doFilterWithClaimsTest() throws Exception {
+        // GIVEN : Un token valide contenant les claims de l'utilisateur
+        ReflectionTestUtils.setField(authTokenFilter, "claimsAuthentication", true);
+        when(jwtUtils.getValidatedClaims("token")).thenReturn(claims);
+        when(jwtUtils.getUserDetailsFromClaims(claims)).thenReturn(userDetails);
+
+        // WHEN : Passage de la requête dans le filtre
+        authTokenFilter.doFilter(requestWithToken(), new MockHttpServletResponse(), filterChain);
+
+        // THEN : L'utilisateur est authentifié sans appel au service de chargement
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
+        verifyNoInteractions(userDetailsService, userCache);
+        verify(filterChain, times(1)).doFilter(any(), any());
+    }
+
+    // Test pour vérifier que le cache est utilisé lorsque le chargement en base est requis
+    @Test
+    void doFilterWithCachedPrincipalTest() throws Exception {
+        // GIVEN : Le mode claims est désactivé et l'utilisateur est déjà en cache
+        ReflectionTestUtils.setField(authTokenFilter, "claimsAuthentication", false);
+        when(jwtUtils.getValidatedClaims("token")).thenReturn(claims);
+        when(claims.getSubject()).thenReturn("user1@mail.com");
+        when(userCache.getUserFromCache("user1@mail.com")).thenReturn(userDetails);
+
+        // WHEN
+        authTokenFilter.doFilter(requestWithToken(), new MockHttpServletResponse(), filterChain);
+
+        // THEN : Aucun accès à la base de données
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
+        verifyNoInteractions(userDetailsService);
+    }
+
+    // Test pour vérifier le chargement en base et la mise en cache quand le cache est vide
+    @Test
+    void doFilterWithCacheMissTest() throws Exception {
+        // GIVEN : Un ancien token sans claims et un cache vide
+        ReflectionTestUtils.setField(authTokenFilter, "claimsAuthentication", true);
+        when(jwtUtils.getValidatedClaims("token")).thenReturn(claims);
+        when(jwtUtils.getUserDetailsFromClaims(claims)).thenReturn(null);
+        when(claims.getSubject()).thenReturn("user1@mail.com");
+        when(userDetailsService.loadUserByUsername("user1@mail.com")).thenReturn(userDetails);
+
+        // WHEN
+        authTokenFilter.doFilter(requestWithToken(), new MockHttpServletResponse(), filterChain);
+
+        // THEN : L'utilisateur est chargé puis placé en cache
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
+        verify(userCache, times(1)).putUserInCache(userDetails);
+    }
+
+    // Test pour vérifier qu'un token révoqué n'authentifie pas l'utilisateur
+    @Test
+    void doFilterWithRevokedTokenTest() throws Exception {
+        // GIVEN : Un token valide émis avant la révocation des jetons de l'utilisateur
+        when(jwtUtils.getValidatedClaims("token")).thenReturn(claims);
+        when(revocationList.isRevoked(claims)).thenReturn(true);
+
+        // WHEN
+        authTokenFilter.doFilter(requestWithToken(), new MockHttpServletResponse(), filterChain);
+
+        // THEN : La requête poursuit sans authentification et l'événement est comptabilisé
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verify(securityEventLogger, times(1)).record(eq(SecurityEvent.REVOKED_TOKEN), any());
+        verifyNoInteractions(userDetailsService, userCache);
+        verify(filterChain, times(1)).doFilter(any(), any());
+    }
+
+    // Test pour vérifier qu'une requête sans token n'est pas authentifiée
+    @Test
+    void doFilterWithoutTokenTest() throws Exception {
+        // WHEN
+        authTokenFilter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), filterChain);
+
+        // THEN
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verifyNoInteractions(jwtUtils);
+        verify(filterChain, times(1)).doFilter(any(), any());
+    }
+}
@@ -0,0 +1,157 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.audit.SecurityEventLogger;
+import com.openclassrooms.starterjwt.security.jwt.JwtKeyProvider;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+class JwtKeyProviderTest {
+
+    private UserDetailsImpl userDetails;
+
+    @BeforeEach
+    void setUp() {
+        userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("user1@mail.com")
+                .firstName("User")
+                .lastName("USER")
+                .admin(false)
+                .build();
+    }
+
+    private JwtUtils jwtUtils(JwtKeyProvider keyProvider) {
+        JwtUtils jwtUtils = new JwtUtils(new VerifiedTokenCache(100), keyProvider, new SecurityEventLogger(0));
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 60000);
+        return jwtUtils;
+    }
+
+    // Test pour vérifier qu'un token RS256 est signé avec le kid de la clé active
+    @Test
+    void rs256SignAndVerifyTest() {
+        // GIVEN
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        JwtUtils jwtUtils = jwtUtils(new JwtKeyProvider(SignatureAlgorithm.RS256, "key-1", keyPair.getPrivate(),
+                Collections.singletonMap("key-1", keyPair.getPublic()), null));
+
+        // WHEN
+        String token = jwtUtils.generateJwtToken(userDetails);
+
+        // THEN
+        assertThat(Jwts.parserBuilder().setSigningKey(keyPair.getPublic()).build()
+                .parseClaimsJws(token).getHeader().getKeyId()).isEqualTo("key-1");
+        assertThat(jwtUtils.getUserDetailsFromJwtToken(token).getId()).isEqualTo(1L);
+    }
+
+    // Test pour vérifier la rotation : les tokens signés par l'ancienne clé restent valides
+    @Test
+    void keyRotationTest() {
+        // GIVEN : Un token signé avec l'ancienne clé ES256
+        KeyPair oldKeys = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        KeyPair newKeys = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        String oldToken = jwtUtils(new JwtKeyProvider(SignatureAlgorithm.ES256, "old", oldKeys.getPrivate(),
+                Collections.singletonMap("old", oldKeys.getPublic()), null)).generateJwtToken(userDetails);
+
+        // WHEN : Le noeud signe avec la nouvelle clé et connaît encore l'ancienne clé publique
+        Map<String, Key> publicKeys = new HashMap<>();
+        publicKeys.put("old", oldKeys.getPublic());
+        publicKeys.put("new", newKeys.getPublic());
+        JwtUtils jwtUtils = jwtUtils(new JwtKeyProvider(SignatureAlgorithm.ES256, "new", newKeys.getPrivate(), publicKeys, null));
+
+        // THEN : Les deux tokens sont acceptés
+        assertThat(jwtUtils.validateJwtToken(oldToken)).isTrue();
+        assertThat(jwtUtils.validateJwtToken(jwtUtils.generateJwtToken(userDetails))).isTrue();
+
+        // THEN : Une fois l'ancienne clé retirée, ses tokens sont rejetés
+        JwtUtils rotated = jwtUtils(new JwtKeyProvider(SignatureAlgorithm.ES256, "new", newKeys.getPrivate(),
+                Collections.singletonMap("new", newKeys.getPublic()), null));
+        assertThat(rotated.validateJwtToken(oldToken)).isFalse();
+    }
+
+    // Test pour vérifier qu'un noeud sans clé privée vérifie les tokens mais ne peut pas en émettre
+    @Test
+    void verifyOnlyNodeTest() {
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        String token = jwtUtils(new JwtKeyProvider(SignatureAlgorithm.RS256, "key-1", keyPair.getPrivate(),
+                Collections.singletonMap("key-1", keyPair.getPublic()), null)).generateJwtToken(userDetails);
+
+        JwtUtils verifier = jwtUtils(new JwtKeyProvider(SignatureAlgorithm.RS256, "key-1", null,
+                Collections.singletonMap("key-1", keyPair.getPublic()), null));
+
+        assertThat(verifier.validateJwtToken(token)).isTrue();
+        assertThatThrownBy(() -> verifier.generateJwtToken(userDetails)).isInstanceOf(IllegalStateException.class);
+    }
+
+    // Test pour vérifier qu'un token HS512 est rejeté par un noeud configuré en RS256
+    @Test
+    void tokenWithoutKeyIdIsRejectedTest() {
+        Key secret = JwtKeyProvider.hmacKey("testSecret");
+        String token = jwtUtils(new JwtKeyProvider(SignatureAlgorithm.HS512, null, secret, Collections.emptyMap(), secret))
+                .generateJwtToken(userDetails);
+
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        JwtUtils verifier = jwtUtils(new JwtKeyProvider(SignatureAlgorithm.RS256, "key-1", keyPair.getPrivate(),
+                Collections.singletonMap("key-1", keyPair.getPublic()), null));
+
+        assertThat(verifier.validateJwtToken(token)).isFalse();
+    }
+
+    // Test pour vérifier le chargement des clés PEM au démarrage
+    @Test
+    void loadPemKeysTest(@TempDir Path dir) throws Exception {
+        // GIVEN : Une paire de clés RS256 écrite au format PEM
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        Path privateKey = writePem(dir.resolve("private.pem"), "PRIVATE KEY", keyPair.getPrivate().getEncoded());
+        Path publicKey = writePem(dir.resolve("public.pem"), "PUBLIC KEY", keyPair.getPublic().getEncoded());
+
+        // WHEN
+        JwtKeyProvider keyProvider = new JwtKeyProvider("RS256", "", "key-1", privateKey.toUri().toString(),
+                "key-1=" + publicKey.toUri(), new DefaultResourceLoader());
+
+        // THEN
+        assertThat(keyProvider.getSigningKey()).isEqualTo(keyPair.getPrivate());
+        JwtUtils jwtUtils = jwtUtils(keyProvider);
+        assertThat(jwtUtils.validateJwtToken(jwtUtils.generateJwtToken(userDetails))).isTrue();
+    }
+
+    // Test pour vérifier qu'une configuration incohérente est refusée au démarrage
+    @Test
+    void signingKeyWithoutPublicKeyTest() {
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+
+        assertThatThrownBy(() -> new JwtKeyProvider(SignatureAlgorithm.RS256, "key-2", keyPair.getPrivate(),
+                Collections.singletonMap("key-1", keyPair.getPublic()), null))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static Path writePem(Path path, String type, byte[] der) throws Exception {
+        String pem = "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder().encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+        return Files.write(path, pem.getBytes(StandardCharsets.US_ASCII));
+    }
+}
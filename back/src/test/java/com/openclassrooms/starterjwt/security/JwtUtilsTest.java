@@ -0,0 +1,165 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.security.Key;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.audit.SecurityEventLogger;
+import com.openclassrooms.starterjwt.security.jwt.JwtKeyProvider;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+class JwtUtilsTest {
+
+    private JwtUtils jwtUtils;
+
+    private VerifiedTokenCache tokenCache;
+
+    private UserDetailsImpl userDetails;
+
+    @BeforeEach
+    void setUp() {
+        // Configuration de JwtUtils avec un secret et une durée de validité de test
+        tokenCache = new VerifiedTokenCache(100);
+        Key key = JwtKeyProvider.hmacKey("testSecret");
+        jwtUtils = new JwtUtils(tokenCache,
+                new JwtKeyProvider(SignatureAlgorithm.HS512, null, key, Collections.emptyMap(), key),
+                new SecurityEventLogger(0));
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 60000);
+
+        userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("user1@mail.com")
+                .firstName("User")
+                .lastName("USER")
+                .admin(true)
+                .password("password")
+                .build();
+    }
+
+    // Test pour vérifier que le principal est reconstruit à partir des claims du token
+    @Test
+    void getUserDetailsFromJwtTokenTest() {
+        // GIVEN : Un token généré pour un utilisateur authentifié
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+
+        // WHEN : Lecture du principal depuis le token
+        UserDetailsImpl result = jwtUtils.getUserDetailsFromJwtToken(token);
+
+        // THEN : Les informations de l'utilisateur sont présentes, sans le mot de passe
+        assertThat(jwtUtils.validateJwtToken(token)).isTrue();
+        assertThat(result.getId()).isEqualTo(1L);
+        assertThat(result.getUsername()).isEqualTo("user1@mail.com");
+        assertThat(result.getFirstName()).isEqualTo("User");
+        assertThat(result.getLastName()).isEqualTo("USER");
+        assertThat(result.getAdmin()).isTrue();
+        assertThat(result.getPassword()).isNull();
+    }
+
+    // Test pour vérifier qu'un ancien token sans claims ne permet pas de reconstruire le principal
+    @Test
+    void getUserDetailsFromLegacyJwtTokenTest() {
+        // GIVEN : Un token ne contenant que le sujet
+        String token = Jwts.builder()
+                .setSubject("user1@mail.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(JwtKeyProvider.hmacKey("testSecret"), SignatureAlgorithm.HS512)
+                .compact();
+
+        // WHEN / THEN : Aucun principal n'est reconstruit, mais le sujet reste lisible
+        assertThat(jwtUtils.getUserDetailsFromJwtToken(token)).isNull();
+        assertThat(jwtUtils.getUserNameFromJwtToken(token)).isEqualTo("user1@mail.com");
+    }
+
+    // Test pour vérifier qu'un token invalide est rejeté
+    @Test
+    void validateJwtTokenInvalidTest() {
+        assertThat(jwtUtils.validateJwtToken("invalid.token.value")).isFalse();
+        assertThat(jwtUtils.validateJwtToken("")).isFalse();
+    }
+
+    // Test pour vérifier que la signature d'un token n'est vérifiée qu'une seule fois
+    @Test
+    void validatedClaimsAreCachedTest() {
+        // GIVEN : Un token valide
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+
+        // WHEN : Plusieurs lectures du même token
+        assertThat(jwtUtils.validateJwtToken(token)).isTrue();
+        assertThat(jwtUtils.getUserNameFromJwtToken(token)).isEqualTo("user1@mail.com");
+        assertThat(jwtUtils.getUserDetailsFromJwtToken(token).getId()).isEqualTo(1L);
+
+        // THEN : Une seule vérification, les lectures suivantes viennent du cache
+        assertThat(tokenCache.getMissCount()).isEqualTo(1);
+        assertThat(tokenCache.getHitCount()).isEqualTo(2);
+    }
+
+    // Test pour vérifier qu'un token invalide n'est jamais mis en cache
+    @Test
+    void invalidTokenIsNotCachedTest() {
+        // GIVEN : Un token signé avec un autre secret
+        String token = Jwts.builder()
+                .setSubject("user1@mail.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(JwtKeyProvider.hmacKey("otherSecret"), SignatureAlgorithm.HS512)
+                .compact();
+
+        // WHEN / THEN
+        assertThat(jwtUtils.validateJwtToken(token)).isFalse();
+        assertThat(jwtUtils.validateJwtToken(token)).isFalse();
+        assertThat(tokenCache.size()).isZero();
+    }
+
+    // Test pour vérifier qu'une vérification en cours ne bloque pas les autres lectures du cache
+    @Test
+    void verificationOutsideOfCacheLockTest() throws Exception {
+        // GIVEN : La vérification d'un token reste bloquée dans un autre thread
+        Claims claims = Jwts.claims().setSubject("user1@mail.com");
+        CountDownLatch verifying = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Claims> blocked = executor.submit(() -> tokenCache.get("token", token -> {
+                verifying.countDown();
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return claims;
+            }));
+            assertThat(verifying.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // WHEN / THEN : Le même token est vérifié sans attendre la première vérification
+            assertThat(assertTimeoutPreemptively(Duration.ofSeconds(5), () -> tokenCache.get("token", token -> claims)))
+                    .isSameAs(claims);
+
+            unblock.countDown();
+            assertThat(blocked.get(5, TimeUnit.SECONDS)).isSameAs(claims);
+            assertThat(tokenCache.size()).isEqualTo(1);
+        } finally {
+            unblock.countDown();
+            executor.shutdown();
+        }
+    }
+}
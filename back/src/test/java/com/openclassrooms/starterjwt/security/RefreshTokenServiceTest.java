@@ -0,0 +1,136 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.models.RefreshToken.RevocationReason;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+import com.openclassrooms.starterjwt.security.services.RefreshTokenService;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private TokenRevocationList revocationList;
+
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, revocationList, 604800000, 900000);
+    }
+
+    // Test pour vérifier que seule l'empreinte du jeton est enregistrée
+    @Test
+    void createTest() {
+        // WHEN
+        String token = refreshTokenService.create(1L);
+
+        // THEN
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertThat(token).hasSize(43);
+        assertThat(saved.getValue().getTokenHash()).hasSize(64).isNotEqualTo(token);
+        assertThat(saved.getValue().getUserId()).isEqualTo(1L);
+        assertThat(saved.getValue().getExpiresAt()).isAfter(LocalDateTime.now().plusDays(6));
+    }
+
+    // Test pour vérifier qu'un jeton valide est consommé une seule fois
+    @Test
+    void consumeTest() {
+        // GIVEN
+        RefreshToken stored = RefreshToken.builder()
+                .userId(1L)
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .build();
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.revokeByTokenHash(anyString(), any(), eq(RevocationReason.ROTATED))).thenReturn(1);
+
+        // WHEN
+        Long userId = refreshTokenService.consume("token");
+
+        // THEN
+        assertThat(userId).isEqualTo(1L);
+    }
+
+    // Test pour vérifier que deux rafraîchissements concurrents ne réussissent pas tous les deux
+    @Test
+    void consumeConcurrentlyUsedTest() {
+        RefreshToken stored = RefreshToken.builder()
+                .userId(1L)
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .build();
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.revokeByTokenHash(anyString(), any(), eq(RevocationReason.ROTATED))).thenReturn(0);
+
+        assertThat(refreshTokenService.consume("token")).isNull();
+    }
+
+    // Test pour vérifier qu'un jeton expiré est refusé
+    @Test
+    void consumeExpiredTest() {
+        RefreshToken stored = RefreshToken.builder()
+                .userId(1L)
+                .expiresAt(LocalDateTime.now().minusSeconds(1))
+                .build();
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(stored));
+
+        assertThat(refreshTokenService.consume("token")).isNull();
+        verify(refreshTokenRepository, never()).revokeByTokenHash(anyString(), any(), any());
+    }
+
+    // Test pour vérifier que la réutilisation d'un jeton déjà échangé révoque tous les jetons de l'utilisateur
+    @Test
+    void consumeReusedTokenTest() {
+        // GIVEN : Un jeton déjà échangé contre un nouveau
+        RefreshToken stored = RefreshToken.builder()
+                .userId(1L)
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .revokedAt(LocalDateTime.now().minusMinutes(1))
+                .revocationReason(RevocationReason.ROTATED)
+                .build();
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.revokeAllByUserId(eq(1L), any(), eq(RevocationReason.USER_REVOKED))).thenReturn(1);
+
+        // WHEN
+        Long userId = refreshTokenService.consume("token");
+
+        // THEN
+        assertThat(userId).isNull();
+        verify(revocationList).revokeUser(eq(1L), any());
+    }
+
+    // Test pour vérifier qu'une révocation sans jeton actif est tout de même enregistrée pour les autres noeuds
+    @Test
+    void revokeAllWithoutLiveTokenTest() {
+        // GIVEN
+        when(refreshTokenRepository.revokeAllByUserId(eq(1L), any(), eq(RevocationReason.USER_REVOKED))).thenReturn(0);
+
+        // WHEN
+        refreshTokenService.revokeAll(1L);
+
+        // THEN
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertThat(saved.getValue().getRevocationReason()).isEqualTo(RevocationReason.USER_REVOKED);
+        assertThat(saved.getValue().getRevokedAt()).isNotNull();
+        verify(revocationList).revokeUser(eq(1L), any());
+    }
+}
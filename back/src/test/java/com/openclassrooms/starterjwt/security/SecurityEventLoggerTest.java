@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.audit.SecurityEvent;
+import com.openclassrooms.starterjwt.security.audit.SecurityEventLogger;
+import com.openclassrooms.starterjwt.security.jwt.JwtKeyProvider;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+class SecurityEventLoggerTest {
+
+    private final SecurityEventLogger securityEventLogger = new SecurityEventLogger(2);
+
+    // Test pour vérifier que chaque rejet est comptabilisé par motif
+    @Test
+    void recordCountsPerReasonTest() {
+        // GIVEN : Un token expiré et un token malformé
+        JwtUtils jwtUtils = new JwtUtils(new VerifiedTokenCache(100),
+                new JwtKeyProvider(SignatureAlgorithm.HS512, null, JwtKeyProvider.hmacKey("testSecret"),
+                        Collections.emptyMap(), JwtKeyProvider.hmacKey("testSecret")),
+                securityEventLogger);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 60000);
+        String expired = Jwts.builder()
+                .setSubject("user1@mail.com")
+                .setExpiration(new Date(System.currentTimeMillis() - 60000))
+                .signWith(JwtKeyProvider.hmacKey("testSecret"), SignatureAlgorithm.HS512)
+                .compact();
+
+        // WHEN
+        for (int i = 0; i < 10; i++) {
+            jwtUtils.validateJwtToken(expired);
+        }
+        jwtUtils.validateJwtToken("invalid.token.value");
+
+        // THEN
+        assertThat(securityEventLogger.getCount(SecurityEvent.EXPIRED_TOKEN)).isEqualTo(10);
+        assertThat(securityEventLogger.getCount(SecurityEvent.MALFORMED_TOKEN)).isEqualTo(1);
+        assertThat(securityEventLogger.getCount(SecurityEvent.INVALID_SIGNATURE)).isZero();
+    }
+
+    // Test pour vérifier que le rapport périodique conserve les totaux
+    @Test
+    void flushKeepsTotalsTest() {
+        for (int i = 0; i < 5; i++) {
+            securityEventLogger.record(SecurityEvent.UNAUTHORIZED, "Full authentication is required");
+        }
+
+        securityEventLogger.flush();
+        securityEventLogger.record(SecurityEvent.UNAUTHORIZED, "Full authentication is required");
+
+        assertThat(securityEventLogger.getCount(SecurityEvent.UNAUTHORIZED)).isEqualTo(6);
+    }
+}
@@ -0,0 +1,93 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+// Application complète sur une base H2 en mémoire, avec la chaîne de filtres de sécurité
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:events;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureMockMvc
+class SessionEventsStreamTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final UserDetailsImpl userDetails = UserDetailsImpl.builder()
+            .id(1L)
+            .username("user1@mail.com")
+            .firstName("User")
+            .lastName("USER")
+            .admin(false)
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        // Les autres tests peuvent laisser un contexte de sécurité simulé
+        SecurityContextHolder.clearContext();
+    }
+
+    // Test pour vérifier qu'un EventSource, qui ne peut pas envoyer l'en-tête Authorization, s'abonne avec le jeton du flux
+    @Test
+    void subscribeWithEventsTokenTest() throws Exception {
+        // GIVEN : Le client connecté demande un jeton pour le flux
+        String response = mockMvc.perform(post("/api/session/events/token")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtUtils.generateJwtToken(userDetails)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String eventsToken = objectMapper.readTree(response).get("token").asText();
+
+        // WHEN / THEN : Le flux s'ouvre avec le jeton dans l'URL, sans en-tête
+        mockMvc.perform(get("/api/session/events").param("token", eventsToken)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andExpect(status().isOk());
+    }
+
+    // Test pour vérifier que chaque jeton reste limité à son usage
+    @Test
+    void tokenScopeTest() throws Exception {
+        String accessToken = jwtUtils.generateJwtToken(userDetails);
+        String eventsToken = jwtUtils.generateEventsToken(userDetails);
+
+        // WHEN / THEN : Sans jeton, ou avec le jeton d'accès dans l'URL, le flux est refusé
+        mockMvc.perform(get("/api/session/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/session/events").param("token", accessToken)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isUnauthorized());
+
+        // WHEN / THEN : Le jeton du flux n'ouvre aucun autre point d'accès, ni dans l'URL ni en en-tête
+        mockMvc.perform(get("/api/session/1").param("token", eventsToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/session/1").header(HttpHeaders.AUTHORIZATION, "Bearer " + eventsToken))
+                .andExpect(status().isUnauthorized());
+    }
+}
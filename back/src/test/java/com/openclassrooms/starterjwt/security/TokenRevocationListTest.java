@@ -0,0 +1,112 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+
+import com.openclassrooms.starterjwt.models.RefreshToken.RevocationReason;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class TokenRevocationListTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    // Comme dans un jeton signé, la date d'émission est en secondes entières
+    private Claims claims(long userId, LocalDateTime issuedAt) {
+        Claims claims = Jwts.claims();
+        claims.put("id", userId);
+        claims.setIssuedAt(Date.from(issuedAt.truncatedTo(ChronoUnit.SECONDS).atZone(ZoneId.systemDefault()).toInstant()));
+        return claims;
+    }
+
+    // Test pour vérifier que seuls les tokens émis avant la révocation sont rejetés
+    @Test
+    void isRevokedTest() {
+        // GIVEN : Les jetons de l'utilisateur 1 sont révoqués maintenant
+        TokenRevocationList revocationList = new TokenRevocationList(refreshTokenRepository, 900000);
+        LocalDateTime now = LocalDateTime.now();
+        revocationList.revokeUser(1L, now);
+
+        // THEN
+        assertThat(revocationList.isRevoked(claims(1L, now.minusMinutes(1)))).isTrue();
+        assertThat(revocationList.isRevoked(claims(1L, now.plusSeconds(1)))).isFalse();
+        assertThat(revocationList.isRevoked(claims(2L, now.minusMinutes(1)))).isFalse();
+    }
+
+    // Test pour vérifier qu'un jeton émis dans la seconde qui suit une révocation est accepté
+    @Test
+    void sameSecondAsRevocationTest() {
+        // GIVEN : Une révocation au milieu d'une seconde
+        TokenRevocationList revocationList = new TokenRevocationList(refreshTokenRepository, 900000);
+        LocalDateTime second = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        revocationList.revokeUser(1L, second.plusNanos(500_000_000));
+
+        // THEN : Le jeton de la même seconde, émis juste après, reste valide, pas celui de la seconde précédente
+        assertThat(revocationList.isRevoked(claims(1L, second.plusNanos(700_000_000)))).isFalse();
+        assertThat(revocationList.isRevoked(claims(1L, second.minusNanos(1)))).isTrue();
+    }
+
+    // Test pour vérifier la reconstruction depuis les jetons révoqués en base au démarrage
+    @Test
+    void loadTest() {
+        // GIVEN : Une révocation enregistrée par un autre noeud il y a 5 minutes
+        LocalDateTime revokedAt = LocalDateTime.now().minusMinutes(5);
+        when(refreshTokenRepository.findLatestRevocationsSince(any(), any()))
+                .thenReturn(Collections.singletonList(new Object[] { 1L, revokedAt }));
+        TokenRevocationList revocationList = new TokenRevocationList(refreshTokenRepository, 900000);
+
+        // WHEN
+        revocationList.load();
+
+        // THEN
+        assertThat(revocationList.size()).isEqualTo(1);
+        assertThat(revocationList.isRevoked(claims(1L, revokedAt.minusMinutes(1)))).isTrue();
+    }
+
+    // Test pour vérifier que les révocations plus anciennes que la durée de vie d'un token sont oubliées
+    @Test
+    void synchronizePrunesExpiredEntriesTest() {
+        // GIVEN
+        when(refreshTokenRepository.findLatestRevocationsSince(any(), any())).thenReturn(Collections.emptyList());
+        TokenRevocationList revocationList = new TokenRevocationList(refreshTokenRepository, 900000);
+        revocationList.load();
+        revocationList.revokeUser(1L, LocalDateTime.now().minusMinutes(20));
+        revocationList.revokeUser(2L, LocalDateTime.now());
+
+        // WHEN
+        revocationList.synchronize();
+
+        // THEN
+        assertThat(revocationList.size()).isEqualTo(1);
+        assertThat(revocationList.isRevoked(claims(2L, LocalDateTime.now().minusMinutes(1)))).isTrue();
+    }
+
+    // Vérifie que la requête de synchronisation ne lit que les révocations globales
+    @Test
+    void synchronizeReasonTest() {
+        when(refreshTokenRepository.findLatestRevocationsSince(any(), eq(RevocationReason.USER_REVOKED)))
+                .thenReturn(Collections.emptyList());
+        TokenRevocationList revocationList = new TokenRevocationList(refreshTokenRepository, 900000);
+
+        revocationList.load();
+
+        assertThat(revocationList.size()).isZero();
+    }
+}
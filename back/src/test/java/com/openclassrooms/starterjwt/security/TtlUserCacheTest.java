@@ -0,0 +1,97 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.openclassrooms.starterjwt.security.services.TtlUserCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+class TtlUserCacheTest {
+
+    private final TtlUserCache userCache = new TtlUserCache(30_000, 100);
+
+    // Test pour vérifier que l'utilisateur est mis en cache sans son mot de passe
+    @Test
+    void cachedUserHasNoPasswordTest() {
+        // GIVEN : Un utilisateur chargé avec le hash de son mot de passe
+        UserDetailsImpl user = UserDetailsImpl.builder()
+                .id(1L)
+                .username("user1@mail.com")
+                .admin(false)
+                .password("$2a$10$hash")
+                .build();
+
+        // WHEN
+        userCache.putUserInCache(user);
+
+        // THEN : Le principal reste disponible, sans le mot de passe
+        UserDetails cached = userCache.getUserFromCache("user1@mail.com");
+        assertThat(cached).isNotNull();
+        assertThat(((UserDetailsImpl) cached).getId()).isEqualTo(1L);
+        assertThat(cached.getPassword()).isNull();
+    }
+
+    // Test pour vérifier qu'un utilisateur dont le mot de passe ne peut pas être effacé n'est pas mis en cache
+    @Test
+    void userWithoutErasableCredentialsNotCachedTest() {
+        // GIVEN : Un utilisateur qui n'efface pas son mot de passe
+        UserDetails user = new UserDetailsWithoutErasure(new User("user2@mail.com", "secret", Collections.emptyList()));
+
+        // WHEN
+        userCache.putUserInCache(user);
+
+        // THEN
+        assertThat(userCache.getUserFromCache("user2@mail.com")).isNull();
+    }
+
+    // Délègue à un utilisateur sans exposer CredentialsContainer
+    private static class UserDetailsWithoutErasure implements UserDetails {
+        private final User user;
+
+        UserDetailsWithoutErasure(User user) {
+            this.user = user;
+        }
+
+        @Override
+        public Collection<? extends GrantedAuthority> getAuthorities() {
+            return user.getAuthorities();
+        }
+
+        @Override
+        public String getPassword() {
+            return user.getPassword();
+        }
+
+        @Override
+        public String getUsername() {
+            return user.getUsername();
+        }
+
+        @Override
+        public boolean isAccountNonExpired() {
+            return true;
+        }
+
+        @Override
+        public boolean isAccountNonLocked() {
+            return true;
+        }
+
+        @Override
+        public boolean isCredentialsNonExpired() {
+            return true;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+    }
+}
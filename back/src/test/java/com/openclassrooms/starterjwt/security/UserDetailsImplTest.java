@@ -46,6 +46,20 @@ class UserDetailsImplTest {
         assertThat(authorities).isNotNull().isEmpty();
     }
 
+    // Test pour vérifier qu'un administrateur dispose du rôle ROLE_ADMIN
+    @Test
+    void testGetAuthorities_Admin() {
+        // GIVEN : Un utilisateur administrateur
+        UserDetailsImpl admin = UserDetailsImpl.builder().id(2L).admin(true).build();
+
+        // WHEN : Appels successifs de getAuthorities
+        Collection<? extends GrantedAuthority> authorities = admin.getAuthorities();
+
+        // THEN : Le rôle administrateur est présent et la collection est partagée entre les appels
+        assertThat(authorities).extracting(GrantedAuthority::getAuthority).containsExactly(UserDetailsImpl.ROLE_ADMIN);
+        assertThat(admin.getAuthorities()).isSameAs(authorities);
+    }
+
     // Test pour vérifier que le compte n'est pas expiré
     @Test
     void testIsAccountNonExpired() {
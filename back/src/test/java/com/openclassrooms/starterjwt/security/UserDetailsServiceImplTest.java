@@ -49,6 +49,7 @@ class UserDetailsServiceImplTest {
         assertThat(userDetails.getFirstName()).isEqualTo(user.getFirstName());
         assertThat(userDetails.getLastName()).isEqualTo(user.getLastName());
         assertThat(userDetails.getPassword()).isEqualTo(user.getPassword());
+        assertThat(userDetails.getAdmin()).isFalse();
 
     }
 
@@ -64,4 +65,27 @@ class UserDetailsServiceImplTest {
         .hasMessage("User Not Found with email: user1@mail.com");
     }
 
+    // Test pour vérifier l'enregistrement du mot de passe ré-haché après une connexion réussie
+    @Test
+    void updatePasswordTest() {
+        // GIVEN : Un utilisateur authentifié dont le hash doit être mis à jour
+        UserDetailsImpl user = UserDetailsImpl.builder()
+                .id(1L)
+                .username("user1@mail.com")
+                .firstName("User")
+                .lastName("USER")
+                .admin(true)
+                .password("oldHash")
+                .build();
+
+        // WHEN : Mise à jour du mot de passe
+        UserDetailsImpl result = (UserDetailsImpl) userDetailsServiceImpl.updatePassword(user, "newHash");
+
+        // THEN : Le nouveau hash est persisté en une seule requête et renvoyé dans le principal
+        verify(userRepository, times(1)).updatePasswordByEmail("user1@mail.com", "newHash");
+        assertThat(result.getPassword()).isEqualTo("newHash");
+        assertThat(result.getId()).isEqualTo(1L);
+        assertThat(result.getAdmin()).isTrue();
+    }
+
 }
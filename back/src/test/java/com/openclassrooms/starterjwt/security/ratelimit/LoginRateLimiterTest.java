@@ -0,0 +1,201 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class LoginRateLimiterTest {
+
+    // Horloge contrôlée par le test, en nanosecondes
+    private final AtomicLong now = new AtomicLong(0);
+
+    // 3 tentatives par IP puis 1 par seconde ; 2 tentatives par email puis 1 toutes les 10 secondes
+    private final LoginRateLimiter limiter = new LoginRateLimiter(3, 1000, 2, 10000, now::get);
+
+    // Test pour vérifier la limite par email et le délai renvoyé
+    @Test
+    void tryAcquireEmailLimitTest() {
+        assertThat(limiter.tryAcquire("user@test.com", "10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("USER@test.com", "10.0.0.2")).isZero();
+
+        // THEN : La troisième tentative sur le même compte est refusée pendant 10 secondes
+        assertThat(limiter.tryAcquire("user@test.com", "10.0.0.3")).isEqualTo(10000);
+
+        // WHEN : Après 10 secondes, un jeton est de nouveau disponible
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThat(limiter.tryAcquire("user@test.com", "10.0.0.3")).isZero();
+    }
+
+    // Test pour vérifier la limite par IP, quels que soient les comptes visés
+    @Test
+    void tryAcquireIpLimitTest() {
+        assertThat(limiter.tryAcquire("a@test.com", "10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("b@test.com", "10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("c@test.com", "10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("d@test.com", "10.0.0.1")).isEqualTo(1000);
+        assertThat(limiter.tryAcquire(null, "10.0.0.2")).isZero();
+    }
+
+    // Test pour vérifier la suppression des compteurs inactifs
+    @Test
+    void evictIdleBucketsTest() {
+        // GIVEN : Deux compteurs entamés
+        limiter.tryAcquire("user@test.com", "10.0.0.1");
+        assertThat(limiter.size()).isEqualTo(2);
+
+        // WHEN : Le compteur IP est de nouveau plein, pas encore le compteur email
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limiter.evictIdleBuckets();
+
+        // THEN
+        assertThat(limiter.size()).isEqualTo(1);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        limiter.evictIdleBuckets();
+        assertThat(limiter.size()).isZero();
+    }
+
+    // Test pour vérifier qu'un jeton pris pendant l'éviction n'est pas perdu avec le compteur
+    @Test
+    void evictionRaceTest() {
+        // GIVEN : Un compteur vu inactif, puis entamé avant d'être retiré
+        TokenBucket taken = new TokenBucket(1, 1000, 0);
+        assertThat(taken.isIdle(0)).isTrue();
+        assertThat(taken.tryTake(0)).isZero();
+
+        // THEN : Il n'est plus retiré, et un compteur retiré refuse les prises suivantes
+        assertThat(taken.retire(0)).isFalse();
+        TokenBucket idle = new TokenBucket(1, 1000, 0);
+        assertThat(idle.retire(0)).isTrue();
+        assertThat(idle.tryTake(0)).isEqualTo(TokenBucket.RETIRED);
+    }
+
+    // Test de charge : des évictions en parallèle des tentatives ne rendent aucun jeton en trop
+    @Test
+    void evictionUnderContentionTest() throws Exception {
+        // GIVEN : 1 tentative toutes les 10 secondes pour un même compte, horloge figée
+        LoginRateLimiter strict = new LoginRateLimiter(1000, 1, 1, 10000, now::get);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1000; i++) {
+                    if (strict.tryAcquire("user@test.com", null) == 0) {
+                        granted.incrementAndGet();
+                    }
+                    strict.evictIdleBuckets();
+                }
+                return null;
+            }));
+        }
+
+        // WHEN
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // THEN : Le compteur entamé n'est jamais évincé, une seule tentative passe
+        assertThat(granted.get()).isEqualTo(1);
+    }
+
+    // Test de charge : les jetons accordés restent exacts avec de nombreux threads concurrents
+    @Test
+    void tryAcquireUnderContentionTest() throws Exception {
+        // GIVEN : Un limiteur sans recharge pendant le test, 50 jetons par IP et 10 par email
+        LoginRateLimiter concurrentLimiter = new LoginRateLimiter(50, 3_600_000, 10, 3_600_000, now::get);
+        int threads = 32;
+        int attemptsPerThread = 1000;
+        int emails = 20;
+        int ips = 8;
+        AtomicInteger granted = new AtomicInteger();
+        AtomicInteger[] grantedPerEmail = new AtomicInteger[emails];
+        AtomicInteger[] grantedPerIp = new AtomicInteger[ips];
+        for (int i = 0; i < emails; i++) {
+            grantedPerEmail[i] = new AtomicInteger();
+        }
+        for (int i = 0; i < ips; i++) {
+            grantedPerIp[i] = new AtomicInteger();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    int email = (seed + i) % emails;
+                    int ip = (seed * 7 + i) % ips;
+                    if (concurrentLimiter.tryAcquire("user" + email + "@test.com", "10.0.0." + ip) == 0) {
+                        granted.incrementAndGet();
+                        grantedPerEmail[email].incrementAndGet();
+                        grantedPerIp[ip].incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        // WHEN : Tous les threads démarrent en même temps
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // THEN : Aucun compteur ne dépasse sa capacité
+        for (AtomicInteger count : grantedPerEmail) {
+            assertThat(count.get()).isLessThanOrEqualTo(10);
+        }
+        for (AtomicInteger count : grantedPerIp) {
+            assertThat(count.get()).isLessThanOrEqualTo(50);
+        }
+        assertThat(granted.get()).isLessThanOrEqualTo(Math.min(emails * 10, ips * 50));
+        assertThat(granted.get()).isPositive();
+    }
+
+    // Test de charge : un compteur unique très sollicité accorde exactement sa capacité
+    @Test
+    void singleBucketUnderContentionTest() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, TimeUnit.HOURS.toNanos(1), 0);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 10000; i++) {
+                    if (bucket.tryTake(0) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(granted.get()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,68 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class KnownEmailFilterTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    // Test pour vérifier qu'avant le chargement, chaque email est considéré comme possiblement connu
+    @Test
+    void mightContainBeforeLoadTest() {
+        KnownEmailFilter filter = new KnownEmailFilter(userRepository, 1000, 0.01);
+
+        assertThat(filter.mightContain("new@test.com")).isTrue();
+    }
+
+    // Test pour vérifier le chargement des emails existants au démarrage
+    @Test
+    void loadTest() {
+        // GIVEN : Deux utilisateurs en base
+        when(userRepository.streamAllEmails()).thenReturn(Stream.of("yoga@studio.com", "user1@mail.com"));
+        KnownEmailFilter filter = new KnownEmailFilter(userRepository, 1000, 0.01);
+
+        // WHEN
+        filter.load();
+
+        // THEN : Les emails connus sont reconnus, sans tenir compte de la casse
+        assertThat(filter.mightContain("yoga@studio.com")).isTrue();
+        assertThat(filter.mightContain("USER1@mail.com")).isTrue();
+        assertThat(filter.mightContain("new@test.com")).isFalse();
+    }
+
+    // Test pour vérifier l'absence de faux négatifs et un taux de faux positifs proche de la cible
+    @Test
+    void falsePositiveRateTest() {
+        // GIVEN : Un filtre rempli à sa capacité prévue
+        KnownEmailFilter filter = new KnownEmailFilter(userRepository, 10000, 0.01);
+        filter.markLoaded();
+        for (int i = 0; i < 10000; i++) {
+            filter.put("user" + i + "@mail.com");
+        }
+
+        // THEN : Tous les emails insérés sont reconnus
+        for (int i = 0; i < 10000; i++) {
+            assertThat(filter.mightContain("user" + i + "@mail.com")).isTrue();
+        }
+
+        // THEN : Moins de 2 % de faux positifs sur des emails jamais insérés
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("new" + i + "@test.com")) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(200);
+    }
+}
@@ -0,0 +1,236 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+// Les appels concurrents s'exécutent chacun dans leur propre transaction, sur une base H2 en mémoire
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.datasource.url=jdbc:h2:mem:stress;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=32"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ SessionService.class, SessionSeatService.class, SessionEventBroadcaster.class, SessionSearchIndex.class })
+class SessionConcurrencyStressTest {
+    private static final Logger logger = LoggerFactory.getLogger(SessionConcurrencyStressTest.class);
+
+    private static final int PARTICIPANTS = 300;
+    private static final int UPDATES = 20;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from PARTICIPATE");
+        jdbcTemplate.update("delete from WAITLIST");
+        jdbcTemplate.update("delete from SESSION_SEATS");
+        jdbcTemplate.update("delete from SESSIONS");
+        jdbcTemplate.update("delete from USERS");
+    }
+
+    // Test de charge : des centaines d'inscriptions simultanées à une session de 50 places, puis des
+    // désinscriptions simultanées qui libèrent des places pour la liste d'attente
+    @Test
+    void concurrentBookingsWithCapacityTest() throws Exception {
+        // GIVEN : Une session de 50 places et 300 utilisateurs
+        Long sessionId = sessionService.create(Session.builder()
+                .name("Session").date(new Date()).description("description").capacity(50).build()).getId();
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            userIds.add(userRepository.save(new User("user" + i + "@mail.com", "USER", "User", "password", false)).getId());
+        }
+
+        // WHEN : Toutes les réservations partent en même temps
+        List<Callable<Boolean>> bookings = new ArrayList<>();
+        for (Long userId : userIds) {
+            bookings.add(() -> sessionService.participate(sessionId, userId));
+        }
+        List<Boolean> booked = runConcurrently(bookings, "bookings");
+
+        // THEN : 50 places attribuées, aucune de plus, et 250 utilisateurs en attente
+        assertThat(booked.stream().filter(Boolean::booleanValue).count()).isEqualTo(50);
+        assertThat(participants(sessionId)).hasSize(50);
+        assertThat(count("select count(*) from WAITLIST where session_id = ?", sessionId)).isEqualTo(250);
+        assertThat(count("select taken from SESSION_SEATS where session_id = ?", sessionId)).isEqualTo(50);
+
+        // WHEN : 20 participants se désinscrivent en même temps
+        List<Long> leaving = participants(sessionId).subList(0, 20);
+        List<Long> firstWaiting = jdbcTemplate.queryForList(
+                "select user_id from WAITLIST where session_id = ? order by id limit 20", Long.class, sessionId);
+        List<Callable<Boolean>> cancellations = new ArrayList<>();
+        for (Long userId : leaving) {
+            cancellations.add(() -> {
+                sessionService.noLongerParticipate(sessionId, userId);
+                return true;
+            });
+        }
+        runConcurrently(cancellations, "cancellations");
+
+        // THEN : Les 20 premiers de la liste d'attente ont pris les places libérées
+        assertThat(participants(sessionId)).hasSize(50).containsAll(firstWaiting).doesNotContainAnyElementsOf(leaving);
+        assertThat(count("select count(*) from WAITLIST where session_id = ?", sessionId)).isEqualTo(230);
+        assertThat(count("select taken from SESSION_SEATS where session_id = ?", sessionId)).isEqualTo(50);
+    }
+
+    // Test pour vérifier que le compteur de places suit la liste des participants d'une modification
+    @Test
+    void updateParticipantsRecountsSeatsTest() {
+        // GIVEN : Une session de 3 places complète, avec un utilisateur en attente
+        Long sessionId = sessionService.create(Session.builder()
+                .name("Session").date(new Date()).description("description").capacity(3).build()).getId();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(userRepository.save(new User("user" + i + "@mail.com", "USER", "User", "password", false)));
+        }
+        for (int i = 0; i < 4; i++) {
+            sessionService.participate(sessionId, users.get(i).getId());
+        }
+        assertThat(count("select taken from SESSION_SEATS where session_id = ?", sessionId)).isEqualTo(3);
+
+        // WHEN : La liste est vidée
+        sessionService.update(sessionId, edited(sessionId, List.of()));
+
+        // THEN : Les places sont libérées et la première va à l'utilisateur en attente
+        assertThat(participants(sessionId)).containsExactly(users.get(3).getId());
+        assertThat(count("select taken from SESSION_SEATS where session_id = ?", sessionId)).isEqualTo(1);
+        assertThat(count("select count(*) from WAITLIST where session_id = ?", sessionId)).isZero();
+
+        // WHEN : La liste dépasse la capacité
+        sessionService.update(sessionId, edited(sessionId, users));
+
+        // THEN : Les 5 participants sont comptés et la session n'accepte plus d'inscription
+        assertThat(count("select taken from SESSION_SEATS where session_id = ?", sessionId)).isEqualTo(5);
+        sessionService.noLongerParticipate(sessionId, users.get(0).getId());
+        assertThat(count("select taken from SESSION_SEATS where session_id = ?", sessionId)).isEqualTo(4);
+        assertThat(sessionService.participate(sessionId, users.get(0).getId())).isFalse();
+    }
+
+    private Session edited(Long sessionId, List<User> users) {
+        Session current = sessionRepository.findById(sessionId).orElseThrow();
+        return new Session().setName(current.getName()).setDate(current.getDate()).setDescription(current.getDescription())
+                .setCapacity(current.getCapacity()).setUsers(new ArrayList<>(users));
+    }
+
+    // Test de charge : des centaines d'inscriptions simultanées à la même session, mêlées à des
+    // modifications de la session, sans qu'aucune inscription ne soit perdue
+    @Test
+    void concurrentParticipationsTest() throws Exception {
+        // GIVEN : Une session et 300 utilisateurs
+        Long sessionId = sessionRepository.save(Session.builder()
+                .name("Session").date(new Date()).description("description").build()).getId();
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            userIds.add(userRepository.save(new User("user" + i + "@mail.com", "USER", "User", "password", false)).getId());
+        }
+
+        // WHEN : Toutes les inscriptions et les modifications partent en même temps
+        List<Callable<Object>> calls = new ArrayList<>();
+        for (Long userId : userIds) {
+            calls.add(() -> {
+                sessionService.participate(sessionId, userId);
+                return null;
+            });
+        }
+        AtomicInteger conflicts = new AtomicInteger();
+        for (int i = 0; i < UPDATES; i++) {
+            String description = "description " + i;
+            calls.add(() -> {
+                try {
+                    return sessionService.update(sessionId,
+                            new Session().setName("Session").setDate(new Date()).setDescription(description));
+                } catch (ConflictException e) {
+                    // Toutes les tentatives ont rencontré une écriture concurrente
+                    conflicts.incrementAndGet();
+                    return null;
+                }
+            });
+        }
+
+        runConcurrently(calls, "participations and updates");
+        logger.info("{} of the {} updates gave up after a conflict on every attempt", conflicts.get(), UPDATES);
+
+        // THEN : Chaque inscription est enregistrée
+        assertThat(jdbcTemplate.queryForObject("select count(*) from PARTICIPATE where session_id = ?", Long.class,
+                sessionId)).isEqualTo(PARTICIPANTS);
+        assertThat(sessionService.findDtoById(sessionId).getUsers()).containsExactlyInAnyOrderElementsOf(userIds);
+        // THEN : Aucune modification n'est perdue : chaque modification acceptée a incrémenté la version
+        assertThat(sessionRepository.findById(sessionId).orElseThrow().getVersion())
+                .isEqualTo(UPDATES - conflicts.get());
+    }
+
+    private <T> List<T> runConcurrently(List<Callable<T>> calls, String name) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (Callable<T> call : calls) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return call.call();
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(60, TimeUnit.SECONDS));
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+
+        logger.info("{} {} on one session in {} ms: {} calls/s", calls.size(), name, Math.round(seconds * 1000),
+                Math.round(calls.size() / seconds));
+        return results;
+    }
+
+    private List<Long> participants(Long sessionId) {
+        return jdbcTemplate.queryForList("select user_id from PARTICIPATE where session_id = ? order by user_id",
+                Long.class, sessionId);
+    }
+
+    private long count(String sql, Long sessionId) {
+        return jdbcTemplate.queryForObject(sql, Long.class, sessionId);
+    }
+}
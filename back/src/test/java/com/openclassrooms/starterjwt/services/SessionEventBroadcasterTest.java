@@ -0,0 +1,211 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.openclassrooms.starterjwt.dto.SessionEvent;
+
+class SessionEventBroadcasterTest {
+
+    private SessionEventBroadcaster broadcaster;
+
+    // GIVEN commun : 2 threads d'envoi, 2 événements en attente au plus par abonné et 100 ms par écriture
+    @BeforeEach
+    void setUp() {
+        broadcaster = new SessionEventBroadcaster(2, 2, 10, 60_000, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.destroy();
+    }
+
+    // Test pour vérifier qu'un abonné à une session ne reçoit que les événements de celle-ci
+    @Test
+    void eventsFilteredBySessionTest() throws Exception {
+        // GIVEN : Un abonné à la session 1 et un abonné à toutes les sessions
+        RecordingEmitter sessionOne = new RecordingEmitter(null);
+        RecordingEmitter all = new RecordingEmitter(null);
+        broadcaster.register(sessionOne, 1L);
+        broadcaster.register(all, null);
+
+        // WHEN
+        broadcaster.publish(new SessionEvent(SessionEvent.PARTICIPATE, 1L, 5L));
+        broadcaster.publish(SessionEvent.of(SessionEvent.DELETE, 2L));
+
+        // THEN
+        await(() -> all.events.size() == 2);
+        assertThat(all.events).containsExactly(SessionEvent.PARTICIPATE, SessionEvent.DELETE);
+        assertThat(sessionOne.events).containsExactly(SessionEvent.PARTICIPATE);
+    }
+
+    // Test pour vérifier qu'un abonné trop lent est déconnecté sans ralentir la publication ni les autres
+    @Test
+    void slowSubscriberDisconnectedTest() throws Exception {
+        // GIVEN : Un abonné à toutes les sessions dont la connexion est bloquée, et un abonné à la session 2
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(unblock);
+        RecordingEmitter other = new RecordingEmitter(null);
+        broadcaster.register(slow, null);
+        broadcaster.register(other, 2L);
+
+        // WHEN : Plus d'événements de la session 1 que le tampon de l'abonné lent ne peut en contenir
+        long start = System.nanoTime();
+        for (long i = 0; i < 20; i++) {
+            broadcaster.publish(new SessionEvent(SessionEvent.PARTICIPATE, 1L, i));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // THEN : La publication ne bloque pas et seul l'abonné lent est déconnecté
+        assertThat(elapsedMillis).isLessThan(500);
+        assertThat(broadcaster.getSubscriberCount()).isEqualTo(1);
+        assertThat(broadcaster.getDisconnectedCount()).isEqualTo(1);
+
+        // L'autre abonné est toujours servi pendant que la connexion lente est bloquée
+        broadcaster.publish(SessionEvent.of(SessionEvent.UPDATE, 2L));
+        await(() -> other.events.size() == 1);
+
+        // La connexion lente se débloque et l'abonné est fermé sans recevoir la suite
+        unblock.countDown();
+        await(() -> slow.completed);
+        assertThat(slow.events.size()).isLessThan(20);
+    }
+
+    // Test pour vérifier qu'une écriture bloquée au-delà du délai libère le thread d'envoi et l'abonné
+    @Test
+    void stalledWriteExpiredTest() throws Exception {
+        // GIVEN : Un abonné dont la connexion bloque, puis se débloque à la fermeture de la réponse
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingEmitter stalled = new RecordingEmitter(unblock);
+        broadcaster.register(stalled, null);
+        broadcaster.publish(SessionEvent.of(SessionEvent.UPDATE, 1L));
+
+        // WHEN : Le contrôle passe avant puis après le délai de l'écriture
+        broadcaster.expireStalledWrites();
+        assertThat(broadcaster.getSubscriberCount()).isEqualTo(1);
+        Thread.sleep(200);
+        broadcaster.expireStalledWrites();
+
+        // THEN : La réponse est fermée en erreur et l'abonné retiré
+        assertThat(stalled.failure).isNotNull();
+        assertThat(broadcaster.getSubscriberCount()).isZero();
+        assertThat(broadcaster.getDisconnectedCount()).isEqualTo(1);
+        assertThat(stalled.completed).isFalse();
+    }
+
+    // Test pour vérifier qu'une connexion coupée par le client est fermée en erreur
+    @Test
+    void brokenConnectionCompletedWithErrorTest() throws Exception {
+        // GIVEN
+        RecordingEmitter broken = new RecordingEmitter(null);
+        broken.broken = true;
+        broadcaster.register(broken, null);
+
+        // WHEN
+        broadcaster.publish(SessionEvent.of(SessionEvent.UPDATE, 1L));
+
+        // THEN
+        await(() -> broken.failure != null);
+        assertThat(broken.failure).isInstanceOf(IOException.class);
+        assertThat(broken.completed).isFalse();
+        assertThat(broadcaster.getSubscriberCount()).isZero();
+    }
+
+    // Test pour vérifier qu'un événement publié dans une transaction n'est envoyé qu'après la validation
+    @Test
+    void publishAfterCommitTest() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(null);
+        broadcaster.register(emitter, null);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // WHEN : Publication pendant la transaction
+            broadcaster.publish(SessionEvent.of(SessionEvent.UPDATE, 1L));
+
+            // THEN : Rien n'est envoyé avant la validation
+            assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+            assertThat(emitter.events).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        await(() -> emitter.events.size() == 1);
+        assertThat(emitter.events).containsExactly(SessionEvent.UPDATE);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    // Connexion simulée qui enregistre le nom des événements reçus, et peut rester bloquée
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch unblock;
+
+        private volatile boolean completed;
+
+        private volatile Throwable failure;
+
+        private volatile boolean broken;
+
+        RecordingEmitter(CountDownLatch unblock) {
+            this.unblock = unblock;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            if (unblock != null) {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                throw new IOException("Connection closed");
+            }
+            builder.build().stream()
+                    .map(part -> String.valueOf(part.getData()))
+                    .filter(text -> text.startsWith("event:"))
+                    .forEach(text -> events.add(text.substring("event:".length(), text.indexOf('\n'))));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+            super.complete();
+        }
+
+        // Comme le conteneur, qui ferme la connexion et interrompt l'écriture en cours
+        @Override
+        public void completeWithError(Throwable ex) {
+            failure = ex;
+            if (unblock != null) {
+                unblock.countDown();
+            }
+            super.completeWithError(ex);
+        }
+    }
+}
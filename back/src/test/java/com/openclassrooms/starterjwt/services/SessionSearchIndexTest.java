@@ -0,0 +1,114 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SessionSearchIndexTest {
+
+    private SessionSearchIndex index;
+
+    // GIVEN commun : Un index sans base de données, alimenté en dehors de toute transaction
+    @BeforeEach
+    void setUp() {
+        index = new SessionSearchIndex(null, null, 5000);
+        index.index(1L, "Hatha", "Postures tenues et respiration, adapté aux débutants");
+        index.index(2L, "Vinyasa flow", "Enchaînements dynamiques synchronisés avec la respiration");
+        index.index(3L, "Yoga prénatal", "Postures douces pour la grossesse, en complément du vinyasa");
+    }
+
+    // Test pour vérifier que le nom compte plus que la description dans le classement
+    @Test
+    void rankedSearchTest() {
+        // WHEN
+        SessionSearchIndex.Hits hits = index.search("vinyasa", 0, 10);
+
+        // THEN
+        assertThat(hits.getIds()).containsExactly(2L, 3L);
+        assertThat(hits.getTotal()).isEqualTo(2);
+    }
+
+    // Test pour vérifier que la recherche ignore la casse, les accents et le pluriel
+    @Test
+    void normalizedSearchTest() {
+        assertThat(index.search("PRENATAL", 0, 10).getIds()).containsExactly(3L);
+        assertThat(index.search("posture débutant", 0, 10).getIds()).containsExactly(1L, 3L);
+        assertThat(index.search("de la", 0, 10).getTotal()).isZero();
+    }
+
+    // Test pour vérifier le découpage en pages
+    @Test
+    void pagedSearchTest() {
+        // WHEN : Les 3 sessions parlent de respiration ou de vinyasa, 2 par page
+        SessionSearchIndex.Hits first = index.search("respiration vinyasa", 0, 2);
+        SessionSearchIndex.Hits second = index.search("respiration vinyasa", 2, 2);
+
+        // THEN : La session qui a les deux mots est la première, et aucune n'est répétée
+        assertThat(first.getIds()).hasSize(2).startsWith(2L);
+        assertThat(second.getIds()).hasSize(1).doesNotContainAnyElementsOf(first.getIds());
+        assertThat(second.getTotal()).isEqualTo(3);
+    }
+
+    // Test pour vérifier qu'une modification remplace les mots indexés et qu'une suppression les retire
+    @Test
+    void updateAndRemoveTest() {
+        // WHEN
+        index.index(2L, "Yin", "Postures longues au sol");
+        index.remove(3L);
+
+        // THEN
+        assertThat(index.search("vinyasa", 0, 10).getTotal()).isZero();
+        assertThat(index.search("postures", 0, 10).getIds()).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    // Test pour vérifier que les mises à jour répétées ne faussent ni les résultats ni leur nombre
+    @Test
+    void repeatedUpdatesTest() {
+        // WHEN : 1000 versions successives de la session 1
+        for (int i = 0; i < 1000; i++) {
+            index.index(1L, "Hatha " + i, "Respiration");
+        }
+
+        // THEN : Seule la dernière version est trouvée
+        assertThat(index.search("hatha", 0, 10).getIds()).containsExactly(1L);
+        assertThat(index.search("respiration", 0, 10).getTotal()).isEqualTo(2);
+        assertThat(index.search("500", 0, 10).getTotal()).isZero();
+        assertThat(index.search("999", 0, 10).getIds()).containsExactly(1L);
+    }
+
+    // Test pour vérifier que les versions remplacées ne font pas grossir l'index
+    @Test
+    void renumberedOrdinalsTest() {
+        // WHEN : 10 000 versions successives de la session 2, et la session 3 supprimée entre-temps
+        for (int i = 0; i < 10_000; i++) {
+            index.index(2L, "Vinyasa " + i, "Respiration");
+            if (i == 5000) {
+                index.remove(3L);
+            }
+        }
+
+        // THEN : Le tableau des documents garde sa taille initiale et les résultats restent justes
+        Object[] documents = (Object[]) ReflectionTestUtils.getField(index, "documents");
+        assertThat(documents).hasSize(1024);
+        assertThat(index.search("respiration", 0, 10).getIds()).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.search("vinyasa", 0, 10).getIds()).containsExactly(2L);
+        assertThat(index.search("9999", 0, 10).getIds()).containsExactly(2L);
+        assertThat(index.search("prenatal", 0, 10).getTotal()).isZero();
+    }
+
+    // Test pour vérifier qu'un texte différent de même empreinte est bien réindexé
+    @Test
+    void sameHashUpdateTest() {
+        // GIVEN : "Aa" et "BB" ont la même empreinte String.hashCode()
+        index.index(1L, "Aa", "Respiration");
+
+        // WHEN
+        index.index(1L, "BB", "Respiration");
+
+        // THEN
+        assertThat(index.search("bb", 0, 10).getIds()).containsExactly(1L);
+        assertThat(index.search("aa", 0, 10).getTotal()).isZero();
+    }
+}
@@ -0,0 +1,184 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.openclassrooms.starterjwt.dto.SessionEvent;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.SessionSeats;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.ParticipantChangeRepository;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSeatsRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+
+@ExtendWith(MockitoExtension.class)
+class SessionSeatServiceTest {
+
+    @Mock
+    private SessionSeatsRepository seatsRepository;
+
+    @Mock
+    private WaitlistRepository waitlistRepository;
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @Mock
+    private ParticipantChangeRepository participantChangeRepository;
+
+    @Mock
+    private SessionEventBroadcaster eventBroadcaster;
+
+    @InjectMocks
+    private SessionSeatService seatService;
+
+    // Test pour vérifier la réservation d'une place selon la capacité de la session
+    @Test
+    void takeSeatTest() {
+        // GIVEN : La session 1 a des places, la session 2 est complète, la session 3 n'a pas de limite
+        when(seatsRepository.reserve(1L)).thenReturn(1);
+        when(seatsRepository.reserve(2L)).thenReturn(0);
+        when(seatsRepository.existsById(2L)).thenReturn(true);
+        when(seatsRepository.reserve(3L)).thenReturn(0);
+        when(seatsRepository.existsById(3L)).thenReturn(false);
+
+        // WHEN / THEN
+        assertThat(seatService.takeSeat(1L)).isTrue();
+        assertThat(seatService.takeSeat(2L)).isFalse();
+        assertThat(seatService.takeSeat(3L)).isTrue();
+    }
+
+    // Test pour vérifier que la place libérée revient au premier de la liste d'attente
+    @Test
+    void releaseSeatPromotesFirstWaitingTest() {
+        // GIVEN : Le premier en attente a déjà été promu par une autre désinscription
+        WaitlistEntry promoted = WaitlistEntry.builder().id(10L).sessionId(1L).userId(5L).build();
+        WaitlistEntry next = WaitlistEntry.builder().id(11L).sessionId(1L).userId(6L).build();
+        when(waitlistRepository.findFirstBySessionIdAndIdGreaterThanOrderByIdAsc(1L, 0L)).thenReturn(Optional.of(promoted));
+        when(waitlistRepository.deleteEntry(10L)).thenReturn(0);
+        when(waitlistRepository.findFirstBySessionIdAndIdGreaterThanOrderByIdAsc(1L, 10L)).thenReturn(Optional.of(next));
+        when(waitlistRepository.deleteEntry(11L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 6L)).thenReturn(1);
+
+        // WHEN
+        seatService.releaseSeat(1L);
+
+        // THEN : Le suivant prend la place, qui reste comptée comme occupée
+        verify(sessionRepository).addParticipant(1L, 6L);
+        verify(participantChangeRepository).record(eq(1L), any());
+        verify(eventBroadcaster).publish(new SessionEvent(SessionEvent.PARTICIPATE, 1L, 6L));
+        verify(seatsRepository, never()).release(any());
+    }
+
+    // Test pour vérifier que la place est libérée quand personne n'attend
+    @Test
+    void createSeatsTest() {
+        // GIVEN : Deux nouvelles sessions, dont une seule a une capacité
+        List<Session> sessions = List.of(
+                new Session().setId(1L).setCapacity(10),
+                new Session().setId(2L));
+
+        // WHEN
+        seatService.createSeats(sessions);
+
+        // THEN : Un seul compteur, créé vide et inséré sans être relu
+        verify(seatsRepository).saveAll(argThat((List<SessionSeats> seats) -> seats.size() == 1
+                && seats.get(0).getSessionId().equals(1L) && seats.get(0).getCapacity() == 10
+                && seats.get(0).getTaken() == 0 && seats.get(0).isNew()));
+    }
+
+    @Test
+    void takeSeatsTest() {
+        // GIVEN : Une session avec une place libre, une session surréservée et une sans capacité
+        SessionSeats oneLeft = new SessionSeats(1L, 10, 9);
+        SessionSeats overbooked = new SessionSeats(2L, 5, 7);
+        when(seatsRepository.findAllForUpdate(any())).thenReturn(List.of(oneLeft, overbooked));
+
+        // WHEN
+        Map<Long, Integer> taken = seatService.takeSeats(Map.of(1L, 3, 2L, 1, 3L, 2));
+
+        // THEN : Les places prises dépendent de chaque compteur, la session sans capacité prend tout
+        assertThat(taken).containsExactlyInAnyOrderEntriesOf(Map.of(1L, 1, 2L, 0, 3L, 2));
+        assertThat(oneLeft.getTaken()).isEqualTo(10);
+        assertThat(overbooked.getTaken()).isEqualTo(7);
+    }
+
+    @Test
+    void returnSeatsTest() {
+        // GIVEN : Des places prises puis inutilisées dans une session avec capacité et une sans
+        SessionSeats seats = new SessionSeats(1L, 10, 4);
+        when(seatsRepository.findAllForUpdate(Set.of(1L, 3L))).thenReturn(List.of(seats));
+
+        // WHEN
+        seatService.returnSeats(Map.of(1L, 2, 3L, 1));
+
+        // THEN : Seul le compteur existant est décrémenté, sans promotion depuis la liste d'attente
+        assertThat(seats.getTaken()).isEqualTo(2);
+        verifyNoInteractions(waitlistRepository);
+    }
+
+    @Test
+    void releaseSeatWithoutWaitlistTest() {
+        when(waitlistRepository.findFirstBySessionIdAndIdGreaterThanOrderByIdAsc(1L, 0L)).thenReturn(Optional.empty());
+
+        seatService.releaseSeat(1L);
+
+        verify(seatsRepository).release(1L);
+    }
+
+    // Test pour vérifier qu'un doublon en liste d'attente est refusé
+    @Test
+    void enqueueTwiceTest() {
+        when(waitlistRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertThatThrownBy(() -> seatService.enqueue(1L, 2L)).isInstanceOf(BadRequestException.class);
+    }
+
+    // Test pour vérifier la création du compteur à partir des participants existants
+    @Test
+    void setCapacityCreatesCounterTest() {
+        // GIVEN : Une session sans limite et 3 participants
+        when(seatsRepository.setCapacity(1L, 10)).thenReturn(0);
+        when(sessionRepository.countParticipants(1L)).thenReturn(3L);
+        when(seatsRepository.reserve(1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdAndIdGreaterThanOrderByIdAsc(1L, 0L)).thenReturn(Optional.empty());
+
+        // WHEN
+        seatService.setCapacity(1L, 10);
+
+        // THEN : Les 3 places sont comptées, et la place réservée pour la liste d'attente vide est rendue
+        verify(seatsRepository).saveAndFlush(argThat(seats -> seats.getCapacity() == 10 && seats.getTaken() == 3));
+        verify(seatsRepository).release(1L);
+    }
+
+    // Test pour vérifier que supprimer la capacité supprime le compteur
+    @Test
+    void removeCapacityTest() {
+        when(seatsRepository.existsById(1L)).thenReturn(true);
+
+        seatService.setCapacity(1L, null);
+
+        verify(seatsRepository).deleteById(1L);
+    }
+}
@@ -4,24 +4,50 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-
+import org.mockito.Spy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.data.domain.Slice;
+
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto;
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto.Outcome;
+import com.openclassrooms.starterjwt.dto.SessionChangesDto;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionEvent;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.SessionTombstone;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.ParticipantChangeRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionTombstoneRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
 @ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class) // Intégration de Mockito avec JUnit 5
@@ -33,11 +59,32 @@ class SessionsServiceTest {
 	@Mock
 	private UserRepository userRepository;
 
+	@Mock
+	private SessionSeatService seatService;
+
+	@Mock
+	private SessionTombstoneRepository tombstoneRepository;
+
+	@Mock
+	private ParticipantChangeRepository participantChangeRepository;
+
+	@Mock
+	private SessionEventBroadcaster eventBroadcaster;
+
+	@Mock
+	private SessionSearchIndex searchIndex;
+
+	// Exécute les écritures sans gestionnaire de transactions réel
+	@Spy
+	private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
 	@InjectMocks
 	private SessionService sessionService;
 
     private List<Session> mockSessions;
 
+    private List<SessionDto> mockSessionDtos;
+
     @BeforeEach
     public void setup() {
         // Création d'objets factices pour les tests : sessions, enseignants, utilisateurs
@@ -52,8 +99,13 @@ class SessionsServiceTest {
 
         // Initialisation des sessions factices avec des utilisateurs et des enseignants
     	this.mockSessions = new ArrayList<>();
-		this.mockSessions.add(new Session(1L, "Session 1", new Date(), "description 1", mockTeachers.get(0), mockUsers, LocalDateTime.now(), LocalDateTime.now()));
-		this.mockSessions.add(new Session(2L, "Session 2", new Date(), "description 2", mockTeachers.get(1), mockUsers, LocalDateTime.now(), LocalDateTime.now()));
+		this.mockSessions.add(new Session(1L, "Session 1", new Date(), "description 1", mockTeachers.get(0), mockUsers, LocalDateTime.now(), LocalDateTime.now(), 0L, null));
+		this.mockSessions.add(new Session(2L, "Session 2", new Date(), "description 2", mockTeachers.get(1), mockUsers, LocalDateTime.now(), LocalDateTime.now(), 0L, null));
+
+		// Lignes renvoyées par les requêtes de lecture, sans les participants
+		this.mockSessionDtos = new ArrayList<>();
+		this.mockSessionDtos.add(new SessionDto(1L, "Session 1", new Date(), 1L, "description 1", LocalDateTime.now(), LocalDateTime.now(), 0L, null));
+		this.mockSessionDtos.add(new SessionDto(2L, "Session 2", new Date(), 2L, "description 2", LocalDateTime.now(), LocalDateTime.now(), 0L, null));
     }
 
 	@Test
@@ -70,6 +122,55 @@ class SessionsServiceTest {
 		verify(sessionRepository, times(1)).save(session);
 	}
 
+	@Test
+	void createAllTest() {
+		// GIVEN
+		when(sessionRepository.saveAll(this.mockSessions)).thenReturn(this.mockSessions);
+
+		// WHEN
+		List<Session> result = sessionService.createAll(this.mockSessions);
+
+		// THEN : Les sessions sont insérées avant leurs compteurs de places, puis indexées et diffusées
+		assertThat(result).isEqualTo(this.mockSessions);
+		InOrder inOrder = inOrder(sessionRepository, seatService);
+		inOrder.verify(sessionRepository).flush();
+		inOrder.verify(seatService).createSeats(this.mockSessions);
+		verify(searchIndex).index(2L, "Session 2", "description 2");
+		verify(eventBroadcaster).publish(SessionEvent.of(SessionEvent.CREATE, 1L));
+		verify(eventBroadcaster).publish(SessionEvent.of(SessionEvent.CREATE, 2L));
+	}
+
+	@Test
+	void createSeriesTest() {
+		// GIVEN : Un lundi à 18h30, répété les lundis et mercredis une semaine sur deux
+		LocalDateTime first = LocalDateTime.of(2026, 11, 2, 18, 30);
+		Session template = new Session().setName("Vinyasa").setDescription("Flow").setCapacity(12)
+				.setDate(Date.from(first.atZone(ZoneId.systemDefault()).toInstant()));
+		when(sessionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		// WHEN
+		List<Session> result = sessionService.createSeries(template, Set.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY),
+				LocalDate.of(2026, 11, 18), 2);
+
+		// THEN : Les 2 et 4 novembre, puis les 16 et 18, à la même heure
+		assertThat(result).extracting(session -> LocalDateTime.ofInstant(session.getDate().toInstant(), ZoneId.systemDefault()))
+				.containsExactly(first, first.plusDays(2), first.plusDays(14), first.plusDays(16));
+		assertThat(result).allMatch(session -> session.getCapacity() == 12 && session.getName().equals("Vinyasa"));
+		verify(seatService).createSeats(result);
+	}
+
+	@Test
+	void createSeriesWithoutOccurrenceTest() {
+		// GIVEN : Un lundi, répété les dimanches jusqu'au lendemain
+		Session template = new Session().setName("Yin").setDescription("Yin")
+				.setDate(Date.from(LocalDateTime.of(2026, 11, 2, 9, 0).atZone(ZoneId.systemDefault()).toInstant()));
+
+		// WHEN / THEN
+		assertThatThrownBy(() -> sessionService.createSeries(template, Set.of(DayOfWeek.SUNDAY), LocalDate.of(2026, 11, 3), 1))
+				.isInstanceOf(BadRequestException.class);
+		verify(sessionRepository, never()).saveAll(anyList());
+	}
+
 	@Test
 	void deleteTest() {
 		// GIVEN : Un ID de session à supprimer
@@ -80,19 +181,222 @@ class SessionsServiceTest {
 
 		// THEN : Vérification que la méthode deleteById a bien été appelée une fois
 		verify(sessionRepository, times(1)).deleteById(sessionId);
+		// Vérification que la suppression est tracée et diffusée pour les clients qui se synchronisent
+		verify(tombstoneRepository).save(argThat((SessionTombstone tombstone) -> tombstone.getSessionId().equals(sessionId)));
+		verify(eventBroadcaster).publish(SessionEvent.of(SessionEvent.DELETE, sessionId));
+		verify(searchIndex).remove(sessionId);
+	}
+
+	@Test
+	void findChangesTest() {
+		// GIVEN : Une session modifiée, une autre dont les participants ont changé et une session supprimée
+		LocalDateTime since = LocalDateTime.now().minusMinutes(5);
+		when(sessionRepository.findUpdatedPage(any(), eq(since), eq(Long.MAX_VALUE), eq(PageRequest.of(0, 501))))
+				.thenReturn(List.of(this.mockSessionDtos.get(0)));
+		when(participantChangeRepository.findSessionIdsChangedBetween(eq(since), any(), eq(Long.MIN_VALUE),
+				eq(PageRequest.of(0, 500)))).thenReturn(List.of(2L));
+		when(sessionRepository.findDtosByIds(List.of(2L))).thenReturn(List.of(this.mockSessionDtos.get(1)));
+		when(sessionRepository.findParticipantIds(Set.of(1L, 2L))).thenReturn(List.<Object[]>of(new Object[] { 1L, 2L }));
+		when(tombstoneRepository.findSessionIdsDeletedAfter(since)).thenReturn(List.of(3L));
+
+		// WHEN
+		SessionChangesDto changes = sessionService.findChanges(since, null);
+
+		// THEN : Seuls les changements sont renvoyés, en une seule page, avec un repère postérieur au précédent
+		assertThat(changes.isReset()).isFalse();
+		assertThat(changes.getUpdated()).extracting(SessionDto::getId).containsExactly(1L, 2L);
+		assertThat(changes.getUpdated().get(0).getUsers()).containsExactly(2L);
+		assertThat(changes.getDeleted()).containsExactly(3L);
+		assertThat(changes.getWatermark()).isAfter(since).isBefore(LocalDateTime.now());
+		assertThat(changes.getNextCursor()).isNull();
+	}
+
+	@Test
+	void findChangesPagedTest() {
+		// GIVEN : Des pages d'une session, deux sessions modifiées puis une dont les participants ont changé
+		ReflectionTestUtils.setField(sessionService, "listMaxSize", 1);
+		LocalDateTime since = LocalDateTime.now().minusMinutes(5);
+		SessionDto first = this.mockSessionDtos.get(0);
+		SessionDto second = this.mockSessionDtos.get(1);
+		first.setUpdatedAt(since.plusMinutes(1));
+		second.setUpdatedAt(since.plusMinutes(2));
+		when(sessionRepository.findUpdatedPage(any(), eq(since), eq(Long.MAX_VALUE), any()))
+				.thenReturn(List.of(first, second));
+		when(sessionRepository.findUpdatedPage(any(), eq(first.getUpdatedAt()), eq(first.getId()), any()))
+				.thenReturn(List.of(second));
+		when(participantChangeRepository.findSessionIdsChangedBetween(eq(since), any(), eq(Long.MIN_VALUE), any()))
+				.thenReturn(List.of(5L));
+		when(sessionRepository.findDtosByIds(List.of(5L))).thenReturn(List.of(new SessionDto(5L, "Session 5",
+				new Date(), 1L, "Description", new ArrayList<>(), null, null, null, null)));
+		when(tombstoneRepository.findSessionIdsDeletedAfter(since)).thenReturn(List.of(3L));
+
+		// WHEN : Le client suit le curseur seul jusqu'à la dernière page
+		List<SessionChangesDto> pages = new ArrayList<>();
+		pages.add(sessionService.findChanges(since, null));
+		while (pages.get(pages.size() - 1).getNextCursor() != null) {
+			pages.add(sessionService.findChanges(null, pages.get(pages.size() - 1).getNextCursor()));
+		}
+
+		// THEN : Une session par page, le repère et les suppressions sur la dernière seulement
+		assertThat(pages).hasSize(3);
+		assertThat(pages).flatExtracting(SessionChangesDto::getUpdated).extracting(SessionDto::getId)
+				.containsExactly(1L, 2L, 5L);
+		assertThat(pages.subList(0, 2)).allSatisfy(page -> {
+			assertThat(page.getWatermark()).isNull();
+			assertThat(page.getDeleted()).isEmpty();
+		});
+		SessionChangesDto last = pages.get(2);
+		assertThat(last.getDeleted()).containsExactly(3L);
+		assertThat(last.getWatermark()).isAfter(since);
+
+		// Toutes les pages lisent la même fenêtre, bornée par le repère renvoyé
+		verify(sessionRepository, times(2)).findUpdatedPage(eq(last.getWatermark()), any(), any(), any());
+		verify(participantChangeRepository, times(2)).findSessionIdsChangedBetween(eq(since), eq(last.getWatermark()), any(), any());
+	}
+
+	@Test
+	void findChangesResetTest() {
+		// GIVEN : Un repère plus ancien que les traces de suppression conservées, et une liste plafonnée à une session
+		ReflectionTestUtils.setField(sessionService, "listMaxSize", 1);
+		when(sessionRepository.findPage(SessionFilter.NONE, null, 2)).thenReturn(this.mockSessionDtos);
+
+		// WHEN
+		SessionChangesDto changes = sessionService.findChanges(LocalDateTime.now().minusYears(1), null);
+
+		// THEN : Seule la première page est renvoyée pour remplacer la copie du client, avec le curseur de la suivante
+		assertThat(changes.isReset()).isTrue();
+		assertThat(changes.getUpdated()).extracting(SessionDto::getId).containsExactly(1L);
+		assertThat(changes.getWatermark()).isNull();
+		SessionChangesCursor cursor = SessionChangesCursor.decode(changes.getNextCursor());
+		assertThat(cursor.getStep()).isEqualTo(SessionChangesCursor.Step.RESYNC);
+		assertThat(cursor.getId()).isEqualTo(1L);
+		verify(tombstoneRepository, never()).findSessionIdsDeletedAfter(any());
+	}
+
+	@Test
+	void findChangesResetNextPageTest() {
+		// GIVEN : La page qui suit le curseur est la dernière
+		LocalDateTime watermark = LocalDateTime.now().minusMinutes(1);
+		SessionDto first = this.mockSessionDtos.get(0);
+		when(sessionRepository.findPage(eq(SessionFilter.NONE), any(), eq(501))).thenReturn(List.of(this.mockSessionDtos.get(1)));
+		String cursor = SessionChangesCursor.resync(watermark, first.getDate(), first.getId()).encode();
+
+		// WHEN
+		SessionChangesDto changes = sessionService.findChanges(null, cursor);
+
+		// THEN : La page est fusionnée, avec le repère fixé par la première page, sans curseur ensuite
+		assertThat(changes.isReset()).isFalse();
+		assertThat(changes.getUpdated()).extracting(SessionDto::getId).containsExactly(2L);
+		assertThat(changes.getWatermark()).isEqualTo(watermark);
+		assertThat(changes.getNextCursor()).isNull();
+		verify(sessionRepository).findPage(eq(SessionFilter.NONE),
+				argThat(after -> after.getId().equals(first.getId()) && after.getDate().equals(first.getDate())), eq(501));
+
+		// WHEN / THEN : Un curseur illisible est refusé
+		assertThatThrownBy(() -> sessionService.findChanges(null, "not-a-cursor"))
+				.isInstanceOf(BadRequestException.class);
 	}
 
 	@Test
 	void findAllTest() {
-		// GIVEN : Simulation du retour de toutes les sessions du dépôt
-		when(sessionRepository.findAll()).thenReturn(this.mockSessions);
+		// GIVEN : Simulation du retour des premières sessions du dépôt
+		when(sessionRepository.findFirstPage(PageRequest.of(0, 500))).thenReturn(this.mockSessionDtos);
+		when(sessionRepository.findParticipantIds(anyCollection()))
+				.thenReturn(List.of(new Object[] { 1L, 1L }, new Object[] { 1L, 2L }, new Object[] { 2L, 2L }));
 
 		// WHEN : Appel à la méthode findAll
-		List<Session> result = sessionService.findAll();
+		List<SessionDto> result = sessionService.findAll();
 
-		// THEN : Vérification que toutes les sessions retournées correspondent aux sessions simulées
-		assertThat(result).isEqualTo(this.mockSessions);
-		verify(sessionRepository, times(1)).findAll();
+		// THEN : Vérification que la liste est plafonnée et ne charge pas toute la table
+		assertThat(result).isEqualTo(this.mockSessionDtos);
+		verify(sessionRepository, never()).findAll();
+
+		// THEN : Les participants des deux sessions sont lus en une seule requête
+		assertThat(result.get(0).getUsers()).containsExactly(1L, 2L);
+		assertThat(result.get(1).getUsers()).containsExactly(2L);
+		verify(sessionRepository, times(1)).findParticipantIds(anyCollection());
+	}
+
+	@Test
+	void findPageTest() {
+		// GIVEN : Le dépôt renvoie une ligne de plus que la taille demandée
+		when(sessionRepository.findPage(SessionFilter.NONE, null, 2)).thenReturn(this.mockSessionDtos);
+
+		// WHEN
+		Slice<SessionDto> page = sessionService.findPage(null, 1, SessionFilter.NONE);
+
+		// THEN : Une seule session est renvoyée et une page suivante existe
+		assertThat(page.getContent()).containsExactly(this.mockSessionDtos.get(0));
+		assertThat(page.hasNext()).isTrue();
+
+		// THEN : Les participants ne sont lus que pour la session renvoyée
+		verify(sessionRepository).findParticipantIds(Set.of(1L));
+	}
+
+	@Test
+	void findPageAfterCursorTest() {
+		// GIVEN : Un curseur placé après la première session
+		SessionDto first = this.mockSessionDtos.get(0);
+		String cursor = SessionCursor.after(first).encode();
+		SessionFilter filter = new SessionFilter(null, null, 1L);
+		when(sessionRepository.findPage(eq(filter), argThat(after -> after.getDate().equals(first.getDate())
+				&& after.getId().equals(first.getId())), eq(21)))
+				.thenReturn(List.of(this.mockSessionDtos.get(1)));
+
+		// WHEN
+		Slice<SessionDto> page = sessionService.findPage(cursor, null, filter);
+
+		// THEN : Dernière page
+		assertThat(page.getContent()).containsExactly(this.mockSessionDtos.get(1));
+		assertThat(page.hasNext()).isFalse();
+	}
+
+	@Test
+	void searchTest() {
+		// GIVEN : L'index classe la session 2 avant la session 1, et une session supprimée entre-temps
+		when(searchIndex.isLoaded()).thenReturn(true);
+		when(searchIndex.search("vinyasa", 20, 20)).thenReturn(new SessionSearchIndex.Hits(List.of(2L, 3L, 1L), 43));
+		when(sessionRepository.findDtosByIds(List.of(2L, 3L, 1L))).thenReturn(this.mockSessionDtos);
+
+		// WHEN : Deuxième page
+		Page<SessionDto> page = sessionService.search("vinyasa", 1, null);
+
+		// THEN : Le classement de l'index est conservé
+		assertThat(page.getContent()).extracting(SessionDto::getId).containsExactly(2L, 1L);
+		assertThat(page.getTotalElements()).isEqualTo(43);
+	}
+
+	@Test
+	void searchNotLoadedTest() {
+		when(searchIndex.isLoaded()).thenReturn(false);
+
+		assertThat(sessionService.search("vinyasa", null, null)).isNull();
+		verify(searchIndex, never()).search(any(), anyInt(), anyInt());
+	}
+
+	@Test
+	void searchTooDeepTest() {
+		when(searchIndex.isLoaded()).thenReturn(true);
+
+		assertThatThrownBy(() -> sessionService.search("vinyasa", 50, 20)).isInstanceOf(BadRequestException.class);
+	}
+
+	@Test
+	void findPageInvalidCursorTest() {
+		assertThatThrownBy(() -> sessionService.findPage("not a cursor", null, SessionFilter.NONE)).isInstanceOf(BadRequestException.class);
+	}
+
+	@Test
+	void findDtoByIdTest() {
+		// GIVEN : Une session sans participant
+		when(sessionRepository.findDtoById(1L)).thenReturn(Optional.of(this.mockSessionDtos.get(0)));
+
+		// WHEN
+		SessionDto result = sessionService.findDtoById(1L);
+
+		// THEN : La liste des participants est vide et non nulle
+		assertThat(result.getUsers()).isEmpty();
+		assertThat(sessionService.findDtoById(2L)).isNull();
 	}
 
 	@Test
@@ -129,18 +433,138 @@ class SessionsServiceTest {
 		// GIVEN : Une session existante et une nouvelle description
 		Long sessionId = 1L;
 		String newDescription = "New description";
-		Session mockedSession = this.mockSessions.get(0);
-		Session mockedUpdatedSession = mockedSession.setDescription(newDescription);
-	    when(sessionRepository.save(mockedUpdatedSession)).thenReturn(mockedUpdatedSession);
+		Session current = this.mockSessions.get(0);
+		Session edited = new Session().setName("Session 1").setDate(current.getDate()).setDescription(newDescription);
+		when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(current));
+		when(sessionRepository.save(current)).thenReturn(current);
 
 		// WHEN : Appel à la méthode update
-		Session result = sessionService.update(sessionId, mockedUpdatedSession);
+		Session result = sessionService.update(sessionId, edited);
 
 		// THEN : Vérification que la session a été mise à jour avec la nouvelle description
-		assertThat(result).isEqualTo(mockedUpdatedSession);
 		assertThat(result.getId()).isEqualTo(sessionId);
 		assertThat(result.getDescription()).isEqualTo(newDescription);
-	    verify(sessionRepository, times(1)).save(mockedUpdatedSession);
+		// THEN : La requête ne liste pas les participants, ils sont conservés
+		assertThat(result.getUsers()).hasSize(2);
+	    verify(sessionRepository, times(1)).save(current);
+		// THEN : La nouvelle description est indexée pour la recherche
+		verify(searchIndex).index(sessionId, "Session 1", newDescription);
+	}
+
+	@Test
+	void patchTest() {
+		// GIVEN : Seule la description est fournie
+		Session current = this.mockSessions.get(0).setCapacity(10);
+		when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+		when(sessionRepository.save(current)).thenReturn(current);
+
+		// WHEN
+		Session result = sessionService.patch(1L, new Session().setDescription("New description"));
+
+		// THEN : Les autres champs et les participants sont conservés, la capacité n'est pas recalculée
+		assertThat(result.getDescription()).isEqualTo("New description");
+		assertThat(result.getName()).isEqualTo("Session 1");
+		assertThat(result.getTeacher()).isEqualTo(this.mockSessions.get(0).getTeacher());
+		assertThat(result.getCapacity()).isEqualTo(10);
+		assertThat(result.getUsers()).hasSize(2);
+		verify(seatService, never()).setCapacity(any(), any());
+		verify(searchIndex).index(1L, "Session 1", "New description");
+		verify(eventBroadcaster).publish(SessionEvent.of(SessionEvent.UPDATE, 1L));
+	}
+
+	@Test
+	void patchStaleVersionTest() {
+		// GIVEN : La session a été modifiée depuis que le client l'a lue
+		when(sessionRepository.findById(1L)).thenReturn(Optional.of(this.mockSessions.get(0).setVersion(3L)));
+
+		// WHEN / THEN
+		assertThatThrownBy(() -> sessionService.patch(1L, new Session().setName("Renamed").setVersion(2L)))
+				.isInstanceOf(ConflictException.class);
+		verify(sessionRepository, never()).save(any());
+	}
+
+	@Test
+	void updateParticipantsRecountsSeatsTest() {
+		// GIVEN : Une session de 10 places dont la liste des participants est remplacée
+		Session current = this.mockSessions.get(0).setCapacity(10);
+		when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+		when(sessionRepository.save(current)).thenReturn(current);
+
+		// WHEN
+		sessionService.update(1L, new Session().setName("Session 1").setCapacity(10).setUsers(new ArrayList<>()));
+
+		// THEN : Les places sont recomptées dans la même transaction, après l'enregistrement
+		InOrder inOrder = inOrder(sessionRepository, seatService);
+		inOrder.verify(sessionRepository).save(current);
+		inOrder.verify(seatService).setCapacity(1L, 10);
+		inOrder.verify(seatService).recount(1L);
+		verify(transactionTemplate).execute(any());
+	}
+
+	@Test
+	void updateWithoutParticipantsKeepsSeatsTest() {
+		// GIVEN : La requête ne liste pas les participants
+		Session current = this.mockSessions.get(0);
+		when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+		when(sessionRepository.save(current)).thenReturn(current);
+
+		// WHEN
+		sessionService.update(1L, new Session().setName("Session 1"));
+
+		// THEN
+		verify(seatService, never()).recount(any());
+	}
+
+	@Test
+	void updateNotFoundTest() {
+		when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+
+		assertThatThrownBy(() -> sessionService.update(1L, new Session())).isInstanceOf(NotFoundException.class);
+		verify(sessionRepository, never()).save(any());
+	}
+
+	@Test
+	void updateStaleVersionTest() {
+		// GIVEN : La session a été modifiée depuis que le client l'a lue
+		Session current = this.mockSessions.get(0).setVersion(3L);
+		when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+
+		// WHEN / THEN : La modification est rejetée sans être réessayée
+		assertThatThrownBy(() -> sessionService.update(1L, new Session().setVersion(2L)))
+				.isInstanceOf(ConflictException.class);
+		verify(sessionRepository, times(1)).findById(1L);
+		verify(sessionRepository, never()).save(any());
+	}
+
+	@Test
+	void updateRetriedOnConcurrentWriteTest() {
+		// GIVEN : Une écriture concurrente entre la lecture et l'enregistrement
+		Session current = this.mockSessions.get(0);
+		when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+		when(sessionRepository.save(current))
+				.thenThrow(new ObjectOptimisticLockingFailureException(Session.class, 1L))
+				.thenReturn(current);
+
+		// WHEN
+		Session result = sessionService.update(1L, new Session().setName("Renamed"));
+
+		// THEN : La session est relue puis enregistrée une seconde fois
+		assertThat(result.getName()).isEqualTo("Renamed");
+		verify(sessionRepository, times(2)).findById(1L);
+		verify(sessionRepository, times(2)).save(current);
+	}
+
+	@Test
+	void updateGivesUpAfterAttemptsTest() {
+		// GIVEN : Des écritures concurrentes à chaque tentative
+		Session current = this.mockSessions.get(0);
+		when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+		when(sessionRepository.save(current)).thenThrow(new ObjectOptimisticLockingFailureException(Session.class, 1L));
+
+		// WHEN / THEN : Le nombre de tentatives est borné
+		assertThatThrownBy(() -> sessionService.update(1L, new Session()))
+				.isInstanceOf(ConflictException.class);
+		verify(sessionRepository, times(5)).save(current);
 	}
 
 	@Test
@@ -148,20 +572,50 @@ class SessionsServiceTest {
         // GIVEN : Une session et un utilisateur non encore inscrit
         Long sessionId = 1L;
         Long userId = 3L;
-        Session mockSession = this.mockSessions.get(0);
-        User mockUser = new User(userId, "test@mail.com", "firstName", "LastName", "password", false, LocalDateTime.now(), LocalDateTime.now());
-
-        // Simulation des méthodes findById pour récupérer la session et l'utilisateur
-        when(sessionRepository.findById(any(Long.class))).thenReturn(Optional.of(mockSession));
-        when(userRepository.findById(any(Long.class))).thenReturn(Optional.of(mockUser));
-	    when(sessionRepository.save(mockSession)).thenReturn(mockSession);
+        when(sessionRepository.insertParticipant(sessionId, userId)).thenReturn(1);
+        when(seatService.takeSeat(sessionId)).thenReturn(true);
 
         // WHEN : Appel à la méthode participate
-        sessionService.participate(sessionId, userId);
+        boolean participating = sessionService.participate(sessionId, userId);
+
+        // THEN : Vérification que seule la ligne de PARTICIPATE a été insérée, sans charger ni écrire
+        // la session, que le changement est tracé et que l'inscription est diffusée
+        assertThat(participating).isTrue();
+        verify(eventBroadcaster).publish(new SessionEvent(SessionEvent.PARTICIPATE, sessionId, userId));
+        verify(participantChangeRepository).record(eq(sessionId), any());
+        verify(sessionRepository, times(1)).insertParticipant(sessionId, userId);
+        verify(sessionRepository, never()).findById(any());
+        verify(sessionRepository, never()).save(any());
+    }
+
+	@Test
+    void participateFullSessionTest() {
+        // GIVEN : Une session complète
+        Long sessionId = 1L;
+        Long userId = 3L;
+        when(sessionRepository.insertParticipant(sessionId, userId)).thenReturn(1);
+        when(seatService.takeSeat(sessionId)).thenReturn(false);
+        when(seatService.enqueue(sessionId, userId)).thenReturn(true);
+
+        // WHEN
+        boolean participating = sessionService.participate(sessionId, userId);
+
+        // THEN : L'inscription est annulée et l'utilisateur est placé en liste d'attente
+        assertThat(participating).isFalse();
+        verify(eventBroadcaster, never()).publish(any());
+        verify(participantChangeRepository, never()).record(any(), any());
+        verify(sessionRepository).removeParticipant(sessionId, userId);
+        verify(seatService).enqueue(sessionId, userId);
+    }
+
+	@Test
+    void participateAlreadyWaitingTest() {
+        // GIVEN : Un utilisateur déjà en liste d'attente
+        when(seatService.isWaiting(1L, 3L)).thenReturn(true);
 
-        // THEN : Vérification que l'utilisateur a été ajouté à la session
-        assertThat(mockSession.getUsers()).contains(mockUser);
-        verify(sessionRepository, times(1)).save(mockSession);
+        // WHEN / THEN
+        assertThatThrownBy(() -> sessionService.participate(1L, 3L)).isInstanceOf(BadRequestException.class);
+        verify(sessionRepository, never()).insertParticipant(any(), any());
     }
 
 	@Test
@@ -169,12 +623,12 @@ class SessionsServiceTest {
         // GIVEN : Une session inexistante
         Long sessionId = 1L;
         Long userId = 2L;
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+        when(sessionRepository.insertParticipant(sessionId, userId)).thenReturn(0);
 
         // WHEN / THEN : Vérification que l'exception NotFoundException est levée
         assertThatThrownBy(() -> sessionService.participate(sessionId, userId))
                 .isInstanceOf(NotFoundException.class);
-        verify(sessionRepository, times(0)).save(any());
+        verify(seatService, never()).takeSeat(any());
     }
 
 	@Test
@@ -182,28 +636,85 @@ class SessionsServiceTest {
         // GIVEN : Un utilisateur inexistant
         Long sessionId = 1L;
         Long userId = 2L;
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(sessionRepository.insertParticipant(sessionId, userId)).thenReturn(0);
 
         // WHEN / THEN : Vérification que l'exception NotFoundException est levée
         assertThatThrownBy(() -> sessionService.participate(sessionId, userId))
                 .isInstanceOf(NotFoundException.class);
-        verify(sessionRepository, times(0)).save(any());
     }
 
 	@Test
     void participateAlreadyParticipatingTest() {
-        // GIVEN : Un utilisateur déjà inscrit à la session
+        // GIVEN : Un utilisateur déjà inscrit, éventuellement en parallèle : la clé primaire rejette le doublon
         Long sessionId = 1L;
         Long userId = 2L;
-        Session mockSession = this.mockSessions.get(0);
-        User mockUser = this.mockSessions.get(0).getUsers().get(1);
-        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(mockSession));
+        when(sessionRepository.insertParticipant(sessionId, userId))
+                .thenThrow(new DataIntegrityViolationException("PRIMARY"));
 
         // WHEN / THEN : Vérification que l'exception BadRequestException est levée
         assertThatThrownBy(() -> sessionService.participate(sessionId, userId))
                 .isInstanceOf(BadRequestException.class);
-        verify(sessionRepository, times(0)).save(any());
+    }
+
+	@Test
+    void addParticipantsTest() {
+        // GIVEN : Un utilisateur déjà inscrit, un en liste d'attente, deux à inscrire avec une seule
+        // place libre, un inconnu et un doublon dans la liste
+        when(userRepository.findExistingIds(any())).thenReturn(List.of(2L, 3L, 4L, 5L));
+        when(sessionRepository.findExistingIds(any())).thenReturn(List.of(1L));
+        when(sessionRepository.findParticipations(any(), any())).thenReturn(List.<Object[]>of(new Object[] { 1L, 2L }));
+        when(seatService.findWaiting(any(), any())).thenReturn(List.of(WaitlistEntry.builder().sessionId(1L).userId(3L).build()));
+        when(seatService.takeSeats(Map.of(1L, 2))).thenReturn(new HashMap<>(Map.of(1L, 1)));
+
+        // WHEN
+        List<ParticipationResultDto> results = sessionService.addParticipants(1L, List.of(2L, 3L, 4L, 5L, 6L, 3L));
+
+        // THEN : Un résultat par utilisateur, dans l'ordre, et une seule insertion pour les inscrits
+        assertThat(results).extracting(ParticipationResultDto::getOutcome).containsExactly(
+                Outcome.ALREADY_PRESENT, Outcome.WAITING, Outcome.ADDED, Outcome.FULL, Outcome.NOT_FOUND);
+        verify(sessionRepository).addParticipants(Set.of(1L), Set.of(4L));
+        verify(participantChangeRepository).recordAll(eq(Set.of(1L)), any());
+        verify(eventBroadcaster).publish(new SessionEvent(SessionEvent.PARTICIPATE, 1L, 4L));
+        verify(eventBroadcaster, times(1)).publish(any());
+    }
+
+	@Test
+    void addParticipationsNotFoundTest() {
+        // GIVEN : Des sessions qui n'existent pas
+        when(userRepository.findExistingIds(any())).thenReturn(List.of(2L));
+        when(sessionRepository.findExistingIds(any())).thenReturn(List.of());
+
+        // WHEN
+        List<ParticipationResultDto> results = sessionService.addParticipations(2L, List.of(7L, 8L));
+
+        // THEN : Rien n'est inscrit et aucune place n'est prise
+        assertThat(results).containsExactly(
+                new ParticipationResultDto(7L, 2L, Outcome.NOT_FOUND),
+                new ParticipationResultDto(8L, 2L, Outcome.NOT_FOUND));
+        verify(seatService, never()).takeSeats(any());
+        verify(sessionRepository, never()).addParticipants(any(), any());
+    }
+
+	@Test
+    void addParticipationsConcurrentDuplicateTest() {
+        // GIVEN : Une des inscriptions est insérée en parallèle après la première lecture
+        when(userRepository.findExistingIds(any())).thenReturn(List.of(2L));
+        when(sessionRepository.findExistingIds(any())).thenReturn(List.of(7L, 8L));
+        when(seatService.takeSeats(any())).thenAnswer(invocation -> new HashMap<>(invocation.getArgument(0)));
+        when(sessionRepository.lockParticipations(Set.of(7L, 8L), Set.of(2L)))
+                .thenReturn(List.<Object[]>of(new Object[] { 8L, 2L }));
+
+        // WHEN
+        List<ParticipationResultDto> results = sessionService.addParticipations(2L, List.of(7L, 8L));
+
+        // THEN : Elle est signalée comme déjà présente, sa place rendue, et seule l'autre est insérée
+        assertThat(results).extracting(ParticipationResultDto::getOutcome)
+                .containsExactly(Outcome.ADDED, Outcome.ALREADY_PRESENT);
+        verify(seatService).returnSeats(Map.of(8L, 1));
+        verify(sessionRepository).addParticipants(Set.of(7L), Set.of(2L));
+        verify(participantChangeRepository).recordAll(eq(Set.of(7L)), any());
+        verify(eventBroadcaster, times(1)).publish(new SessionEvent(SessionEvent.PARTICIPATE, 7L, 2L));
+        verify(eventBroadcaster, times(1)).publish(any());
     }
 
 	@Test
@@ -211,16 +722,29 @@ class SessionsServiceTest {
         // GIVEN : Un utilisateur qui participe et qui se désinscrit
         Long sessionId = 1L;
         Long userId = 2L;
-        Session mockSession = this.mockSessions.get(0);
-        User mockUser = this.mockSessions.get(0).getUsers().get(1);
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(mockSession));
+        when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(1);
 
         // WHEN : Appel à la méthode noLongerParticipate
         sessionService.noLongerParticipate(sessionId, userId);
 
-        // THEN : Vérification que l'utilisateur a été supprimé de la session
-        assertThat(mockSession.getUsers()).doesNotContain(mockUser);
-        verify(sessionRepository, times(1)).save(mockSession);
+        // THEN : Vérification que seule la ligne de PARTICIPATE a été supprimée, le changement tracé et la place libérée
+        verify(sessionRepository, times(1)).removeParticipant(sessionId, userId);
+        verify(sessionRepository, never()).save(any());
+        verify(participantChangeRepository).record(eq(sessionId), any());
+        verify(seatService).releaseSeat(sessionId);
+    }
+
+	@Test
+    void noLongerParticipateFromWaitlistTest() {
+        // GIVEN : Un utilisateur en liste d'attente
+        when(sessionRepository.removeParticipant(1L, 3L)).thenReturn(0);
+        when(seatService.leaveWaitlist(1L, 3L)).thenReturn(true);
+
+        // WHEN
+        sessionService.noLongerParticipate(1L, 3L);
+
+        // THEN : Il quitte la liste d'attente sans libérer de place
+        verify(seatService, never()).releaseSeat(any());
     }
 
 	@Test
@@ -228,12 +752,11 @@ class SessionsServiceTest {
         // GIVEN : Une session inexistante
         Long sessionId = 1L;
         Long userId = 2L;
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(sessionId)).thenReturn(false);
 
         // WHEN / THEN : Vérification que l'exception NotFoundException est levée
         assertThatThrownBy(() -> sessionService.noLongerParticipate(sessionId, userId))
                 .isInstanceOf(NotFoundException.class);
-        verify(sessionRepository, times(0)).save(any());
     }
 
 	@Test
@@ -241,12 +764,11 @@ class SessionsServiceTest {
         // GIVEN : Un utilisateur qui n'est pas inscrit à la session
         Long sessionId = 1L;
         Long userId = 3L;
-        Session mockSession = this.mockSessions.get(0);
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(mockSession));
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+        when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(0);
 
         // WHEN / THEN : Vérification que l'exception BadRequestException est levée
         assertThatThrownBy(() -> sessionService.noLongerParticipate(sessionId, userId))
                 .isInstanceOf(BadRequestException.class);
-        verify(sessionRepository, times(0)).save(any());
     }
 }
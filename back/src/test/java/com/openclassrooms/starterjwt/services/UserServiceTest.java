@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
@@ -13,6 +15,7 @@ import org.mockito.Mock;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.RefreshTokenService;
 
 @ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class) // Utilisation de l'extension Mockito avec JUnit 5
 class UserServiceTest {
@@ -21,6 +24,9 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
     // Injecte le Mock du UserRepository dans UserService
     @InjectMocks
     private UserService userService;
@@ -35,6 +41,8 @@ class UserServiceTest {
 
         // THEN : Vérification que la méthode deleteById du userRepository a été appelée une seule fois avec l'ID donné
         verify(userRepository, times(1)).deleteById(userId);
+        // Vérification que les jetons de l'utilisateur sont révoqués
+        verify(refreshTokenService, times(1)).revokeAll(userId);
     }
 
     @Test
@@ -71,4 +79,16 @@ class UserServiceTest {
         verify(userRepository, times(1)).findById(userId);
     }
 
+    @Test
+    void findAllByIdTest() {
+        // GIVEN : Seul l'utilisateur 1 existe
+        User mockUser = new User(1L, "test@mail.com", "lastName", "firstName", "password", false, LocalDateTime.now(), LocalDateTime.now());
+        when(userRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(mockUser));
+
+        // WHEN
+        Map<Long, User> result = userService.findAllById(List.of(1L, 2L));
+
+        // THEN : Les utilisateurs trouvés, indexés par identifiant
+        assertThat(result).containsOnly(Map.entry(1L, mockUser));
+    }
 }
@@ -0,0 +1,89 @@
+import { HTTP_INTERCEPTORS, HttpClient } from '@angular/common/http';
+import { HttpClientTestingModule, HttpTestingController } from '@angular/common/http/testing';
+import { TestBed } from '@angular/core/testing';
+import { expect } from '@jest/globals';
+
+import { SessionService } from '../services/session.service';
+import { JwtInterceptor } from './jwt.interceptor';
+
+describe('JwtInterceptor', () => {
+  let httpClient: HttpClient;
+  let httpMock: HttpTestingController;
+  let sessionService: SessionService;
+
+  const sessionInformation = {
+    token: 'expired',
+    refreshToken: 'refresh-1',
+    type: 'Bearer',
+    id: 1,
+    username: 'yoga@studio.com',
+    firstName: 'Admin',
+    lastName: 'Admin',
+    admin: true,
+  };
+
+  beforeEach(() => {
+    TestBed.configureTestingModule({
+      imports: [HttpClientTestingModule],
+      providers: [{ provide: HTTP_INTERCEPTORS, useClass: JwtInterceptor, multi: true }],
+    });
+    httpClient = TestBed.inject(HttpClient);
+    httpMock = TestBed.inject(HttpTestingController);
+    sessionService = TestBed.inject(SessionService);
+    sessionService.logIn({ ...sessionInformation });
+  });
+
+  afterEach(() => {
+    httpMock.verify();
+  });
+
+  // Test pour vérifier que le jeton expiré est renouvelé une seule fois pour les requêtes en échec
+  it('should refresh the token once and replay the failed requests', () => {
+    // GIVEN : Deux requêtes envoyées avec le jeton expiré
+    const responses: any[] = [];
+    httpClient.get('api/session').subscribe((response) => responses.push(response));
+    httpClient.get('api/teacher').subscribe((response) => responses.push(response));
+    const failed = httpMock.match((request) => request.headers.get('Authorization') === 'Bearer expired');
+    expect(failed.length).toBe(2);
+
+    // WHEN : Les deux requêtes sont refusées
+    failed.forEach((request) => request.flush(null, { status: 401, statusText: 'Unauthorized' }));
+
+    // THEN : Un seul renouvellement, puis les requêtes sont rejouées avec le nouveau jeton
+    const refresh = httpMock.expectOne('api/auth/refresh');
+    expect(refresh.request.body).toEqual({ refreshToken: 'refresh-1' });
+    refresh.flush({ ...sessionInformation, token: 'fresh', refreshToken: 'refresh-2' });
+
+    httpMock.expectOne('api/session').flush([]);
+    httpMock.expectOne('api/teacher').flush([]);
+    expect(responses).toEqual([[], []]);
+    expect(sessionService.sessionInformation!.token).toBe('fresh');
+    expect(sessionService.sessionInformation!.refreshToken).toBe('refresh-2');
+  });
+
+  // Test pour vérifier la déconnexion lorsque le jeton de renouvellement est refusé
+  it('should log out when the refresh token is rejected', () => {
+    // GIVEN
+    let status = 0;
+    httpClient.get('api/session').subscribe({ error: (error) => status = error.status });
+    httpMock.expectOne('api/session').flush(null, { status: 401, statusText: 'Unauthorized' });
+
+    // WHEN
+    httpMock.expectOne('api/auth/refresh').flush(null, { status: 401, statusText: 'Unauthorized' });
+
+    // THEN
+    expect(status).toBe(401);
+    expect(sessionService.isLogged).toBe(false);
+  });
+
+  // Test pour vérifier que les autres erreurs ne déclenchent pas de renouvellement
+  it('should not refresh on other errors', () => {
+    let status = 0;
+    httpClient.get('api/session/1').subscribe({ error: (error) => status = error.status });
+
+    httpMock.expectOne('api/session/1').flush(null, { status: 404, statusText: 'Not Found' });
+
+    expect(status).toBe(404);
+    httpMock.expectNone('api/auth/refresh');
+  });
+});
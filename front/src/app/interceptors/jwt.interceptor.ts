@@ -1,19 +1,63 @@
-import { HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
+import { HttpErrorResponse, HttpEvent, HttpHandler, HttpInterceptor, HttpRequest, HttpResponse } from "@angular/common/http";
 import { Injectable } from "@angular/core";
+import { Observable, catchError, filter, finalize, map, shareReplay, switchMap, take, throwError } from "rxjs";
+import { SessionInformation } from '../interfaces/sessionInformation.interface';
 import { SessionService } from '../services/session.service';
 
 @Injectable({ providedIn: 'root' })
 export class JwtInterceptor implements HttpInterceptor {
+  // Refresh in progress, shared by the requests that fail while it runs
+  private refresh$: Observable<SessionInformation> | null = null;
+
   constructor(private sessionService: SessionService) {}
 
-  public intercept(request: HttpRequest<any>, next: HttpHandler) {
-    if (this.sessionService.isLogged) {
-      request = request.clone({
-        setHeaders: {
-          Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
-        },
-      });
+  public intercept(request: HttpRequest<any>, next: HttpHandler): Observable<HttpEvent<any>> {
+    if (!this.sessionService.isLogged || request.url.includes('api/auth/')) {
+      return next.handle(request);
+    }
+
+    return next.handle(this.withToken(request)).pipe(
+      catchError((error) => {
+        const refreshToken = this.sessionService.sessionInformation?.refreshToken;
+        if (!(error instanceof HttpErrorResponse) || error.status !== 401 || !refreshToken) {
+          return throwError(() => error);
+        }
+        // The access token has expired: the request is sent again with a new one
+        return this.refresh(refreshToken, next).pipe(
+          switchMap(() => next.handle(this.withToken(request)))
+        );
+      })
+    );
+  }
+
+  private withToken(request: HttpRequest<any>): HttpRequest<any> {
+    return request.clone({
+      setHeaders: {
+        Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
+      },
+    });
+  }
+
+  // The refresh token is rotated on every use, so concurrent 401s wait for the same refresh
+  private refresh(refreshToken: string, next: HttpHandler): Observable<SessionInformation> {
+    if (!this.refresh$) {
+      this.refresh$ = next.handle(new HttpRequest('POST', 'api/auth/refresh', { refreshToken })).pipe(
+        filter((event): event is HttpResponse<SessionInformation> => event instanceof HttpResponse),
+        take(1),
+        map((response) => response.body!),
+        map((sessionInformation) => {
+          this.sessionService.logIn(sessionInformation);
+          return sessionInformation;
+        }),
+        catchError((error) => {
+          // The refresh token is expired or revoked: the user has to log in again
+          this.sessionService.logOut();
+          return throwError(() => error);
+        }),
+        finalize(() => this.refresh$ = null),
+        shareReplay(1)
+      );
     }
-    return next.handle(request);
+    return this.refresh$;
   }
 }
@@ -1,6 +1,8 @@
 
 export interface SessionInformation {
   token: string;
+  // Exchanged for a new token on api/auth/refresh when the token expires
+  refreshToken?: string;
   type: string;
   id: number;
   username: string;
@@ -3,7 +3,7 @@ CREATE TABLE `TEACHERS` (
   `last_name` VARCHAR(40),
   `first_name` VARCHAR(40),
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `updated_at` DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6)
 );
 
 CREATE TABLE `SESSIONS` (
@@ -13,7 +13,25 @@ CREATE TABLE `SESSIONS` (
   `date` TIMESTAMP,
   `teacher_id` int,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `updated_at` DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+  `version` BIGINT NOT NULL DEFAULT 0,
+  `capacity` INT,
+  INDEX `idx_sessions_date_id` (`date`, `id`),
+  INDEX `idx_sessions_teacher_id_date` (`teacher_id`, `date`),
+  INDEX `idx_sessions_updated_at` (`updated_at`)
+);
+
+-- Ids of SESSIONS, handed out 50 at a time: next_val is the first id of the next block. On an
+-- existing database, start it above the current ids: INSERT ... SELECT COALESCE(MAX(id), 0) + 1 FROM SESSIONS
+CREATE TABLE `SESSIONS_SEQ` (
+  `next_val` BIGINT NOT NULL
+);
+INSERT INTO `SESSIONS_SEQ` VALUES (1);
+
+CREATE TABLE `SESSION_TOMBSTONES` (
+  `session_id` INT PRIMARY KEY,
+  `deleted_at` DATETIME(6) NOT NULL,
+  INDEX `idx_session_tombstones_deleted_at` (`deleted_at`)
 );
 
 CREATE TABLE `USERS` (
@@ -21,20 +39,60 @@ CREATE TABLE `USERS` (
   `last_name` VARCHAR(40),
   `first_name` VARCHAR(40),
   `admin` BOOLEAN NOT NULL DEFAULT false,
-  `email` VARCHAR(255),
+  `email` VARCHAR(255) NOT NULL,
   `password` VARCHAR(255),
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `updated_at` DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+  CONSTRAINT `uk_users_email` UNIQUE (`email`)
+);
+
+CREATE TABLE `REFRESH_TOKENS` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+  `token_hash` CHAR(64) NOT NULL UNIQUE,
+  `user_id` BIGINT NOT NULL,
+  `expires_at` DATETIME NOT NULL,
+  `revoked_at` DATETIME,
+  `revocation_reason` VARCHAR(20),
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  INDEX `idx_refresh_tokens_revoked_at` (`revoked_at`)
 );
 
 CREATE TABLE `PARTICIPATE` (
-  `user_id` INT, 
-  `session_id` INT
+  `user_id` INT NOT NULL,
+  `session_id` INT NOT NULL,
+  PRIMARY KEY (`session_id`, `user_id`),
+  INDEX `idx_participate_user_id_session_id` (`user_id`, `session_id`)
+);
+
+CREATE TABLE `SESSION_SEATS` (
+  `session_id` INT PRIMARY KEY,
+  `capacity` INT NOT NULL,
+  `taken` INT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE `PARTICIPANT_CHANGES` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `changed_at` DATETIME(6) NOT NULL,
+  INDEX `idx_participant_changes_session_id` (`session_id`, `changed_at`),
+  INDEX `idx_participant_changes_changed_at` (`changed_at`)
+);
+
+CREATE TABLE `WAITLIST` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  UNIQUE (`session_id`, `user_id`),
+  INDEX `idx_waitlist_session_id` (`session_id`, `id`)
 );
 
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `SESSION_SEATS` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
 
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),